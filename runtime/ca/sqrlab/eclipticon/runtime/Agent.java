@@ -0,0 +1,59 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+
+/**
+ * This class is the load-time agent that adds noise to the program under test without changing its
+ * source code. It is started with -javaagent:eclipticon-runtime.jar=&lt;configuration file&gt;, the
+ * configuration file being written by the plugin.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class Agent {
+
+	/**
+	 * Starts the agent before the main method of the program.
+	 * 
+	 * @param arguments the path of the configuration file
+	 * @param instrumentation the instrumentation of the virtual machine
+	 */
+	public static void premain( String arguments, Instrumentation instrumentation ) {
+		install( arguments, instrumentation );
+	}
+
+	/**
+	 * Starts the agent in a running virtual machine, only the classes loaded afterwards get noise.
+	 * 
+	 * @param arguments the path of the configuration file
+	 * @param instrumentation the instrumentation of the virtual machine
+	 */
+	public static void agentmain( String arguments, Instrumentation instrumentation ) {
+		install( arguments, instrumentation );
+	}
+
+	/**
+	 * Reads the configuration and adds the transformer. Nothing is added when the noise is switched off,
+	 * so the classes are loaded as they are.
+	 * 
+	 * @param arguments the path of the configuration file
+	 * @param instrumentation the instrumentation of the virtual machine
+	 */
+	private static void install( String arguments, Instrumentation instrumentation ) {
+		if( arguments == null || arguments.trim().length() == 0 ) {
+			System.err.println( "Eclipticon agent: no configuration file was given" );
+			return;
+		}
+		if( !NoiseSwitch.ON ) {
+			return;
+		}
+
+		try {
+			AgentConfiguration configuration = AgentConfiguration.read( arguments.trim() );
+			instrumentation.addTransformer( new NoiseTransformer( configuration ) );
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * This class holds the configuration of the load-time agent, which is written by the plugin from the
+ * automatic configuration and the &#64;PreemptionPoint annotations. In manual mode only the annotated
+ * constructs get noise, in automatic mode every construct does using the automatic configuration.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class AgentConfiguration implements SitePolicy {
+
+	/** These are the keys of the configuration file */
+	public static final String	KEY_MODE					= "mode";
+	public static final String	KEY_INCLUDE					= "include";
+	public static final String	KEY_LOW_DELAY				= "lowDelayRange";
+	public static final String	KEY_HIGH_DELAY				= "highDelayRange";
+	public static final String	KEY_SLEEP					= "sleepChance";
+	public static final String	KEY_DELAY_TYPE				= "delayType";
+	public static final String	KEY_SYNCHRONIZE				= "synchronizeChance";
+	public static final String	KEY_BARRIER					= "barrierChance";
+	public static final String	KEY_LATCH					= "latchChance";
+	public static final String	KEY_SEMAPHORE				= "semaphoreChance";
+	public static final String	KEY_POINT					= "point.";
+
+	/** These are the modes of the agent */
+	public static final String	MODE_MANUAL					= "manual";
+	public static final String	MODE_AUTOMATIC				= "automatic";
+
+	/** These are the types of synchronization constructs, they match the ones used by the plugin */
+	public static final String	SYNCHRONIZE					= "synchronize";
+	public static final String	BARRIER						= "barrier";
+	public static final String	LATCH						= "latch";
+	public static final String	SEMAPHORE					= "semaphore";
+
+	private Properties			_properties					= null;						// The configuration
+	private boolean				_automatic					= false;					// If automatic mode is used
+	private String[]			_includes					= new String[ 0 ];			// The class name prefixes to instrument
+	private Random				_random						= new Random();				// The random choice of noise type
+
+	/**
+	 * Instantiates a new agent configuration.
+	 * 
+	 * @param properties the configuration properties
+	 */
+	public AgentConfiguration( Properties properties ) {
+		_properties = properties;
+		_automatic = MODE_AUTOMATIC.equals( properties.getProperty( KEY_MODE, MODE_MANUAL ) );
+
+		// A seeded run chooses the same noise for the same classes
+		if( Noise.getSeed() != null ) {
+			_random = new Random( Noise.getSeed().longValue() );
+		}
+
+		// The include list is a comma separated list of package prefixes
+		String includes = properties.getProperty( KEY_INCLUDE, "" ).trim();
+		if( includes.length() > 0 ) {
+			ArrayList<String> prefixes = new ArrayList<String>();
+			for( String prefix : includes.split( "," ) ) {
+				if( prefix.trim().length() > 0 ) {
+					prefixes.add( prefix.trim().replace( '.', '/' ) );
+				}
+			}
+			_includes = prefixes.toArray( new String[ prefixes.size() ] );
+		}
+	}
+
+	/**
+	 * Reads the agent configuration from a file.
+	 * 
+	 * @param path the path of the configuration file
+	 * @return the agent configuration
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static AgentConfiguration read( String path ) throws IOException {
+		Properties properties = new Properties();
+		InputStream input = new FileInputStream( path );
+		try {
+			properties.load( input );
+		}
+		finally {
+			input.close();
+		}
+		return new AgentConfiguration( properties );
+	}
+
+	/**
+	 * Makes the key of a point chosen in the source code.
+	 * 
+	 * @param sourcePath the path of the source file (package directories and file name)
+	 * @param line the line of the construct
+	 * @param syntax the syntax of the construct
+	 * @param sequence the number of the same syntax found before it on the line
+	 * @return the key of the point
+	 */
+	public static String makePointKey( String sourcePath, int line, String syntax, int sequence ) {
+		return KEY_POINT + makeSiteKey( sourcePath, line, syntax, sequence );
+	}
+
+	/**
+	 * Makes the key a construct is registered with by the agent, which the control file refers to it by.
+	 * 
+	 * @param sourcePath the path of the source file (package directories and file name)
+	 * @param line the line of the construct
+	 * @param syntax the syntax of the construct
+	 * @param sequence the number of the same syntax found before it on the line
+	 * @return the key of the construct
+	 */
+	public static String makeSiteKey( String sourcePath, int line, String syntax, int sequence ) {
+		return sourcePath + ":" + line + ":" + syntax + ":" + sequence;
+	}
+
+	/**
+	 * Makes the value of a point chosen in the source code.
+	 * 
+	 * @param type the noise type
+	 * @param probability the chance of the noise activating out of 100
+	 * @param low the lower bound of the sleep delay
+	 * @param high the upper bound of the sleep delay
+	 * @return the value of the point
+	 */
+	public static String makePointValue( int type, int probability, int low, int high ) {
+		return type + "," + probability + "," + low + "," + high;
+	}
+
+	/**
+	 * Checks if the classes with the given internal name are to be instrumented.
+	 * 
+	 * @param className the internal name of the class (e.g. java/lang/Object)
+	 * @return true, if the class is to be instrumented
+	 */
+	public boolean includes( String className ) {
+		if( _includes.length == 0 ) {
+			return true;
+		}
+		for( String prefix : _includes ) {
+			if( className.startsWith( prefix ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int pointFor( String sourcePath, int line, String construct, String syntax, int sequence ) {
+
+		String key = makeSiteKey( sourcePath, line, syntax, sequence );
+
+		// A point chosen in the source code always wins
+		String value = _properties.getProperty( makePointKey( sourcePath, line, syntax, sequence ) );
+		if( value != null ) {
+			String[] fields = value.split( "," );
+			if( fields.length == 4 ) {
+				return Noise.register( key, Integer.parseInt( fields[ 0 ].trim() ), Integer.parseInt( fields[ 1 ].trim() ),
+						Integer.parseInt( fields[ 2 ].trim() ), Integer.parseInt( fields[ 3 ].trim() ) );
+			}
+		}
+
+		if( !_automatic ) {
+			return -1;
+		}
+
+		// Figure out the type of noise to use
+		int type = ( nextRandom( 100 ) <= getInt( KEY_SLEEP ) ) ? getInt( KEY_DELAY_TYPE ) : Noise.YIELD;
+
+		// Figure out the probability of instrumenting given the type of the construct
+		int probability = 0;
+		if( construct.equals( SYNCHRONIZE ) ) {
+			probability = getInt( KEY_SYNCHRONIZE );
+		}
+		else if( construct.equals( BARRIER ) ) {
+			probability = getInt( KEY_BARRIER );
+		}
+		else if( construct.equals( LATCH ) ) {
+			probability = getInt( KEY_LATCH );
+		}
+		else if( construct.equals( SEMAPHORE ) ) {
+			probability = getInt( KEY_SEMAPHORE );
+		}
+		return Noise.register( key, type, probability, getInt( KEY_LOW_DELAY ), getInt( KEY_HIGH_DELAY ) );
+	}
+
+	/**
+	 * Gets an integer setting, 0 if it is missing or not a number.
+	 * 
+	 * @param key the key of the setting
+	 * @return the value of the setting
+	 */
+	private int getInt( String key ) {
+		try {
+			return Integer.parseInt( _properties.getProperty( key, "0" ).trim() );
+		}
+		catch( NumberFormatException e ) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets a random number, classes can be transformed by several threads at once.
+	 * 
+	 * @param bound the upper bound (exclusive)
+	 * @return the random number
+	 */
+	private synchronized int nextRandom( int bound ) {
+		return _random.nextInt( bound );
+	}
+}
@@ -0,0 +1,794 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class adds noise to the concurrency constructs of a compiled class. A call to
+ * {@link Noise#point(int)} is placed right before every monitorenter and every call to one of the
+ * construct methods (Lock.lock, CyclicBarrier.await, Semaphore.acquire, ...), which is the same
+ * place the plugin puts noise in source code.<br/><br/>
+ *
+ * The inserted code (sipush id; invokestatic Noise.point) leaves the operand stack as it found it,
+ * so the existing stack map frames stay valid and only the offsets in the method need to be moved:
+ * branches, switches, the exception table, the stack map frames and the line number and local
+ * variable tables. A method with anything else that holds offsets, or whose branches would no
+ * longer fit, is left as it is.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class ClassRewriter {
+
+	/** The class and method that the inserted code calls */
+	private static final String						NOISE_CLASS		= "ca/sqrlab/eclipticon/runtime/Noise";
+	private static final String						NOISE_METHOD	= "point";
+	private static final String						NOISE_DESC		= "(I)V";
+
+	/** The number of bytes of code inserted at each point */
+	private static final int						INSERT_LENGTH	= 6;
+
+	/** The construct of each method that is a construct, by "owner.name" */
+	private static final HashMap<String, String>	CONSTRUCTS		= new HashMap<String, String>();
+
+	static {
+		String locks = "java/util/concurrent/locks/";
+		for( String owner : new String[] { locks + "Lock", locks + "ReentrantLock", locks + "ReentrantReadWriteLock$ReadLock",
+				locks + "ReentrantReadWriteLock$WriteLock" } ) {
+			CONSTRUCTS.put( owner + ".lock", AgentConfiguration.SYNCHRONIZE );
+			CONSTRUCTS.put( owner + ".lockInterruptibly", AgentConfiguration.SYNCHRONIZE );
+			CONSTRUCTS.put( owner + ".tryLock", AgentConfiguration.SYNCHRONIZE );
+			CONSTRUCTS.put( owner + ".unlock", AgentConfiguration.SYNCHRONIZE );
+			CONSTRUCTS.put( owner + ".newCondition", AgentConfiguration.SYNCHRONIZE );
+		}
+		CONSTRUCTS.put( locks + "Condition.await", AgentConfiguration.SYNCHRONIZE );
+		CONSTRUCTS.put( "java/util/concurrent/CyclicBarrier.await", AgentConfiguration.BARRIER );
+		CONSTRUCTS.put( "java/util/concurrent/CyclicBarrier.reset", AgentConfiguration.BARRIER );
+		CONSTRUCTS.put( "java/util/concurrent/CountDownLatch.await", AgentConfiguration.LATCH );
+		CONSTRUCTS.put( "java/util/concurrent/CountDownLatch.countDown", AgentConfiguration.LATCH );
+		String semaphore = "java/util/concurrent/Semaphore.";
+		CONSTRUCTS.put( semaphore + "acquire", AgentConfiguration.SEMAPHORE );
+		CONSTRUCTS.put( semaphore + "acquireUninterruptibly", AgentConfiguration.SEMAPHORE );
+		CONSTRUCTS.put( semaphore + "drainPermits", AgentConfiguration.SEMAPHORE );
+		CONSTRUCTS.put( semaphore + "release", AgentConfiguration.SEMAPHORE );
+		CONSTRUCTS.put( semaphore + "tryAcquire", AgentConfiguration.SEMAPHORE );
+	}
+
+	private SitePolicy								_policy			= null;	// Decides which constructs get noise
+
+	private byte[]									_bytes			= null;	// The original class file
+	private int										_cpCount		= 0;	// The number of constant pool slots
+	private int[]									_cpOffsets		= null;	// The offset of each constant pool entry
+	private int										_cpEnd			= 0;	// The offset after the constant pool
+	private int										_methodRefIndex	= 0;	// The constant pool index of Noise.point
+	private String									_sourcePath		= null;	// The path of the source file of the class
+
+	/**
+	 * Instantiates a new class rewriter.
+	 *
+	 * @param policy the policy that decides which constructs get noise
+	 */
+	public ClassRewriter( SitePolicy policy ) {
+		_policy = policy;
+	}
+
+	/**
+	 * Adds noise to the class.
+	 *
+	 * @param classFile the class file
+	 * @return the new class file, or null if the class was not changed
+	 */
+	public byte[] rewrite( byte[] classFile ) {
+		_bytes = classFile;
+		try {
+			return rewriteClass();
+		}
+		catch( RuntimeException e ) {
+
+			// Anything unexpected in the class file leaves the class alone
+			return null;
+		}
+		catch( IOException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Rewrites the class file, a class is only returned if at least one method was changed.
+	 */
+	private byte[] rewriteClass() throws IOException {
+
+		if( u4( 0 ) != 0xCAFEBABE ) {
+			return null;
+		}
+		if( !readConstantPool() ) {
+			return null;
+		}
+
+		// The new constants go at the end of the pool
+		_methodRefIndex = _cpCount + 5;
+		if( _cpCount + 6 > 0xFFFF ) {
+			return null;
+		}
+
+		// Skip the class information and the fields to get to the methods
+		int pos = _cpEnd;
+		int thisClass = u2( pos + 2 );
+		String className = utf8( u2( _cpOffsets[ thisClass ] + 1 ) );
+		pos += 6;
+		pos += 2 + 2 * u2( pos );
+		int fieldCount = u2( pos );
+		pos += 2;
+		for( int i = 0; i < fieldCount; i++ ) {
+			pos = skipMember( pos );
+		}
+		int methodsStart = pos;
+		int methodCount = u2( pos );
+		pos += 2;
+		int[] methodOffsets = new int[ methodCount + 1 ];
+		for( int i = 0; i < methodCount; i++ ) {
+			methodOffsets[ i ] = pos;
+			pos = skipMember( pos );
+		}
+		methodOffsets[ methodCount ] = pos;
+		int classAttributesStart = pos;
+
+		// The source path is the package of the class and the name of its source file
+		_sourcePath = findSourcePath( className, classAttributesStart );
+
+		// Rewrite each of the methods
+		ByteArrayOutputStream methods = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( methods );
+		out.writeShort( methodCount );
+		boolean changed = false;
+		for( int i = 0; i < methodCount; i++ ) {
+			byte[] method = rewriteMethod( methodOffsets[ i ], methodOffsets[ i + 1 ] );
+			if( method != null ) {
+				out.write( method );
+				changed = true;
+			}
+			else {
+				out.write( _bytes, methodOffsets[ i ], methodOffsets[ i + 1 ] - methodOffsets[ i ] );
+			}
+		}
+		if( !changed ) {
+			return null;
+		}
+
+		// Put the class back together with the new constants and methods
+		ByteArrayOutputStream result = new ByteArrayOutputStream( _bytes.length + methods.size() );
+		DataOutputStream classOut = new DataOutputStream( result );
+		classOut.write( _bytes, 0, 8 );
+		classOut.writeShort( _cpCount + 6 );
+		classOut.write( _bytes, 10, _cpEnd - 10 );
+		writeUtf8( classOut, NOISE_CLASS ); // _cpCount
+		classOut.writeByte( 7 ); // _cpCount + 1, the class
+		classOut.writeShort( _cpCount );
+		writeUtf8( classOut, NOISE_METHOD ); // _cpCount + 2
+		writeUtf8( classOut, NOISE_DESC ); // _cpCount + 3
+		classOut.writeByte( 12 ); // _cpCount + 4, the name and type
+		classOut.writeShort( _cpCount + 2 );
+		classOut.writeShort( _cpCount + 3 );
+		classOut.writeByte( 10 ); // _cpCount + 5, the method
+		classOut.writeShort( _cpCount + 1 );
+		classOut.writeShort( _cpCount + 4 );
+		classOut.write( _bytes, _cpEnd, methodsStart - _cpEnd );
+		methods.writeTo( classOut );
+		classOut.write( _bytes, classAttributesStart, _bytes.length - classAttributesStart );
+		classOut.flush();
+		return result.toByteArray();
+	}
+
+	/**
+	 * Rewrites a method, adding noise before its constructs.
+	 *
+	 * @param start the offset of the method
+	 * @param end the offset after the method
+	 * @return the new method, or null if the method was not changed
+	 */
+	private byte[] rewriteMethod( int start, int end ) throws IOException {
+
+		// Find the code attribute
+		int pos = start + 6;
+		int attributeCount = u2( pos );
+		pos += 2;
+		int codeStart = -1;
+		for( int i = 0; i < attributeCount; i++ ) {
+			if( utf8( u2( pos ) ).equals( "Code" ) ) {
+				codeStart = pos;
+			}
+			pos += 6 + u4( pos + 2 );
+		}
+		if( codeStart == -1 ) {
+			return null;
+		}
+
+		byte[] code = rewriteCode( codeStart );
+		if( code == null ) {
+			return null;
+		}
+
+		ByteArrayOutputStream method = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( method );
+		out.write( _bytes, start, codeStart - start );
+		out.write( code );
+		int codeEnd = codeStart + 6 + u4( codeStart + 2 );
+		out.write( _bytes, codeEnd, end - codeEnd );
+		out.flush();
+		return method.toByteArray();
+	}
+
+	/**
+	 * Rewrites a code attribute, adding noise before its constructs.
+	 *
+	 * @param attributeStart the offset of the code attribute
+	 * @return the new code attribute, or null if the code was not changed
+	 */
+	private byte[] rewriteCode( int attributeStart ) throws IOException {
+
+		int maxStack = u2( attributeStart + 6 );
+		int maxLocals = u2( attributeStart + 8 );
+		int codeLength = u4( attributeStart + 10 );
+		int codeStart = attributeStart + 14;
+		int exceptionStart = codeStart + codeLength;
+		int exceptionCount = u2( exceptionStart );
+		int attributesStart = exceptionStart + 2 + 8 * exceptionCount;
+		int attributeCount = u2( attributesStart );
+
+		// Find the attributes of the code, anything that isn't known might hold offsets so the method is left alone
+		int stackMapStart = -1;
+		int lineNumbersStart = -1;
+		ArrayList<Integer> localVariableStarts = new ArrayList<Integer>();
+		int pos = attributesStart + 2;
+		for( int i = 0; i < attributeCount; i++ ) {
+			String name = utf8( u2( pos ) );
+			if( name.equals( "StackMapTable" ) ) {
+				stackMapStart = pos;
+			}
+			else if( name.equals( "LineNumberTable" ) ) {
+				if( lineNumbersStart != -1 ) {
+					return null;
+				}
+				lineNumbersStart = pos;
+			}
+			else if( name.equals( "LocalVariableTable" ) || name.equals( "LocalVariableTypeTable" ) ) {
+				localVariableStarts.add( pos );
+			}
+			else {
+				return null;
+			}
+			pos += 6 + u4( pos + 2 );
+		}
+
+		// Find the instructions and the constructs among them
+		boolean[] isInstruction = new boolean[ codeLength + 1 ];
+		int[] points = new int[ codeLength ];
+		HashMap<String, Integer> sequences = new HashMap<String, Integer>();
+		boolean hasPoints = false;
+		for( int offset = 0; offset < codeLength; ) {
+			isInstruction[ offset ] = true;
+			points[ offset ] = -1;
+
+			int opcode = _bytes[ codeStart + offset ] & 0xFF;
+			String construct = null;
+			String syntax = null;
+			if( opcode == 0xC2 ) { // monitorenter
+				construct = AgentConfiguration.SYNCHRONIZE;
+				syntax = "synchronized";
+			}
+			else if( opcode == 0xB6 || opcode == 0xB7 || opcode == 0xB8 || opcode == 0xB9 ) { // invoke
+				int ref = _cpOffsets[ u2( codeStart + offset + 1 ) ];
+				String owner = utf8( u2( _cpOffsets[ u2( ref + 1 ) ] + 1 ) );
+				String methodName = utf8( u2( _cpOffsets[ u2( ref + 3 ) ] + 1 ) );
+				construct = CONSTRUCTS.get( owner + "." + methodName );
+				syntax = "." + methodName;
+			}
+
+			if( construct != null ) {
+				int line = findLine( lineNumbersStart, offset );
+
+				// The sequence counts the same syntax on the line, as in the source code
+				String lineKey = line + syntax;
+				Integer sequence = sequences.get( lineKey );
+				sequence = ( sequence == null ) ? 0 : sequence + 1;
+				sequences.put( lineKey, sequence );
+
+				int id = _policy.pointFor( _sourcePath, line, construct, syntax, sequence );
+				if( id >= 0 && id <= Short.MAX_VALUE ) {
+					points[ offset ] = id;
+					hasPoints = true;
+				}
+			}
+			offset += instructionLength( codeStart, offset, offset );
+		}
+		isInstruction[ codeLength ] = true;
+		if( !hasPoints ) {
+			return null;
+		}
+
+		// Lay out the new code, the new start of an instruction is where its inserted code begins
+		int[] newStart = new int[ codeLength + 1 ];
+		int[] newInstruction = new int[ codeLength + 1 ];
+		int newPos = 0;
+		for( int offset = 0; offset < codeLength; ) {
+			newStart[ offset ] = newPos;
+			if( points[ offset ] >= 0 ) {
+				newPos += INSERT_LENGTH;
+			}
+			newInstruction[ offset ] = newPos;
+			newPos += instructionLength( codeStart, offset, newPos );
+			offset += instructionLength( codeStart, offset, offset );
+		}
+		newStart[ codeLength ] = newPos;
+		newInstruction[ codeLength ] = newPos;
+		int newCodeLength = newPos;
+		if( newCodeLength > 0xFFFF ) {
+			return null;
+		}
+
+		// Write the new code
+		ByteArrayOutputStream codeBytes = new ByteArrayOutputStream( newCodeLength );
+		DataOutputStream code = new DataOutputStream( codeBytes );
+		for( int offset = 0; offset < codeLength; ) {
+			if( points[ offset ] >= 0 ) {
+				code.writeByte( 0x11 ); // sipush
+				code.writeShort( points[ offset ] );
+				code.writeByte( 0xB8 ); // invokestatic
+				code.writeShort( _methodRefIndex );
+			}
+			if( !writeInstruction( code, codeStart, offset, newInstruction[ offset ], isInstruction, newStart ) ) {
+				return null;
+			}
+			offset += instructionLength( codeStart, offset, offset );
+		}
+		code.flush();
+
+		// Write the new code attribute
+		ByteArrayOutputStream attributeBytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( attributeBytes );
+		out.writeShort( Math.min( maxStack + 1, 0xFFFF ) );
+		out.writeShort( maxLocals );
+		out.writeInt( newCodeLength );
+		codeBytes.writeTo( out );
+
+		// The exception table
+		out.writeShort( exceptionCount );
+		for( int i = 0; i < exceptionCount; i++ ) {
+			int entry = exceptionStart + 2 + 8 * i;
+			out.writeShort( mapOffset( u2( entry ), isInstruction, newStart ) );
+			out.writeShort( mapOffset( u2( entry + 2 ), isInstruction, newStart ) );
+			out.writeShort( mapOffset( u2( entry + 4 ), isInstruction, newStart ) );
+			out.writeShort( u2( entry + 6 ) );
+		}
+
+		// The attributes of the code
+		out.writeShort( attributeCount );
+		pos = attributesStart + 2;
+		for( int i = 0; i < attributeCount; i++ ) {
+			int length = u4( pos + 2 );
+			if( pos == stackMapStart ) {
+				writeStackMap( out, pos, isInstruction, newStart, newInstruction );
+			}
+			else if( pos == lineNumbersStart ) {
+				writeLineNumbers( out, pos, isInstruction, newStart );
+			}
+			else if( localVariableStarts.contains( pos ) ) {
+				writeLocalVariables( out, pos, isInstruction, newStart );
+			}
+			pos += 6 + length;
+		}
+		out.flush();
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		DataOutputStream resultOut = new DataOutputStream( result );
+		resultOut.writeShort( u2( attributeStart ) );
+		resultOut.writeInt( attributeBytes.size() );
+		attributeBytes.writeTo( resultOut );
+		resultOut.flush();
+		return result.toByteArray();
+	}
+
+	/**
+	 * Writes an instruction at its new position, moving its branch offsets.
+	 *
+	 * @return false if a branch no longer fits in its instruction
+	 */
+	private boolean writeInstruction( DataOutputStream out, int codeStart, int offset, int newOffset,
+			boolean[] isInstruction, int[] newStart ) throws IOException {
+
+		int at = codeStart + offset;
+		int opcode = _bytes[ at ] & 0xFF;
+
+		if( ( opcode >= 0x99 && opcode <= 0xA8 ) || opcode == 0xC6 || opcode == 0xC7 ) { // short branches
+			int target = mapOffset( offset + (short)u2( at + 1 ), isInstruction, newStart ) - newOffset;
+			if( target < Short.MIN_VALUE || target > Short.MAX_VALUE ) {
+				return false;
+			}
+			out.writeByte( opcode );
+			out.writeShort( target );
+		}
+		else if( opcode == 0xC8 || opcode == 0xC9 ) { // wide branches
+			out.writeByte( opcode );
+			out.writeInt( mapOffset( offset + u4( at + 1 ), isInstruction, newStart ) - newOffset );
+		}
+		else if( opcode == 0xAA || opcode == 0xAB ) { // switches
+
+			// The padding after the opcode depends on the position of the instruction
+			out.writeByte( opcode );
+			for( int i = ( newOffset + 1 ) % 4; i != 0 && i < 4; i++ ) {
+				out.writeByte( 0 );
+			}
+			int body = at + 1 + ( ( 4 - ( offset + 1 ) % 4 ) % 4 );
+			out.writeInt( mapOffset( offset + u4( body ), isInstruction, newStart ) - newOffset );
+			if( opcode == 0xAA ) {
+				int low = u4( body + 4 );
+				int high = u4( body + 8 );
+				out.writeInt( low );
+				out.writeInt( high );
+				for( int i = 0; i < high - low + 1; i++ ) {
+					out.writeInt( mapOffset( offset + u4( body + 12 + 4 * i ), isInstruction, newStart ) - newOffset );
+				}
+			}
+			else {
+				int pairs = u4( body + 4 );
+				out.writeInt( pairs );
+				for( int i = 0; i < pairs; i++ ) {
+					out.writeInt( u4( body + 8 + 8 * i ) );
+					out.writeInt( mapOffset( offset + u4( body + 12 + 8 * i ), isInstruction, newStart ) - newOffset );
+				}
+			}
+		}
+		else {
+			out.write( _bytes, at, instructionLength( codeStart, offset, offset ) );
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the stack map frames with their offsets moved.
+	 */
+	private void writeStackMap( DataOutputStream out, int attributeStart, boolean[] isInstruction, int[] newStart,
+			int[] newInstruction ) throws IOException {
+
+		ByteArrayOutputStream frameBytes = new ByteArrayOutputStream();
+		DataOutputStream frames = new DataOutputStream( frameBytes );
+
+		int pos = attributeStart + 6;
+		int frameCount = u2( pos );
+		pos += 2;
+		frames.writeShort( frameCount );
+
+		int offset = -1;
+		int newOffset = -1;
+		for( int i = 0; i < frameCount; i++ ) {
+			int type = _bytes[ pos++ ] & 0xFF;
+			int delta = 0;
+			if( type < 128 ) {
+				delta = type & 0x3F;
+			}
+			else if( type >= 247 ) {
+				delta = u2( pos );
+				pos += 2;
+			}
+			else {
+				throw new IllegalStateException( "Unknown stack map frame " + type );
+			}
+
+			// Frames are placed where the inserted code begins, the state there is the same
+			offset = offset + delta + 1;
+			int frameOffset = mapOffset( offset, isInstruction, newStart );
+			int newDelta = frameOffset - newOffset - 1;
+			newOffset = frameOffset;
+
+			if( type < 64 || type == 251 ) { // same frame
+				if( newDelta < 64 ) {
+					frames.writeByte( newDelta );
+				}
+				else {
+					frames.writeByte( 251 );
+					frames.writeShort( newDelta );
+				}
+			}
+			else if( type < 128 || type == 247 ) { // same locals with one stack item
+				if( newDelta < 64 ) {
+					frames.writeByte( 64 + newDelta );
+				}
+				else {
+					frames.writeByte( 247 );
+					frames.writeShort( newDelta );
+				}
+				pos = copyVerificationType( frames, pos, newInstruction );
+			}
+			else if( type < 251 ) { // chop frame
+				frames.writeByte( type );
+				frames.writeShort( newDelta );
+			}
+			else if( type < 255 ) { // append frame
+				frames.writeByte( type );
+				frames.writeShort( newDelta );
+				for( int j = 0; j < type - 251; j++ ) {
+					pos = copyVerificationType( frames, pos, newInstruction );
+				}
+			}
+			else { // full frame
+				frames.writeByte( type );
+				frames.writeShort( newDelta );
+				for( int k = 0; k < 2; k++ ) { // locals then stack
+					int count = u2( pos );
+					pos += 2;
+					frames.writeShort( count );
+					for( int j = 0; j < count; j++ ) {
+						pos = copyVerificationType( frames, pos, newInstruction );
+					}
+				}
+			}
+		}
+		frames.flush();
+
+		out.writeShort( u2( attributeStart ) );
+		out.writeInt( frameBytes.size() );
+		frameBytes.writeTo( out );
+	}
+
+	/**
+	 * Copies a verification type, an uninitialized type holds the offset of its new instruction.
+	 *
+	 * @return the position after the verification type
+	 */
+	private int copyVerificationType( DataOutputStream out, int pos, int[] newInstruction ) throws IOException {
+		int tag = _bytes[ pos ] & 0xFF;
+		out.writeByte( tag );
+		if( tag == 7 ) { // object
+			out.writeShort( u2( pos + 1 ) );
+			return pos + 3;
+		}
+		else if( tag == 8 ) { // uninitialized
+			out.writeShort( newInstruction[ u2( pos + 1 ) ] );
+			return pos + 3;
+		}
+		return pos + 1;
+	}
+
+	/**
+	 * Writes the line number table with its offsets moved.
+	 */
+	private void writeLineNumbers( DataOutputStream out, int attributeStart, boolean[] isInstruction, int[] newStart )
+			throws IOException {
+		int count = u2( attributeStart + 6 );
+		out.writeShort( u2( attributeStart ) );
+		out.writeInt( 2 + 4 * count );
+		out.writeShort( count );
+		for( int i = 0; i < count; i++ ) {
+			int entry = attributeStart + 8 + 4 * i;
+			out.writeShort( mapOffset( u2( entry ), isInstruction, newStart ) );
+			out.writeShort( u2( entry + 2 ) );
+		}
+	}
+
+	/**
+	 * Writes a local variable (or local variable type) table with its ranges moved.
+	 */
+	private void writeLocalVariables( DataOutputStream out, int attributeStart, boolean[] isInstruction, int[] newStart )
+			throws IOException {
+		int count = u2( attributeStart + 6 );
+		out.writeShort( u2( attributeStart ) );
+		out.writeInt( 2 + 10 * count );
+		out.writeShort( count );
+		for( int i = 0; i < count; i++ ) {
+			int entry = attributeStart + 8 + 10 * i;
+			int start = u2( entry );
+			int newStartPc = mapOffset( start, isInstruction, newStart );
+			out.writeShort( newStartPc );
+			out.writeShort( mapOffset( start + u2( entry + 2 ), isInstruction, newStart ) - newStartPc );
+			out.write( _bytes, entry + 4, 6 );
+		}
+	}
+
+	/**
+	 * Maps an offset of the original code to the new code.
+	 */
+	private int mapOffset( int offset, boolean[] isInstruction, int[] newStart ) {
+		if( offset < 0 || offset >= isInstruction.length || !isInstruction[ offset ] ) {
+			throw new IllegalStateException( "Offset " + offset + " is not an instruction" );
+		}
+		return newStart[ offset ];
+	}
+
+	/**
+	 * Finds the source line of an instruction, -1 if there is no line number table.
+	 */
+	private int findLine( int lineNumbersStart, int offset ) {
+		if( lineNumbersStart == -1 ) {
+			return -1;
+		}
+		int line = -1;
+		int bestStart = -1;
+		int count = u2( lineNumbersStart + 6 );
+		for( int i = 0; i < count; i++ ) {
+			int entry = lineNumbersStart + 8 + 4 * i;
+			int start = u2( entry );
+			if( start <= offset && start > bestStart ) {
+				bestStart = start;
+				line = u2( entry + 2 );
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * Gets the length of an instruction, the length of a switch depends on where it is placed.
+	 *
+	 * @param codeStart the offset of the code in the class file
+	 * @param offset the offset of the instruction in the code
+	 * @param placedAt the offset the instruction is placed at
+	 * @return the length of the instruction
+	 */
+	private int instructionLength( int codeStart, int offset, int placedAt ) {
+		int at = codeStart + offset;
+		int opcode = _bytes[ at ] & 0xFF;
+
+		if( opcode == 0xAA || opcode == 0xAB ) {
+			int body = at + 1 + ( ( 4 - ( offset + 1 ) % 4 ) % 4 );
+			int padding = ( 4 - ( placedAt + 1 ) % 4 ) % 4;
+			if( opcode == 0xAA ) {
+				return 1 + padding + 12 + 4 * ( u4( body + 8 ) - u4( body + 4 ) + 1 );
+			}
+			return 1 + padding + 8 + 8 * u4( body + 4 );
+		}
+		if( opcode == 0xC4 ) { // wide
+			return ( ( _bytes[ at + 1 ] & 0xFF ) == 0x84 ) ? 6 : 4;
+		}
+		if( opcode >= LENGTHS.length() || LENGTHS.charAt( opcode ) == '0' ) {
+			throw new IllegalStateException( "Unknown opcode " + opcode );
+		}
+		return LENGTHS.charAt( opcode ) - '0';
+	}
+
+	/** The length of each instruction by opcode, 0 for the instructions of varying length or unknown opcodes */
+	private static final String	LENGTHS	= "1111111111111111" // 0x00
+												+ "2323322222111111" // 0x10
+												+ "1111111111111111" // 0x20
+												+ "1111112222211111" // 0x30
+												+ "1111111111111111" // 0x40
+												+ "1111111111111111" // 0x50
+												+ "1111111111111111" // 0x60
+												+ "1111111111111111" // 0x70
+												+ "1111311111111111" // 0x80
+												+ "1111111113333333" // 0x90
+												+ "3333333332001111" // 0xA0
+												+ "1133333335532311" // 0xB0
+												+ "3311043355";		// 0xC0
+
+	/**
+	 * Reads the constant pool, finding the offset of each entry.
+	 *
+	 * @return false if the constant pool has an unknown entry
+	 */
+	private boolean readConstantPool() {
+		_cpCount = u2( 8 );
+		_cpOffsets = new int[ _cpCount ];
+		int pos = 10;
+		for( int i = 1; i < _cpCount; i++ ) {
+			_cpOffsets[ i ] = pos;
+			int tag = _bytes[ pos ] & 0xFF;
+			switch( tag ) {
+				case 1: // utf8
+					pos += 3 + u2( pos + 1 );
+					break;
+				case 3: // integer
+				case 4: // float
+				case 9: // field
+				case 10: // method
+				case 11: // interface method
+				case 12: // name and type
+				case 17: // dynamic
+				case 18: // invoke dynamic
+					pos += 5;
+					break;
+				case 5: // long
+				case 6: // double
+					pos += 9;
+					i++;
+					break;
+				case 7: // class
+				case 8: // string
+				case 16: // method type
+				case 19: // module
+				case 20: // package
+					pos += 3;
+					break;
+				case 15: // method handle
+					pos += 4;
+					break;
+				default:
+					return false;
+			}
+		}
+		_cpEnd = pos;
+		return true;
+	}
+
+	/**
+	 * Finds the path of the source file from the package of the class and its SourceFile attribute.
+	 */
+	private String findSourcePath( String className, int attributesStart ) {
+		String packagePath = ( className.lastIndexOf( '/' ) == -1 ) ? "" : className.substring( 0,
+				className.lastIndexOf( '/' ) + 1 );
+
+		int count = u2( attributesStart );
+		int pos = attributesStart + 2;
+		for( int i = 0; i < count; i++ ) {
+			if( utf8( u2( pos ) ).equals( "SourceFile" ) ) {
+				return packagePath + utf8( u2( pos + 6 ) );
+			}
+			pos += 6 + u4( pos + 2 );
+		}
+
+		// Guess the source file from the name of the outermost class
+		String name = className.substring( packagePath.length() );
+		if( name.indexOf( '$' ) != -1 ) {
+			name = name.substring( 0, name.indexOf( '$' ) );
+		}
+		return packagePath + name + ".java";
+	}
+
+	/**
+	 * Skips a field or method.
+	 *
+	 * @return the offset after the member
+	 */
+	private int skipMember( int pos ) {
+		int attributeCount = u2( pos + 6 );
+		pos += 8;
+		for( int i = 0; i < attributeCount; i++ ) {
+			pos += 6 + u4( pos + 2 );
+		}
+		return pos;
+	}
+
+	/**
+	 * Gets the string of a utf8 constant.
+	 */
+	private String utf8( int index ) {
+		int pos = _cpOffsets[ index ];
+		int length = u2( pos + 1 );
+		StringBuilder builder = new StringBuilder( length );
+
+		// Modified utf8, names are nearly always plain ascii
+		for( int i = pos + 3; i < pos + 3 + length; ) {
+			int c = _bytes[ i ] & 0xFF;
+			if( c < 0x80 ) {
+				builder.append( (char)c );
+				i++;
+			}
+			else if( ( c & 0xE0 ) == 0xC0 ) {
+				builder.append( (char)( ( ( c & 0x1F ) << 6 ) | ( _bytes[ i + 1 ] & 0x3F ) ) );
+				i += 2;
+			}
+			else {
+				builder.append( (char)( ( ( c & 0x0F ) << 12 ) | ( ( _bytes[ i + 1 ] & 0x3F ) << 6 ) | ( _bytes[ i + 2 ] & 0x3F ) ) );
+				i += 3;
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Writes a utf8 constant, the strings written are plain ascii.
+	 */
+	private void writeUtf8( DataOutputStream out, String value ) throws IOException {
+		out.writeByte( 1 );
+		out.writeUTF( value );
+	}
+
+	private int u2( int pos ) {
+		return ( ( _bytes[ pos ] & 0xFF ) << 8 ) | ( _bytes[ pos + 1 ] & 0xFF );
+	}
+
+	private int u4( int pos ) {
+		return ( ( _bytes[ pos ] & 0xFF ) << 24 ) | ( ( _bytes[ pos + 1 ] & 0xFF ) << 16 ) | ( ( _bytes[ pos + 2 ] & 0xFF ) << 8 )
+				| ( _bytes[ pos + 3 ] & 0xFF );
+	}
+}
@@ -0,0 +1,297 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class is a small memory-mapped file that holds the settings of the noise points while the
+ * program under test runs. The plugin (or the command line) writes the file and the running program
+ * picks up the change the next time a point is reached, so the noise can be tuned without restarting.
+ * <br/><br/>
+ *
+ * The file is a header followed by a fixed number of entries. An entry overrides the settings of the
+ * point whose key has the given hash, and the global entry overrides the settings of every point. A
+ * setting of -1 keeps the setting the point was registered with. The generation counter in the header
+ * is odd while the file is being written and is made even again once the write is done, readers only
+ * use the entries when they see the same even generation before and after reading them.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class ControlFile {
+
+	/** The settings of an entry that are left as registered */
+	public static final int		UNCHANGED			= -1;
+
+	/** The number of entries a new control file holds */
+	public static final int		DEFAULT_CAPACITY	= 1024;
+
+	/** The system property and environment variable that give the path of the control file */
+	public static final String	PROPERTY			= "eclipticon.control";
+	public static final String	ENVIRONMENT			= "ECLIPTICON_CONTROL";
+
+	private static final int	MAGIC				= 0x45434C50;	// "ECLP"
+	private static final int	MAGIC_OFFSET		= 0;
+	private static final int	GENERATION_OFFSET	= 4;
+	private static final int	CAPACITY_OFFSET		= 8;
+	private static final int	COUNT_OFFSET		= 12;
+	private static final int	GLOBAL_OFFSET		= 16;
+	private static final int	ENTRIES_OFFSET		= 32;
+	private static final int	ENTRY_SIZE			= 20;
+
+	private MappedByteBuffer	_buffer				= null;	// The mapped file
+	private int					_capacity			= 0;	// The number of entries the file holds
+
+	/**
+	 * Instantiates a new control file on a mapped buffer.
+	 *
+	 * @param buffer the mapped file
+	 */
+	private ControlFile( MappedByteBuffer buffer ) {
+		_buffer = buffer;
+		_capacity = buffer.getInt( CAPACITY_OFFSET );
+	}
+
+	/**
+	 * Creates a new control file with no overrides, replacing any file that is there.
+	 *
+	 * @param file the control file
+	 * @param capacity the number of entries the file holds
+	 * @return the control file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static ControlFile create( File file, int capacity ) throws IOException {
+		RandomAccessFile access = new RandomAccessFile( file, "rw" );
+		try {
+			int size = ENTRIES_OFFSET + ENTRY_SIZE * capacity;
+			access.setLength( size );
+			MappedByteBuffer buffer = access.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, size );
+			for( int i = 0; i < size; i += 4 ) {
+				buffer.putInt( i, 0 );
+			}
+			buffer.putInt( CAPACITY_OFFSET, capacity );
+			for( int i = 0; i < 4; i++ ) {
+				buffer.putInt( GLOBAL_OFFSET + 4 * i, UNCHANGED );
+			}
+			buffer.putInt( MAGIC_OFFSET, MAGIC );
+			buffer.force();
+			return new ControlFile( buffer );
+		}
+		finally {
+			access.close();
+		}
+	}
+
+	/**
+	 * Opens an existing control file.
+	 *
+	 * @param file the control file
+	 * @param writable if the file is opened to be written
+	 * @return the control file, or null if the file is not a control file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static ControlFile open( File file, boolean writable ) throws IOException {
+		RandomAccessFile access = new RandomAccessFile( file, writable ? "rw" : "r" );
+		try {
+			if( access.length() < ENTRIES_OFFSET ) {
+				return null;
+			}
+			MappedByteBuffer buffer = access.getChannel().map(
+					writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, access.length() );
+			if( buffer.getInt( MAGIC_OFFSET ) != MAGIC
+					|| access.length() < ENTRIES_OFFSET + ENTRY_SIZE * (long)buffer.getInt( CAPACITY_OFFSET ) ) {
+				return null;
+			}
+			return new ControlFile( buffer );
+		}
+		finally {
+			access.close();
+		}
+	}
+
+	/**
+	 * Opens the control file given by the system property or environment variable, if there is one.
+	 *
+	 * @return the control file, or null if there is none
+	 */
+	public static ControlFile openConfigured() {
+		String path = System.getProperty( PROPERTY );
+		if( path == null ) {
+			path = System.getenv( ENVIRONMENT );
+		}
+		if( path == null || path.trim().length() == 0 || !new File( path.trim() ).isFile() ) {
+			return null;
+		}
+		try {
+			return open( new File( path.trim() ), false );
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the hash of a point key, which is how the entries refer to points.
+	 *
+	 * @param key the key of the point
+	 * @return the hash of the key
+	 */
+	public static int hashKey( String key ) {
+		return key.hashCode();
+	}
+
+	/**
+	 * Gets the generation of the file, this is a plain read of the mapped memory so it is cheap enough
+	 * to check at every point.
+	 *
+	 * @return the generation
+	 */
+	public int getGeneration() {
+		return _buffer.getInt( GENERATION_OFFSET );
+	}
+
+	/**
+	 * Reads a consistent copy of the overrides, waiting out any write in progress.
+	 *
+	 * @return the generation that was read, the global settings and then the key hash and settings of
+	 *         each entry
+	 */
+	public int[] readOverrides() {
+		while( true ) {
+			int generation = getGeneration();
+			if( ( generation & 1 ) == 0 ) {
+				int count = Math.max( 0, Math.min( _buffer.getInt( COUNT_OFFSET ), _capacity ) );
+				int[] overrides = new int[ 5 + 5 * count ];
+				overrides[ 0 ] = generation;
+				for( int i = 0; i < 4; i++ ) {
+					overrides[ 1 + i ] = _buffer.getInt( GLOBAL_OFFSET + 4 * i );
+				}
+				for( int i = 0; i < 5 * count; i++ ) {
+					overrides[ 5 + i ] = _buffer.getInt( ENTRIES_OFFSET + 4 * i );
+				}
+				if( generation == getGeneration() ) {
+					return overrides;
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Sets the global override, which applies to every point.
+	 *
+	 * @param type the noise type, or UNCHANGED
+	 * @param probability the chance of the noise activating out of 100, or UNCHANGED
+	 * @param low the lower bound of the sleep delay, or UNCHANGED
+	 * @param high the upper bound of the sleep delay, or UNCHANGED
+	 */
+	public synchronized void setGlobal( int type, int probability, int low, int high ) {
+		beginWrite();
+		_buffer.putInt( GLOBAL_OFFSET, type );
+		_buffer.putInt( GLOBAL_OFFSET + 4, probability );
+		_buffer.putInt( GLOBAL_OFFSET + 8, low );
+		_buffer.putInt( GLOBAL_OFFSET + 12, high );
+		endWrite();
+	}
+
+	/**
+	 * Sets the override of a point, replacing any override it already has.
+	 *
+	 * @param key the key of the point
+	 * @param type the noise type, or UNCHANGED
+	 * @param probability the chance of the noise activating out of 100, or UNCHANGED
+	 * @param low the lower bound of the sleep delay, or UNCHANGED
+	 * @param high the upper bound of the sleep delay, or UNCHANGED
+	 * @return false if the file is full
+	 */
+	public synchronized boolean setPoint( String key, int type, int probability, int low, int high ) {
+		int hash = hashKey( key );
+		int count = _buffer.getInt( COUNT_OFFSET );
+		int index = 0;
+		while( index < count && _buffer.getInt( ENTRIES_OFFSET + ENTRY_SIZE * index ) != hash ) {
+			index++;
+		}
+		if( index == _capacity ) {
+			return false;
+		}
+
+		beginWrite();
+		int entry = ENTRIES_OFFSET + ENTRY_SIZE * index;
+		_buffer.putInt( entry, hash );
+		_buffer.putInt( entry + 4, type );
+		_buffer.putInt( entry + 8, probability );
+		_buffer.putInt( entry + 12, low );
+		_buffer.putInt( entry + 16, high );
+		if( index == count ) {
+			_buffer.putInt( COUNT_OFFSET, count + 1 );
+		}
+		endWrite();
+		return true;
+	}
+
+	/**
+	 * Replaces all of the overrides in one write, so a running program never sees only some of them.
+	 *
+	 * @param global the type, probability, low and high delay of the global override
+	 * @param keys the keys of the points
+	 * @param settings the type, probability, low and high delay of each point
+	 * @return false if the file could not hold all of the points
+	 */
+	public synchronized boolean replace( int[] global, String[] keys, int[] settings ) {
+		int count = Math.min( keys.length, _capacity );
+
+		beginWrite();
+		for( int i = 0; i < 4; i++ ) {
+			_buffer.putInt( GLOBAL_OFFSET + 4 * i, global[ i ] );
+		}
+		for( int i = 0; i < count; i++ ) {
+			int entry = ENTRIES_OFFSET + ENTRY_SIZE * i;
+			_buffer.putInt( entry, hashKey( keys[ i ] ) );
+			for( int j = 0; j < 4; j++ ) {
+				_buffer.putInt( entry + 4 + 4 * j, settings[ 4 * i + j ] );
+			}
+		}
+		_buffer.putInt( COUNT_OFFSET, count );
+		endWrite();
+		return count == keys.length;
+	}
+
+	/**
+	 * Gets the number of entries the file holds.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return _capacity;
+	}
+
+	/**
+	 * Removes all of the overrides.
+	 */
+	public synchronized void clear() {
+		beginWrite();
+		_buffer.putInt( COUNT_OFFSET, 0 );
+		for( int i = 0; i < 4; i++ ) {
+			_buffer.putInt( GLOBAL_OFFSET + 4 * i, UNCHANGED );
+		}
+		endWrite();
+	}
+
+	/**
+	 * Makes the generation odd so readers wait for the write to finish.
+	 */
+	private void beginWrite() {
+		_buffer.putInt( GENERATION_OFFSET, getGeneration() + 1 );
+	}
+
+	/**
+	 * Makes the generation even again, publishing the write.
+	 */
+	private void endWrite() {
+		_buffer.putInt( GENERATION_OFFSET, getGeneration() + 1 );
+		_buffer.force();
+	}
+}
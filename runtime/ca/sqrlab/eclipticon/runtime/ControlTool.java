@@ -0,0 +1,116 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * This class is the command line for the control file, so the noise of a running program can be
+ * changed from a script as well as from the plugin. It is the main class of the runtime jar:<br/><br/>
+ * 
+ * java -jar eclipticon-runtime.jar create &lt;file&gt; [capacity]<br/>
+ * java -jar eclipticon-runtime.jar global &lt;file&gt; &lt;type&gt; &lt;probability&gt; &lt;low&gt; &lt;high&gt;<br/>
+ * java -jar eclipticon-runtime.jar set &lt;file&gt; &lt;key&gt; &lt;type&gt; &lt;probability&gt; &lt;low&gt; &lt;high&gt;<br/>
+ * java -jar eclipticon-runtime.jar clear &lt;file&gt;<br/>
+ * java -jar eclipticon-runtime.jar show &lt;file&gt;<br/><br/>
+ * 
+ * A setting given as "-" is left as the point was registered.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class ControlTool {
+
+	/**
+	 * Runs a command on a control file.
+	 * 
+	 * @param args the command and its arguments
+	 */
+	public static void main( String[] args ) {
+		try {
+			if( !run( args ) ) {
+				printUsage();
+				System.exit( 1 );
+			}
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+			System.exit( 2 );
+		}
+	}
+
+	/**
+	 * Runs a command on a control file.
+	 * 
+	 * @param args the command and its arguments
+	 * @return false if the command was not understood
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	static boolean run( String[] args ) throws IOException {
+		if( args.length < 2 ) {
+			return false;
+		}
+		String command = args[ 0 ];
+		File file = new File( args[ 1 ] );
+
+		if( command.equals( "create" ) && args.length <= 3 ) {
+			ControlFile.create( file, ( args.length == 3 ) ? Integer.parseInt( args[ 2 ] ) : ControlFile.DEFAULT_CAPACITY );
+			return true;
+		}
+
+		ControlFile control = ControlFile.open( file, true );
+		if( control == null ) {
+			System.err.println( file + " is not a control file" );
+			return true;
+		}
+
+		if( command.equals( "global" ) && args.length == 6 ) {
+			control.setGlobal( parseSetting( args[ 2 ] ), parseSetting( args[ 3 ] ), parseSetting( args[ 4 ] ),
+					parseSetting( args[ 5 ] ) );
+		}
+		else if( command.equals( "set" ) && args.length == 7 ) {
+			if( !control.setPoint( args[ 2 ], parseSetting( args[ 3 ] ), parseSetting( args[ 4 ] ),
+					parseSetting( args[ 5 ] ), parseSetting( args[ 6 ] ) ) ) {
+				System.err.println( file + " is full" );
+			}
+		}
+		else if( command.equals( "clear" ) && args.length == 2 ) {
+			control.clear();
+		}
+		else if( command.equals( "show" ) && args.length == 2 ) {
+			int[] overrides = control.readOverrides();
+			System.out.println( "generation " + overrides[ 0 ] );
+			System.out.println( "global " + overrides[ 1 ] + " " + overrides[ 2 ] + " " + overrides[ 3 ] + " "
+					+ overrides[ 4 ] );
+			for( int entry = 5; entry + 5 <= overrides.length; entry += 5 ) {
+				System.out.println( "point " + Integer.toHexString( overrides[ entry ] ) + " " + overrides[ entry + 1 ] + " "
+						+ overrides[ entry + 2 ] + " " + overrides[ entry + 3 ] + " " + overrides[ entry + 4 ] );
+			}
+		}
+		else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a setting, "-" leaves the setting unchanged.
+	 * 
+	 * @param value the setting
+	 * @return the setting as a number
+	 */
+	private static int parseSetting( String value ) {
+		return value.equals( "-" ) ? ControlFile.UNCHANGED : Integer.parseInt( value );
+	}
+
+	/**
+	 * Prints how the command line is used.
+	 */
+	private static void printUsage() {
+		System.err.println( "Usage: java -jar eclipticon-runtime.jar <command> <file> ..." );
+		System.err.println( "  create <file> [capacity]" );
+		System.err.println( "  global <file> <type> <probability> <low> <high>" );
+		System.err.println( "  set <file> <key> <type> <probability> <low> <high>" );
+		System.err.println( "  clear <file>" );
+		System.err.println( "  show <file>" );
+		System.err.println( "A setting of - is left as the point was registered." );
+	}
+}
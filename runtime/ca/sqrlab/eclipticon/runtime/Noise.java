@@ -0,0 +1,443 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.util.HashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is the entry point that instrumented code calls at each instrumentation point. Every
+ * point is registered once with its type of noise, probability and delay range, and is then referred
+ * to by the number it was given, so the call placed in the code stays as small as possible.<br/><br/>
+ *
+ * When a {@link ControlFile} is given, the settings of the points can be changed while the program
+ * runs. Each point checks the generation of the control file and the points are rebuilt with the new
+ * overrides when it has changed. When a budget is given, the delays of a run stop once they add up to
+ * the budget (see {@link NoiseBudget}), and when a decay schedule is given the points that are reached
+ * most often make less noise (see {@link NoiseDecay}). The points that hold a lock longer are charged to
+ * a budget of their own when one is given, so their delays don't use up the budget of the other points.
+ * The noise of a whole run is switched off with the {@link NoiseSwitch}. A virtual thread is delayed
+ * without pinning its carrier (see {@link NoiseThreads}).
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public final class Noise {
+
+	/** These are the types of noise, they match the types used by the plugin */
+	public static final int				SLEEP				= 0;
+	public static final int				YIELD				= 1;
+	public static final int				PARK				= 2;
+	public static final int				SPIN				= 3;
+	public static final int				NANOSLEEP			= 4;
+
+	/** The flag added to the type of a point that widens the window a lock is held for, its delays have their own budget */
+	public static final int				HOLD				= 16;
+
+	/** The system property and environment variable that give the budget of the delays of a run */
+	public static final String			BUDGET_PROPERTY		= "eclipticon.budget";
+	public static final String			BUDGET_ENVIRONMENT	= "ECLIPTICON_BUDGET";
+
+	/** The system property and environment variable that give the budget of the delays of the hold points */
+	public static final String			HOLD_BUDGET_PROPERTY	= "eclipticon.holdBudget";
+	public static final String			HOLD_BUDGET_ENVIRONMENT	= "ECLIPTICON_HOLD_BUDGET";
+
+	/** The suffix of a budget whose points do nothing once it is spent, instead of yielding */
+	public static final String			BUDGET_NONE			= "none";
+
+	/** The system property and environment variable that give the decay schedule of hot points */
+	public static final String			DECAY_PROPERTY		= "eclipticon.decay";
+	public static final String			DECAY_ENVIRONMENT	= "ECLIPTICON_DECAY";
+
+	/** The system property and environment variable that give how virtual threads are delayed */
+	public static final String			VIRTUAL_PROPERTY	= "eclipticon.virtual";
+	public static final String			VIRTUAL_ENVIRONMENT	= "ECLIPTICON_VIRTUAL";
+
+	/** The longest a spin noise busy-waits, in microseconds, so a wrong range can't take over a processor */
+	public static final int				MAX_SPIN			= 1000;
+
+	/** The system property and environment variable that give the seed of the noise */
+	public static final String			SEED_PROPERTY		= "eclipticon.seed";
+	public static final String			SEED_ENVIRONMENT	= "ECLIPTICON_SEED";
+
+	private static final Object			LOCK				= new Object();					// Guards the registration of points
+	private static final ControlFile	CONTROL				= ControlFile.openConfigured();	// The control file, if one was given
+
+	private static Point[]				_registered			= new Point[ 0 ];				// The points as they were registered
+	private static int[]				_overrides			= null;							// The overrides last read from the control file
+	private static volatile int			_generation			= -1;							// The generation of the overrides in use
+	private static volatile Point[]		_points				= new Point[ 0 ];				// The points in use, indexed by number
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private Noise() {
+	}
+
+	/**
+	 * Registers a new instrumentation point.
+	 *
+	 * @param key the key of the point, which the control file refers to it by
+	 * @param type the noise type
+	 * @param probability the chance of the noise activating out of 100
+	 * @param low the lower bound of the sleep delay
+	 * @param high the upper bound of the sleep delay
+	 * @return the number of the point
+	 */
+	public static int register( String key, int type, int probability, int low, int high ) {
+		return register( new String[] { key }, new int[] { type, probability, low, high } );
+	}
+
+	/**
+	 * Registers the table of points of an instrumented source file, the points get consecutive numbers
+	 * and are keyed by the source file and their index in the table.
+	 *
+	 * @param source the path of the source file
+	 * @param table the type, probability, low and high delay of each point
+	 * @return the number of the first point
+	 */
+	public static int register( String source, int[] table ) {
+		String[] keys = new String[ table.length / 4 ];
+		for( int i = 0; i < keys.length; i++ ) {
+			keys[ i ] = makeKey( source, i );
+		}
+		return register( keys, table );
+	}
+
+	/**
+	 * Makes the key of a point of the table of a source file.
+	 *
+	 * @param source the path of the source file
+	 * @param index the index of the point in the table
+	 * @return the key of the point
+	 */
+	public static String makeKey( String source, int index ) {
+		return source + "#" + index;
+	}
+
+	/**
+	 * Gets the seed the noise decisions are derived from.
+	 *
+	 * @return the seed, or null if no seed was given and the decisions can't be repeated
+	 */
+	public static Long getSeed() {
+		return NoiseRandom.getSeed();
+	}
+
+	/**
+	 * Makes the value of a budget, as it is given in the system property or environment variable.
+	 *
+	 * @param amount the total delay in milliseconds, or the percentage of the running time
+	 * @param percent if the amount is a percentage of the running time
+	 * @param yield if the points yield once the budget is spent, otherwise they do nothing
+	 * @return the value of the budget
+	 */
+	public static String makeBudget( int amount, boolean percent, boolean yield ) {
+		return amount + ( percent ? "%" : "" ) + ( yield ? "" : ":" + BUDGET_NONE );
+	}
+
+	/**
+	 * Gets the delay the points have charged to the budget of the run.
+	 *
+	 * @return the delay in nanoseconds, or -1 if there is no budget
+	 */
+	public static long getBudgetSpent() {
+		return ( NoiseBudget.CURRENT != null ) ? NoiseBudget.CURRENT.getSpent() : -1;
+	}
+
+	/**
+	 * Gets the delay the hold points have charged to their own budget.
+	 *
+	 * @return the delay in nanoseconds, or -1 if the hold points have no budget of their own
+	 */
+	public static long getHoldBudgetSpent() {
+		return ( NoiseBudget.HOLD != null ) ? NoiseBudget.HOLD.getSpent() : -1;
+	}
+
+	/**
+	 * Makes the value of a decay schedule, as it is given in the system property or environment variable.
+	 *
+	 * @param bucket if the bucket schedule is used, otherwise the logarithmic one
+	 * @param amount the hits before decaying, or the size and refill rate (per second) of the bucket
+	 * @return the value of the schedule
+	 */
+	public static String makeDecay( boolean bucket, int amount ) {
+		return ( bucket ? NoiseDecay.BUCKET : NoiseDecay.LOG ) + ":" + amount;
+	}
+
+	/**
+	 * Checks if the current thread is a virtual thread, whose delays are made without pinning its carrier.
+	 *
+	 * @return true if the thread is virtual
+	 */
+	public static boolean isVirtualThread() {
+		return NoiseThreads.isVirtual( Thread.currentThread() );
+	}
+
+	/**
+	 * Gets how the delays of virtual threads are made in this run.
+	 *
+	 * @return "park" if the virtual threads park, or "yield" if they only yield
+	 */
+	public static String getVirtualDelay() {
+		return NoiseThreads.PARKS ? NoiseThreads.PARK : NoiseThreads.YIELD;
+	}
+
+	/**
+	 * Gets the number of registered points.
+	 *
+	 * @return the number of points
+	 */
+	public static int getPointCount() {
+		return _points.length;
+	}
+
+	/**
+	 * Makes the noise of the given point, this is the call placed in the instrumented code. The
+	 * instrumented code only calls it when the {@link NoiseSwitch} is on.
+	 *
+	 * @param id the number of the point
+	 */
+	public static void point( int id ) {
+		if( !NoiseSwitch.ON ) {
+			return;
+		}
+		if( CONTROL != null && CONTROL.getGeneration() != _generation ) {
+			reload();
+		}
+
+		Point[] points = _points;
+		if( id >= 0 && id < points.length ) {
+			points[ id ].makeNoise();
+		}
+	}
+
+	/**
+	 * Makes the noise of the given point and gives back the target, this is the call placed around the
+	 * receiver of a construct that is in the middle of an expression (such as the condition of a while
+	 * loop), where a statement can't go in front of it. The value of the expression is unchanged.
+	 *
+	 * @param id the number of the point
+	 * @param target the receiver of the construct
+	 * @return the target
+	 */
+	public static <T> T at( int id, T target ) {
+		point( id );
+		return target;
+	}
+
+	/**
+	 * Registers points, applying the overrides in use to them.
+	 *
+	 * @param keys the key of each point
+	 * @param table the type, probability, low and high delay of each point
+	 * @return the number of the first point
+	 */
+	private static int register( String[] keys, int[] table ) {
+		synchronized( LOCK ) {
+			int first = _registered.length;
+			Point[] registered = new Point[ first + keys.length ];
+			System.arraycopy( _registered, 0, registered, 0, first );
+			for( int i = 0; i < keys.length; i++ ) {
+				registered[ first + i ] = new Point( ControlFile.hashKey( keys[ i ] ), first + i, table[ 4 * i ], table[ 4 * i + 1 ],
+						table[ 4 * i + 2 ], table[ 4 * i + 3 ] );
+			}
+			_registered = registered;
+			_points = applyOverrides( registered, _overrides );
+			return first;
+		}
+	}
+
+	/**
+	 * Reads the overrides from the control file and rebuilds the points with them.
+	 */
+	private static void reload() {
+		synchronized( LOCK ) {
+			if( CONTROL.getGeneration() == _generation ) {
+				return;
+			}
+			_overrides = CONTROL.readOverrides();
+			_points = applyOverrides( _registered, _overrides );
+			_generation = _overrides[ 0 ];
+		}
+	}
+
+	/**
+	 * Makes the points in use from the registered points and the overrides. The override of a point
+	 * takes precedence over the global override.
+	 *
+	 * @param registered the registered points
+	 * @param overrides the overrides read from the control file, or null if there are none
+	 * @return the points to use
+	 */
+	private static Point[] applyOverrides( Point[] registered, int[] overrides ) {
+		if( overrides == null ) {
+			return registered;
+		}
+
+		// Find the entry of each key hash
+		HashMap<Integer, Integer> entries = new HashMap<Integer, Integer>();
+		for( int entry = 5; entry + 5 <= overrides.length; entry += 5 ) {
+			entries.put( overrides[ entry ], entry + 1 );
+		}
+
+		Point[] points = new Point[ registered.length ];
+		for( int i = 0; i < registered.length; i++ ) {
+			points[ i ] = registered[ i ].override( overrides, 1 );
+			Integer entry = entries.get( registered[ i ]._keyHash );
+			if( entry != null ) {
+				points[ i ] = points[ i ].override( overrides, entry );
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * This class holds the settings of a single instrumentation point.
+	 */
+	private static final class Point {
+
+		private final int				_keyHash;		// The hash of the key of the point
+		private final int				_slot;			// The number the point was registered with, kept by its overridden copies
+		private final int				_type;			// The noise type
+		private final boolean			_hold;			// If the point widens the window a lock is held for
+		private final int				_probability;	// The chance of the noise activating out of 100
+		private final int				_low;			// The lower bound of the sleep delay
+		private final int				_high;			// The upper bound of the sleep delay
+
+		/**
+		 * Instantiates a new point, the hold flag is taken out of the type.
+		 */
+		Point( int keyHash, int slot, int type, int probability, int low, int high ) {
+			_keyHash = keyHash;
+			_slot = slot;
+			_type = type & ~HOLD;
+			_hold = ( type & HOLD ) != 0;
+			_probability = probability;
+			_low = low;
+			_high = high;
+		}
+
+		/**
+		 * Makes a copy of the point with the settings that are not UNCHANGED replaced. A hold point stays
+		 * a hold point whatever its type is changed to.
+		 *
+		 * @param settings the array holding the settings
+		 * @param offset the offset of the type, probability, low and high delay in the array
+		 * @return the overridden point
+		 */
+		Point override( int[] settings, int offset ) {
+			return new Point( _keyHash, _slot, pick( settings[ offset ], _type ) | ( _hold ? HOLD : 0 ), pick( settings[ offset + 1 ], _probability ),
+					pick( settings[ offset + 2 ], _low ), pick( settings[ offset + 3 ], _high ) );
+		}
+
+		private static int pick( int override, int value ) {
+			return ( override == ControlFile.UNCHANGED ) ? value : override;
+		}
+
+		/**
+		 * Makes the noise, the same as the noise statement the plugin writes into source code. The delay
+		 * of a sleep is in milliseconds and the delay of the other types in microseconds.
+		 */
+		void makeNoise() {
+
+			// Each thread has its own generator and hits, so no state is shared between the threads
+			NoiseRandom random = NoiseRandom.current();
+			NoiseDecay decay = NoiseDecay.CURRENT;
+			NoiseDecay.Hits hits = null;
+			if( decay != null ) {
+				hits = NoiseDecay.hits( _slot );
+				hits._count++;
+			}
+			if( random.nextInt( 100 ) > _probability || ( decay != null && !decay.activates( hits, random ) ) ) {
+				return;
+			}
+
+			if( _type == YIELD ) {
+				Thread.yield();
+				return;
+			}
+
+			int delay = ( _high > _low ) ? random.nextInt( _high - _low ) + _low : _low;
+
+			// Once the budget of the run is spent the point only yields, if it does anything
+			NoiseBudget budget = ( _hold && NoiseBudget.HOLD != null ) ? NoiseBudget.HOLD : NoiseBudget.CURRENT;
+			if( budget != null && !budget.charge( ( _type == SLEEP ) ? delay * 1000000L : delay * 1000L ) ) {
+				if( budget.yieldsWhenSpent() ) {
+					Thread.yield();
+				}
+				return;
+			}
+
+			// A virtual thread may be holding a monitor, so it is never put to sleep on its carrier
+			if( _type != SPIN && NoiseThreads.isVirtual( Thread.currentThread() ) ) {
+				NoiseThreads.delay( ( _type == SLEEP ) ? delay * 1000000L : delay * 1000L );
+				return;
+			}
+
+			if( _type == SLEEP ) {
+				try {
+					Thread.sleep( delay );
+				}
+				catch( InterruptedException e ) {
+					// Keep the interrupt for the code that was instrumented
+					Thread.currentThread().interrupt();
+				}
+			}
+			else if( _type == PARK ) {
+				LockSupport.parkNanos( delay * 1000L );
+			}
+			else if( _type == SPIN ) {
+				spinUntil( System.nanoTime() + Math.min( delay, MAX_SPIN ) * 1000L );
+			}
+			else if( _type == NANOSLEEP ) {
+				sleepNanos( delay * 1000L );
+			}
+		}
+	}
+
+	/**
+	 * Busy-waits until the given time without giving up the processor, hinting the spin to the processor
+	 * where the JDK can.
+	 * 
+	 * @param deadline the value of System.nanoTime to wait for
+	 */
+	private static void spinUntil( long deadline ) {
+		while( deadline - System.nanoTime() > 0 ) {
+			NoiseThreads.onSpinWait();
+		}
+	}
+
+	/**
+	 * Sleeps for the given time more precisely than a park does. The thread parks for the time less
+	 * the amount a park is measured to overshoot by, and spins out what is left.
+	 * 
+	 * @param nanos the time to sleep in nanoseconds
+	 */
+	private static void sleepNanos( long nanos ) {
+		long deadline = System.nanoTime() + nanos;
+		long remaining = nanos - Calibration.PARK_OVERSHOOT;
+		while( remaining > 0 && !Thread.currentThread().isInterrupted() ) {
+			LockSupport.parkNanos( remaining );
+			remaining = deadline - System.nanoTime() - Calibration.PARK_OVERSHOOT;
+		}
+		spinUntil( Math.min( deadline, System.nanoTime() + MAX_SPIN * 1000L ) );
+	}
+
+	/**
+	 * This class measures how much longer than asked a park takes on this machine, it is only loaded
+	 * the first time a nano-sleep is made.
+	 */
+	private static final class Calibration {
+
+		/** The smallest amount a short park was seen to overshoot by, in nanoseconds */
+		static final long	PARK_OVERSHOOT	= measureOvershoot();
+
+		private static long measureOvershoot() {
+			long overshoot = Long.MAX_VALUE;
+			for( int i = 0; i < 10; i++ ) {
+				long start = System.nanoTime();
+				LockSupport.parkNanos( 10000 );
+				overshoot = Math.min( overshoot, System.nanoTime() - start - 10000 );
+			}
+			return Math.max( 0, overshoot );
+		}
+	}
+}
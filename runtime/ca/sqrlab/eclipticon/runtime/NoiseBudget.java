@@ -0,0 +1,146 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class limits the total delay the noise injects into a single run of the program, so a run with
+ * many points in hot paths can't spend minutes asleep. The budget is either a total delay or a
+ * percentage of the time the program has been running, counted from the start of the JVM. Every delay
+ * is charged to a shared counter with a compare-and-set, so the points never lock to check the
+ * budget.<br/><br/>
+ *
+ * The budget is given by the system property or environment variable named in {@link Noise}, a value of
+ * "250" is a total of 250 milliseconds and a value of "10%" is a tenth of the running time. Once the
+ * budget is spent the points yield instead of delaying, or do nothing at all when the value ends with
+ * ":none" (e.g. "10%:none"). The hold points, which delay a thread while it holds a lock, can be given a
+ * budget of their own the same way, otherwise they share the budget of the run.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+final class NoiseBudget {
+
+	/** The budget of this run, or null if the delays are not limited */
+	static final NoiseBudget	CURRENT		= readBudget( Noise.BUDGET_PROPERTY, Noise.BUDGET_ENVIRONMENT );
+
+	/** The budget of the hold points of this run, or null if they share the budget of the run */
+	static final NoiseBudget	HOLD		= readBudget( Noise.HOLD_BUDGET_PROPERTY, Noise.HOLD_BUDGET_ENVIRONMENT );
+
+	private final long			_total;								// The total delay in nanoseconds, or -1 if a percentage is used
+	private final int			_percent;							// The percentage of the running time that can be delay
+	private final boolean		_yield;								// If the points yield once the budget is spent
+	private final long			_start		= findStart();			// The time the JVM started, on the System.nanoTime scale
+	private final AtomicLong	_spent		= new AtomicLong();		// The delay charged so far in nanoseconds
+
+	/**
+	 * Instantiates a new budget.
+	 *
+	 * @param total the total delay in nanoseconds, or -1 if a percentage is used
+	 * @param percent the percentage of the running time that can be delay
+	 * @param yield if the points yield once the budget is spent
+	 */
+	NoiseBudget( long total, int percent, boolean yield ) {
+		_total = total;
+		_percent = percent;
+		_yield = yield;
+	}
+
+	/**
+	 * Parses a budget.
+	 *
+	 * @param value the budget, such as "250", "10%" or "10%:none"
+	 * @return the budget, or null if the value is not a budget
+	 */
+	static NoiseBudget parse( String value ) {
+		if( value == null || value.trim().length() == 0 ) {
+			return null;
+		}
+
+		String budget = value.trim();
+		boolean yield = true;
+		int separator = budget.indexOf( ':' );
+		if( separator >= 0 ) {
+			yield = !budget.substring( separator + 1 ).trim().equalsIgnoreCase( Noise.BUDGET_NONE );
+			budget = budget.substring( 0, separator ).trim();
+		}
+		try {
+			if( budget.endsWith( "%" ) ) {
+				return new NoiseBudget( -1, Integer.parseInt( budget.substring( 0, budget.length() - 1 ).trim() ), yield );
+			}
+			return new NoiseBudget( Long.parseLong( budget ) * 1000000L, 0, yield );
+		}
+		catch( NumberFormatException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the budget from the system property, or the environment variable if the property isn't set.
+	 *
+	 * @param property the name of the system property
+	 * @param environment the name of the environment variable
+	 * @return the budget, or null if none was given
+	 */
+	private static NoiseBudget readBudget( String property, String environment ) {
+		String value = System.getProperty( property );
+		if( value == null ) {
+			value = System.getenv( environment );
+		}
+		return parse( value );
+	}
+
+	/**
+	 * Finds when the JVM started on the scale of System.nanoTime, so the running time of a percentage
+	 * budget includes the time before the first point was reached.
+	 *
+	 * @return the start of the JVM, or the current time if it isn't known
+	 */
+	private static long findStart() {
+		long now = System.nanoTime();
+		try {
+			long running = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+			return ( running > 0 ) ? now - running * 1000000L : now;
+		}
+		catch( Throwable e ) {
+			// The management classes are missing or not allowed, the budget starts now
+			return now;
+		}
+	}
+
+	/**
+	 * Charges a delay to the budget if there is enough of the budget left for it.
+	 *
+	 * @param nanos the delay in nanoseconds
+	 * @return true if the delay can be made
+	 */
+	boolean charge( long nanos ) {
+		long allowed = ( _total >= 0 ) ? _total : ( System.nanoTime() - _start ) / 100 * _percent;
+		while( true ) {
+			long spent = _spent.get();
+			if( spent + nanos > allowed ) {
+				return false;
+			}
+			if( _spent.compareAndSet( spent, spent + nanos ) ) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Checks if the points yield once the budget is spent.
+	 *
+	 * @return true if they yield, false if they do nothing
+	 */
+	boolean yieldsWhenSpent() {
+		return _yield;
+	}
+
+	/**
+	 * Gets the delay charged to the budget so far.
+	 *
+	 * @return the delay in nanoseconds
+	 */
+	long getSpent() {
+		return _spent.get();
+	}
+}
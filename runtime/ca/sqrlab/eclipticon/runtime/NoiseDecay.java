@@ -0,0 +1,157 @@
+package ca.sqrlab.eclipticon.runtime;
+
+/**
+ * This class lowers the chance of the noise of a point activating as the point is reached more often,
+ * so a point inside a tight loop stays cheap while the points that are rarely reached keep all of their
+ * noise. After the first few hits the extra delays of a hot point rarely lead to new interleavings.<br/>
+ * <br/>
+ *
+ * The schedule is given by the system property or environment variable named in {@link Noise}:
+ * <ul>
+ * <li>"log:N" - the chance falls with the base 2 logarithm of the hits, it is halved once the point has
+ * N hits, a third at 2N hits, a quarter at 4N hits and so on</li>
+ * <li>"bucket:N" - each point has a bucket of N activations that refills at N activations a second,
+ * the noise is skipped while the bucket is empty</li>
+ * </ul>
+ *
+ * Each thread keeps its own hits of every point, so the points never write to memory shared with other
+ * threads and no hit is lost. The schedule follows the hits of the thread, a point reached by many
+ * threads decays once one of them reaches it often and each thread has a bucket of its own.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+final class NoiseDecay {
+
+	/** These are the names of the schedules */
+	static final String			LOG			= "log";
+	static final String			BUCKET		= "bucket";
+
+	/** The decay schedule of this run, or null if the points don't decay */
+	static final NoiseDecay		CURRENT		= readDecay();
+
+	/** The hits of each point made by the current thread, grown as it reaches new points */
+	private static final ThreadLocal<Hits[]>	HITS	= new ThreadLocal<Hits[]>() {
+
+		protected Hits[] initialValue() {
+			return new Hits[ 0 ];
+		}
+	};
+
+	private final boolean		_bucket;	// If the bucket schedule is used, otherwise the logarithmic one
+	private final long			_amount;	// The hits before decaying, or the size and refill rate of the bucket
+
+	/**
+	 * Instantiates a new decay schedule.
+	 *
+	 * @param bucket if the bucket schedule is used, otherwise the logarithmic one
+	 * @param amount the hits before decaying, or the size and refill rate of the bucket
+	 */
+	NoiseDecay( boolean bucket, long amount ) {
+		_bucket = bucket;
+		_amount = amount;
+	}
+
+	/**
+	 * Parses a decay schedule.
+	 *
+	 * @param value the schedule, such as "log:1000" or "bucket:50"
+	 * @return the schedule, or null if the value is not a schedule
+	 */
+	static NoiseDecay parse( String value ) {
+		if( value == null ) {
+			return null;
+		}
+
+		int separator = value.indexOf( ':' );
+		if( separator < 0 ) {
+			return null;
+		}
+		String schedule = value.substring( 0, separator ).trim();
+		try {
+			long amount = Long.parseLong( value.substring( separator + 1 ).trim() );
+			if( amount > 0 && schedule.equalsIgnoreCase( LOG ) ) {
+				return new NoiseDecay( false, amount );
+			}
+			if( amount > 0 && schedule.equalsIgnoreCase( BUCKET ) ) {
+				return new NoiseDecay( true, amount );
+			}
+		}
+		catch( NumberFormatException e ) {
+			// Not a schedule
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the schedule from the system property, or the environment variable if the property isn't
+	 * set.
+	 *
+	 * @return the schedule, or null if none was given
+	 */
+	private static NoiseDecay readDecay() {
+		String value = System.getProperty( Noise.DECAY_PROPERTY );
+		if( value == null ) {
+			value = System.getenv( Noise.DECAY_ENVIRONMENT );
+		}
+		return parse( value );
+	}
+
+	/**
+	 * Gets the hits of a point made by the current thread.
+	 *
+	 * @param slot the number the point was registered with
+	 * @return the hits
+	 */
+	static Hits hits( int slot ) {
+		Hits[] hits = HITS.get();
+		if( slot >= hits.length ) {
+			Hits[] grown = new Hits[ Math.max( slot + 1, hits.length * 2 ) ];
+			System.arraycopy( hits, 0, grown, 0, hits.length );
+			HITS.set( grown );
+			hits = grown;
+		}
+		if( hits[ slot ] == null ) {
+			hits[ slot ] = new Hits();
+		}
+		return hits[ slot ];
+	}
+
+	/**
+	 * Decides if noise that passed its probability check still activates, given how hot the point is.
+	 *
+	 * @param hits the hits of the point by the current thread, including this one
+	 * @param random the generator of the current thread
+	 * @return true if the noise activates
+	 */
+	boolean activates( Hits hits, NoiseRandom random ) {
+		if( _bucket ) {
+			long now = System.nanoTime();
+			double tokens = Math.min( _amount, hits._tokens + ( now - hits._refilled ) * ( _amount / 1e9 ) );
+			hits._refilled = now;
+			if( tokens < 1 ) {
+				hits._tokens = tokens;
+				return false;
+			}
+			hits._tokens = tokens - 1;
+			return true;
+		}
+
+		long ratio = hits._count / _amount;
+		if( ratio == 0 ) {
+			return true;
+		}
+		int level = 63 - Long.numberOfLeadingZeros( ratio );
+		return random.nextInt( level + 2 ) == 0;
+	}
+
+	/**
+	 * This class holds the hits of a single point by a single thread, it is shared by the copies of the
+	 * point made when the control file overrides its settings.
+	 */
+	static final class Hits {
+
+		long	_count		= 0;					// The number of times the point was reached
+		double	_tokens		= Double.MAX_VALUE;		// The activations left in the bucket
+		long	_refilled	= System.nanoTime();	// The time the bucket was last refilled
+	}
+}
@@ -0,0 +1,118 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is the random number generator of a single thread. Each thread that reaches a point gets
+ * its own generator, so making noise never touches state shared with other threads (unlike a shared
+ * java.util.Random, whose seed every thread would compete to update). The generator is a xorshift64*
+ * generator, which is small and fast and random enough for choosing noise.<br/><br/>
+ * 
+ * When a seed is given (see {@link Noise#SEED_PROPERTY}) the generator of each thread is derived from
+ * the seed and the order the threads first reached a point in, so a run can be repeated with the same
+ * noise decisions. Two threads never share a generator, even when they have the same name (as every
+ * virtual thread does).
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+final class NoiseRandom {
+
+	/** The seed given to the program, or null if there is none */
+	private static final Long						SEED	= readSeed();
+
+	/** The number of threads given a generator so far, used to tell the threads apart */
+	private static final AtomicInteger				THREADS	= new AtomicInteger();
+
+	/** The generator of the current thread */
+	private static final ThreadLocal<NoiseRandom>	CURRENT	= new ThreadLocal<NoiseRandom>() {
+
+		protected NoiseRandom initialValue() {
+			Thread thread = Thread.currentThread();
+			if( SEED != null ) {
+				return new NoiseRandom( mix( SEED.longValue() ^ mix( THREADS.getAndIncrement() ) ) );
+			}
+			return new NoiseRandom( mix( System.nanoTime() ^ ( (long)System.identityHashCode( thread ) << 32 ) ) );
+		}
+	};
+
+	private long									_state	= 0;	// The state of the generator, never 0
+
+	/**
+	 * Instantiates a new generator.
+	 * 
+	 * @param seed the seed of the generator
+	 */
+	NoiseRandom( long seed ) {
+		_state = ( seed == 0 ) ? 0x9E3779B97F4A7C15L : seed;
+	}
+
+	/**
+	 * Gets the generator of the current thread.
+	 * 
+	 * @return the generator
+	 */
+	static NoiseRandom current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Gets a random number from 0 (inclusive) to the bound (exclusive).
+	 * 
+	 * @param bound the upper bound, which must be positive
+	 * @return the random number
+	 */
+	int nextInt( int bound ) {
+		long x = _state;
+		x ^= x >>> 12;
+		x ^= x << 25;
+		x ^= x >>> 27;
+		_state = x;
+
+		// The high bits are the best bits of xorshift64*
+		long bits = ( x * 0x2545F4914F6CDD1DL ) >>> 33;
+		return (int)( ( bits * bound ) >>> 31 );
+	}
+
+	/**
+	 * Gets the seed given to the program.
+	 * 
+	 * @return the seed, or null if there is none
+	 */
+	static Long getSeed() {
+		return SEED;
+	}
+
+	/**
+	 * Reads the seed from the system property, or the environment variable if there is no property.
+	 * 
+	 * @return the seed, or null if there is none
+	 */
+	private static Long readSeed() {
+		String seed = System.getProperty( Noise.SEED_PROPERTY );
+		if( seed == null ) {
+			seed = System.getenv( Noise.SEED_ENVIRONMENT );
+		}
+		if( seed == null || seed.trim().length() == 0 ) {
+			return null;
+		}
+		try {
+			return Long.valueOf( seed.trim() );
+		}
+		catch( NumberFormatException e ) {
+			return Long.valueOf( seed.trim().hashCode() );
+		}
+	}
+
+	/**
+	 * Mixes the bits of a value so that close values give unrelated seeds.
+	 * 
+	 * @param value the value
+	 * @return the mixed value
+	 */
+	static long mix( long value ) {
+		long z = value + 0x9E3779B97F4A7C15L;
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		return z ^ ( z >>> 31 );
+	}
+}
@@ -0,0 +1,50 @@
+package ca.sqrlab.eclipticon.runtime;
+
+/**
+ * This class holds the switch that turns the noise of a run on or off. Every noise statement in the
+ * instrumented source is guarded by {@link #ON}, and since it is a static final field the JIT treats it
+ * as a constant once this class is initialized. A run with the noise switched off then has the guarded
+ * points removed from the compiled code entirely, so the instrumented program can be measured without
+ * noise as a baseline and switched back on for the next run without being instrumented again.<br/>
+ * <br/>
+ *
+ * The noise is on unless the system property or environment variable is "off" or "false", the property
+ * taking precedence (e.g. -Declipticon.noise=off).
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public final class NoiseSwitch {
+
+	/** The system property and environment variable that switch the noise off */
+	public static final String	PROPERTY	= "eclipticon.noise";
+	public static final String	ENVIRONMENT	= "ECLIPTICON_NOISE";
+
+	/** The value that switches the noise off */
+	public static final String	OFF			= "off";
+
+	/** If the noise of this run is on */
+	public static final boolean	ON			= readSwitch();
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private NoiseSwitch() {
+	}
+
+	/**
+	 * Reads the switch from the system property, or the environment variable if the property isn't set.
+	 *
+	 * @return false if the noise is switched off
+	 */
+	private static boolean readSwitch() {
+		String value = System.getProperty( PROPERTY );
+		if( value == null ) {
+			value = System.getenv( ENVIRONMENT );
+		}
+		if( value == null ) {
+			return true;
+		}
+		value = value.trim();
+		return !( value.equalsIgnoreCase( OFF ) || value.equalsIgnoreCase( "false" ) );
+	}
+}
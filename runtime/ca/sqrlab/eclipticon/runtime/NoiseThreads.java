@@ -0,0 +1,164 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class keeps the noise from pinning the carrier threads of virtual threads. A point usually sits
+ * inside a synchronized block, and on the JDKs where a virtual thread that blocks while holding a monitor
+ * pins its carrier, a sleeping point takes a carrier away from every other virtual thread for the whole
+ * delay. Enough of them starve the carrier pool and the run collapses instead of exploring new
+ * interleavings.<br/><br/>
+ *
+ * The delays of a virtual thread are made in one of two ways, given by the system property or
+ * environment variable named in {@link Noise}:
+ * <ul>
+ * <li>"park" - the thread parks for the delay, which unmounts it from its carrier where monitors don't
+ * pin (JDK 24 and later)</li>
+ * <li>"yield" - the thread only yields, which never blocks its carrier, so the point still perturbs the
+ * schedule without holding a carrier</li>
+ * </ul>
+ *
+ * By default the thread parks where monitors don't pin and yields otherwise. Virtual threads are found
+ * with reflection, so the runtime still runs on JDKs without them, where no thread is virtual.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+final class NoiseThreads {
+
+	/** These are the names of the ways a virtual thread is delayed */
+	static final String			PARK				= "park";
+	static final String			YIELD				= "yield";
+
+	/** The first JDK where a virtual thread blocked in a monitor doesn't pin its carrier */
+	static final int			UNPINNED_MONITORS	= 24;
+
+	/** The method that tells if a thread is virtual, or null if the JDK has no virtual threads */
+	private static final Method	IS_VIRTUAL			= findIsVirtual();
+
+	/** The method that hints a busy-wait to the processor, or null if the JDK has none */
+	private static final Method	ON_SPIN_WAIT		= findOnSpinWait();
+
+	/** If the delays of virtual threads park, otherwise they yield */
+	static final boolean		PARKS				= readParks();
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private NoiseThreads() {
+	}
+
+	/**
+	 * Checks if a thread is a virtual thread.
+	 *
+	 * @param thread the thread
+	 * @return true if the thread is virtual
+	 */
+	static boolean isVirtual( Thread thread ) {
+		if( IS_VIRTUAL == null ) {
+			return false;
+		}
+		try {
+			return ( (Boolean)IS_VIRTUAL.invoke( thread ) ).booleanValue();
+		}
+		catch( Exception e ) {
+			return false;
+		}
+	}
+
+	/**
+	 * Tells the processor the current thread is busy-waiting, so it can save power and give way to the
+	 * other hardware thread of its core. Nothing is done if the JDK has no such hint.
+	 */
+	static void onSpinWait() {
+		if( ON_SPIN_WAIT == null ) {
+			return;
+		}
+		try {
+			ON_SPIN_WAIT.invoke( null );
+		}
+		catch( Exception e ) {
+			// The spin goes on without the hint
+		}
+	}
+
+	/**
+	 * Delays the current virtual thread without pinning its carrier.
+	 *
+	 * @param nanos the delay in nanoseconds
+	 */
+	static void delay( long nanos ) {
+		if( PARKS ) {
+			LockSupport.parkNanos( nanos );
+		}
+		else {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Gets the version of the JDK, such as 6 for "1.6" or 21 for "21".
+	 *
+	 * @param specification the specification version of the JDK
+	 * @return the version, or 0 if it can't be read
+	 */
+	static int parseVersion( String specification ) {
+		if( specification == null ) {
+			return 0;
+		}
+		String version = specification.startsWith( "1." ) ? specification.substring( 2 ) : specification;
+		int end = 0;
+		while( end < version.length() && Character.isDigit( version.charAt( end ) ) ) {
+			end++;
+		}
+		return ( end == 0 ) ? 0 : Integer.parseInt( version.substring( 0, end ) );
+	}
+
+	/**
+	 * Finds the method that tells if a thread is virtual.
+	 *
+	 * @return the method, or null if the JDK has no virtual threads
+	 */
+	private static Method findIsVirtual() {
+		try {
+			return Thread.class.getMethod( "isVirtual" );
+		}
+		catch( NoSuchMethodException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the method that hints a busy-wait, which was added in Java 9.
+	 *
+	 * @return the method, or null if the JDK has none
+	 */
+	private static Method findOnSpinWait() {
+		try {
+			return Thread.class.getMethod( "onSpinWait" );
+		}
+		catch( NoSuchMethodException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the way virtual threads are delayed from the system property, or the environment variable
+	 * if the property isn't set.
+	 *
+	 * @return true if the delays park, false if they yield
+	 */
+	private static boolean readParks() {
+		String value = System.getProperty( Noise.VIRTUAL_PROPERTY );
+		if( value == null ) {
+			value = System.getenv( Noise.VIRTUAL_ENVIRONMENT );
+		}
+		if( value != null && value.trim().equalsIgnoreCase( PARK ) ) {
+			return true;
+		}
+		if( value != null && value.trim().equalsIgnoreCase( YIELD ) ) {
+			return false;
+		}
+		return parseVersion( System.getProperty( "java.specification.version" ) ) >= UNPINNED_MONITORS;
+	}
+}
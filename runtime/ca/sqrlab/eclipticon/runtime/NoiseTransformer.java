@@ -0,0 +1,54 @@
+package ca.sqrlab.eclipticon.runtime;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+/**
+ * This class passes the classes being loaded through the {@link ClassRewriter}. The classes of the
+ * Java platform and of the agent itself are never changed, and a class that can't be rewritten is
+ * loaded as it is.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class NoiseTransformer implements ClassFileTransformer {
+
+	/** The package prefixes of the classes that are never instrumented */
+	private static final String[]	EXCLUDED		= { "java/", "javax/", "jdk/", "sun/", "com/sun/",
+			"ca/sqrlab/eclipticon/runtime/"		};
+
+	private AgentConfiguration		_configuration	= null; // The configuration of the agent
+
+	/**
+	 * Instantiates a new noise transformer.
+	 * 
+	 * @param configuration the configuration of the agent
+	 */
+	public NoiseTransformer( AgentConfiguration configuration ) {
+		_configuration = configuration;
+	}
+
+	public byte[] transform( ClassLoader loader, String className, Class<?> classBeingRedefined,
+			ProtectionDomain protectionDomain, byte[] classfileBuffer ) {
+
+		if( className == null || classBeingRedefined != null ) {
+			return null;
+		}
+		for( String prefix : EXCLUDED ) {
+			if( className.startsWith( prefix ) ) {
+				return null;
+			}
+		}
+		if( !_configuration.includes( className ) ) {
+			return null;
+		}
+
+		// An error here must never stop the class from loading
+		try {
+			return new ClassRewriter( _configuration ).rewrite( classfileBuffer );
+		}
+		catch( Throwable e ) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package ca.sqrlab.eclipticon.runtime;
+
+/**
+ * This interface decides which of the concurrency constructs found in a class get noise, and
+ * with what settings.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public interface SitePolicy {
+
+	/**
+	 * Decides if a construct gets noise. The construct is described the same way the plugin
+	 * describes it in source code, so that points chosen in the source can be found again.
+	 * 
+	 * @param sourcePath the path of the source file (package directories and file name)
+	 * @param line the line of the construct, -1 if there is no line information
+	 * @param construct the type of construct (synchronize, barrier, latch or semaphore)
+	 * @param syntax the syntax of the construct (e.g. ".await" or "synchronized")
+	 * @param sequence the number of the same syntax found before it on the line
+	 * @return the number of the registered noise point, or -1 for no noise
+	 */
+	int pointFor( String sourcePath, int line, String construct, String syntax, int sequence );
+}
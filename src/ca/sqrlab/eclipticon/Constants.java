@@ -20,6 +20,7 @@ public final class Constants {
 
 	/** These are the syntax representation of synchronized constructs */
 	static public String	SYNCHRONIZE_BLOCK					= "synchronized";
+	static public String	SYNCHRONIZE_METHOD					= "synchronizedMethod";
 	static public String	SYNCHRONIZE_LOCK					= ".lock";
 	static public String	SYNCHRONIZE_LOCKINTERRUPTIBLY		= ".lockInterruptibly";
 	static public String	SYNCHRONIZE_NEWCONDITION			= ".newCondition";
@@ -41,9 +42,39 @@ public final class Constants {
 	static public String	SEMAPHORE_RELEASE					= ".release";
 	static public String	SEMAPHORE_TRYACQUIRE				= ".tryAcquire";
 
-	/** These are the types of noise */
+	/** These are the types of noise, the sleep delay is in milliseconds and the park, spin and nano-sleep delays in microseconds */
 	static public int		NOISE_SLEEP							= 0;
 	static public int		NOISE_YIELD							= 1;
+	static public int		NOISE_PARK							= 2;
+	static public int		NOISE_SPIN							= 3;
+	static public int		NOISE_NANOSLEEP						= 4;
+
+	/** These are the names of the types of noise used in the annotations and the view, indexed by type */
+	static public String[]	NOISE_NAMES							= { "sleep", "yield", "park", "spin", "nanosleep" };
+	static public String[]	NOISE_LABELS						= { "Sleep", "Yield", "Park", "Spin", "Nano-Sleep" };
+
+	/** These are the types of noise budget of a run, and their names used in the view */
+	static public int		BUDGET_UNLIMITED					= 0;
+	static public int		BUDGET_TOTAL						= 1;
+	static public int		BUDGET_RUN_TIME						= 2;
+	static public String[]	BUDGET_LABELS						= { "Unlimited", "Total Delay (ms)", "Run Time (%)" };
+
+	/** These are the decay schedules of the points that are reached most often, and their names used in the view */
+	static public int		DECAY_NONE							= 0;
+	static public int		DECAY_LOG							= 1;
+	static public int		DECAY_BUCKET						= 2;
+	static public String[]	DECAY_LABELS						= { "None", "Logarithmic (hits)", "Bucket (per second)" };
+
+	/** These are the positions of the noise around a construct, and their names used in the annotations and the view */
+	static public int		POSITION_BEFORE						= 0;
+	static public int		POSITION_AFTER						= 1;
+	static public int		POSITION_BOTH						= 2;
+	static public int		POSITION_HOLD						= 3;
+	static public String[]	POSITION_NAMES						= { "before", "after", "both", "hold" };
+	static public String[]	POSITION_LABELS						= { "Before", "After", "Both", "Hold" };
+
+	/** The flag added to the noise type of a hold point in the point table, it matches the flag used by the runtime */
+	static public int		NOISE_HOLD							= 16;
 
 	/** These are the types of synchronized types during ambiguity stage */
 	static public int		SYNCHRONIZED_NOT_FOUND				= 0;
@@ -55,6 +86,14 @@ public final class Constants {
 	static public int		ANNOTATION_UPDATE					= 1;
 	static public int		ANNOTATION_ADD						= 2;
 
+	/** These are the types of instrumentation operations */
+	static public int		OPERATION_INSTRUMENT_MANUAL			= 0;
+	static public int		OPERATION_INSTRUMENT_AUTOMATIC		= 1;
+	static public int		OPERATION_REVERT					= 2;
+
+	/** This is given in place of the number of points for a file left as it was, as its plan hasn't changed */
+	static public int		FILE_UNCHANGED						= -1;
+
 	/** These are the Regexs and Patterns used */
 	static private	String 	REGEX_PACKAGE 	= "(package[\\s]+[a-z][a-z\\.\\d\\-\\_\\s]*[\\*]*[\\s]*;)";
 	static private  String 	REGEX_IMPORT 	= "(import[\\s]+[a-z][a-z\\.\\d\\-\\_\\s]*[\\s]*;)";
@@ -67,11 +106,37 @@ public final class Constants {
 	
 	/** These are the file extension types used */
 	static public String	EXTENSION_ECLIPTICON				= ".eclipticon";
+	static public String	EXTENSION_TEMPORARY					= ".eclipticon.tmp";
+	static public String	EXTENSION_REPLACED					= ".eclipticon.old";
+	static public String	EXTENSION_EDITED					= ".edited";
 	static public String	EXTENSION_JAVA						= ".java";
 	static public String	EXTENSION_TEST_IN					= "in";
 	static public String	EXTENSION_TEST_EXP					= "exp";
 	static public String	EXTENSION_TEST_OUT					= "out";
 	
-	/** The file writer's buffer size */
-	static public int		BUFFER_SIZE 						= 127;
+	/** These are the names used by the backup store */
+	static public String	BACKUP_DIRECTORY					= "backups";
+	static public String	MANIFEST_FILE						= "manifest.txt";
+	static public String	MANIFEST_BACKUP						= "B";
+	static public String	MANIFEST_REVERT						= "R";
+	static public String	MANIFEST_PLAN						= "P";
+
+	/** These are the names used by the shadow source tree output */
+	static public String	SHADOW_DIRECTORY					= "eclipticon-shadow";
+	static public String	SHADOW_INDEX_FILE					= ".eclipticon-index";
+
+	/** These are the names used by the load-time agent */
+	static public String	AGENT_JAR							= "eclipticon-runtime.jar";
+	static public String	AGENT_CONFIGURATION_FILE			= "agent.properties";
+
+	/** The name of the control file that running tests read the noise settings from */
+	static public String	CONTROL_FILE						= "noise.control";
+
+	/** The bytecode sizes past which HotSpot stops inlining a method (MaxInlineSize, FreqInlineSize for hot call sites) */
+	static public int		INLINE_MAX_SIZE						= 35;
+	static public int		INLINE_FREQ_SIZE					= 325;
+	static public String	INLINING_REPORT_FILE				= "eclipticon-inlining.txt";
+
+	/** The buffer size of the file readers and writers used during instrumentation */
+	static public int		BUFFER_SIZE 						= 8192;
 }
\ No newline at end of file
@@ -14,10 +14,18 @@ public class AutomaticConfiguration {
 	private int	_highDelayRange			= 0;	// The high delay range for the sleep noise
 	private int	_sleepProbability		= 0;	// The probability of a noise being sleep (out of 100)
 	private int	_yieldProbability		= 0;	// The probability of a noise being yield (out of 100)
+	private int	_delayType				= 0;	// The type of noise used when the noise is not a yield
 	private int	_synchronizeProbability	= 0;	// The probability of a synchronize being instrumented (out of 100)
 	private int	_barrierProbability		= 0;	// The probability of a barrier being instrumented (out of 100)
 	private int	_latchProbability		= 0;	// The probability of a latch being instrumented (out of 100)
 	private int	_semaphoreProbability	= 0;	// The probability of a semaphore being instrumented (out of 100)
+	private int	_budgetType				= 0;	// The type of budget of the delays of a run
+	private int	_budget					= 0;	// The total delay (ms) or the percentage of the run time
+	private int	_budgetYield			= 1;	// If the noise yields once the budget is spent (1) or does nothing (0)
+	private int	_holdBudget				= 0;	// The budget of the hold points, in the units of the budget (0 to share the budget)
+	private int	_decaySchedule			= 0;	// The decay schedule of the points that are reached most often
+	private int	_decay					= 0;	// The hits before decaying, or the size of the bucket
+	private int	_noisePosition			= 0;	// Where the noise goes around the construct (before, after, both or hold)
 
 	/**
 	 * Gets the low delay range.
@@ -91,6 +99,24 @@ public class AutomaticConfiguration {
 		this._yieldProbability = yieldProbability;
 	}
 
+	/**
+	 * Gets the type of noise used when the noise is not a yield, the sleep, park, spin or nano-sleep.
+	 * 
+	 * @return the delay type
+	 */
+	public int getDelayType() {
+		return _delayType;
+	}
+
+	/**
+	 * Sets the type of noise used when the noise is not a yield.
+	 * 
+	 * @param delayType the delay type
+	 */
+	public void setDelayType( int delayType ) {
+		this._delayType = delayType;
+	}
+
 	/**
 	 * Gets the synchronize probability.
 	 * 
@@ -162,4 +188,133 @@ public class AutomaticConfiguration {
 	public void setSemaphoreProbability( int semaphoreProbability ) {
 		this._semaphoreProbability = semaphoreProbability;
 	}
+
+	/**
+	 * Gets the budget type, whether the delays of a run are unlimited, limited to a total, or limited to
+	 * a percentage of the run time.
+	 * 
+	 * @return the budget type
+	 */
+	public int getBudgetType() {
+		return _budgetType;
+	}
+
+	/**
+	 * Sets the budget type.
+	 * 
+	 * @param budgetType the budget type
+	 */
+	public void setBudgetType( int budgetType ) {
+		this._budgetType = budgetType;
+	}
+
+	/**
+	 * Gets the budget, the total delay in milliseconds or the percentage of the run time.
+	 * 
+	 * @return the budget
+	 */
+	public int getBudget() {
+		return _budget;
+	}
+
+	/**
+	 * Sets the budget.
+	 * 
+	 * @param budget the budget
+	 */
+	public void setBudget( int budget ) {
+		this._budget = budget;
+	}
+
+	/**
+	 * Gets if the noise yields once the budget is spent (1), or does nothing (0).
+	 * 
+	 * @return the budget yield
+	 */
+	public int getBudgetYield() {
+		return _budgetYield;
+	}
+
+	/**
+	 * Sets if the noise yields once the budget is spent (1), or does nothing (0).
+	 * 
+	 * @param budgetYield the budget yield
+	 */
+	public void setBudgetYield( int budgetYield ) {
+		this._budgetYield = budgetYield;
+	}
+
+	/**
+	 * Gets the budget of the hold points, the noise that keeps a lock held for longer. It is in the same
+	 * units as the budget, and 0 when the hold points share the budget with the other points.
+	 * 
+	 * @return the hold budget
+	 */
+	public int getHoldBudget() {
+		return _holdBudget;
+	}
+
+	/**
+	 * Sets the budget of the hold points.
+	 * 
+	 * @param holdBudget the hold budget
+	 */
+	public void setHoldBudget( int holdBudget ) {
+		this._holdBudget = holdBudget;
+	}
+
+	/**
+	 * Gets the decay schedule, how the chance of the noise of a point falls as the point is reached
+	 * more often.
+	 * 
+	 * @return the decay schedule
+	 */
+	public int getDecaySchedule() {
+		return _decaySchedule;
+	}
+
+	/**
+	 * Sets the decay schedule.
+	 * 
+	 * @param decaySchedule the decay schedule
+	 */
+	public void setDecaySchedule( int decaySchedule ) {
+		this._decaySchedule = decaySchedule;
+	}
+
+	/**
+	 * Gets the decay, the hits before a point decays or the size of the bucket of activations.
+	 * 
+	 * @return the decay
+	 */
+	public int getDecay() {
+		return _decay;
+	}
+
+	/**
+	 * Sets the decay.
+	 * 
+	 * @param decay the decay
+	 */
+	public void setDecay( int decay ) {
+		this._decay = decay;
+	}
+
+	/**
+	 * Gets where the noise goes around the construct, before it, after it, both or where its lock is held.
+	 * 
+	 * @return the noise position
+	 */
+	public int getNoisePosition() {
+		return _noisePosition;
+	}
+
+	/**
+	 * Sets where the noise goes around the construct.
+	 * 
+	 * @param noisePosition the noise position
+	 */
+	public void setNoisePosition( int noisePosition ) {
+		this._noisePosition = noisePosition;
+	}
 }
\ No newline at end of file
@@ -97,6 +97,31 @@ public class AutomaticConfigurationHandler {
 						_configurationData.setSynchronizeProbability( Integer.valueOf( getNextValue() ) );
 						_configurationData.setLatchProbability( Integer.valueOf( getNextValue() ) );
 						_configurationData.setSemaphoreProbability( Integer.valueOf( getNextValue() ) );
+
+						// Configurations written before the delay type, budget, decay, noise position and hold budget were added end here
+						String delayType = getNextValue();
+						if( delayType.length() > 0 ) {
+							_configurationData.setDelayType( Integer.valueOf( delayType ) );
+						}
+						String budgetType = getNextValue();
+						if( budgetType.length() > 0 ) {
+							_configurationData.setBudgetType( Integer.valueOf( budgetType ) );
+							_configurationData.setBudget( Integer.valueOf( getNextValue() ) );
+							_configurationData.setBudgetYield( Integer.valueOf( getNextValue() ) );
+						}
+						String decaySchedule = getNextValue();
+						if( decaySchedule.length() > 0 ) {
+							_configurationData.setDecaySchedule( Integer.valueOf( decaySchedule ) );
+							_configurationData.setDecay( Integer.valueOf( getNextValue() ) );
+						}
+						String noisePosition = getNextValue();
+						if( noisePosition.length() > 0 ) {
+							_configurationData.setNoisePosition( Integer.valueOf( noisePosition ) );
+						}
+						String holdBudget = getNextValue();
+						if( holdBudget.length() > 0 ) {
+							_configurationData.setHoldBudget( Integer.valueOf( holdBudget ) );
+						}
 					}
 				}
 			}
@@ -145,6 +170,14 @@ public class AutomaticConfigurationHandler {
 			xml = xml.concat( createElement( "synchronizeChance", _configurationData.getSynchronizeProbability() ) );
 			xml = xml.concat( createElement( "latchChance", _configurationData.getLatchProbability() ) );
 			xml = xml.concat( createElement( "semaphoreChance", _configurationData.getSemaphoreProbability() ) );
+			xml = xml.concat( createElement( "delayType", _configurationData.getDelayType() ) );
+			xml = xml.concat( createElement( "budgetType", _configurationData.getBudgetType() ) );
+			xml = xml.concat( createElement( "budget", _configurationData.getBudget() ) );
+			xml = xml.concat( createElement( "budgetYield", _configurationData.getBudgetYield() ) );
+			xml = xml.concat( createElement( "decaySchedule", _configurationData.getDecaySchedule() ) );
+			xml = xml.concat( createElement( "decay", _configurationData.getDecay() ) );
+			xml = xml.concat( createElement( "noisePosition", _configurationData.getNoisePosition() ) );
+			xml = xml.concat( createElement( "holdBudget", _configurationData.getHoldBudget() ) );
 
 			File newFile = new File( _xmlLocation );
 
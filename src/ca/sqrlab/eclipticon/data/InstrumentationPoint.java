@@ -1,5 +1,7 @@
 package ca.sqrlab.eclipticon.data;
 
+import ca.sqrlab.eclipticon.Constants;
+
 /**
  * This data class is used to hold information for an instrumentation point. A point
  * will contain various pieces of information such as the type, probability and delay values
@@ -14,6 +16,7 @@ public class InstrumentationPoint extends InterestPoint {
 	private int	_probability	= 0;	// The probability of an instrumentation point in activating out of 100
 	private int	_low			= 0;	// The low delay range of the instrumentation point
 	private int	_high			= 0;	// The high delay range of the instrumentation point
+	private int	_position		= 0;	// Where the noise goes around the construct (0 = before, 1 = after, 2 = both, 3 = hold)
 
 	/**
 	 * Constructor for instantiating an instrumentation point that will set the variables for it.
@@ -54,6 +57,45 @@ public class InstrumentationPoint extends InterestPoint {
 		_type = type;
 	}
 
+	/**
+	 * Gets where the noise goes around the construct, before it, after it (after the statement holding
+	 * it, or after the closing brace of a synchronized block), both, or held (inside the window the lock
+	 * of the construct is held for).
+	 * 
+	 * @return the position of the noise
+	 */
+	public int getPosition() {
+		return _position;
+	}
+
+	/**
+	 * Sets where the noise goes around the construct.
+	 * 
+	 * @param position the position of the noise
+	 */
+	public void setPosition( int position ) {
+		_position = position;
+	}
+
+	/**
+	 * Checks if the noise of the point goes inside the window a lock is held for, right after the lock of
+	 * a synchronized block or method, a lock or an acquire is taken, or right before it is released by an
+	 * unlock or release. The lock taken by a tryLock or tryAcquire isn't known until it runs, so the noise
+	 * of those constructs is placed before them.
+	 * 
+	 * @return true if the noise widens the window a lock is held for
+	 */
+	public boolean isHold() {
+		if( _position != Constants.POSITION_HOLD ) {
+			return false;
+		}
+		String syntax = getConstructSyntax();
+		return syntax.equals( Constants.SYNCHRONIZE_BLOCK ) || syntax.equals( Constants.SYNCHRONIZE_METHOD )
+				|| syntax.equals( Constants.SYNCHRONIZE_LOCK ) || syntax.equals( Constants.SYNCHRONIZE_LOCKINTERRUPTIBLY )
+				|| syntax.equals( Constants.SYNCHRONIZE_UNLOCK ) || syntax.equals( Constants.SEMAPHORE_ACQUIRE )
+				|| syntax.equals( Constants.SEMAPHORE_ACQUIREUNINTERRUPTIBLY ) || syntax.equals( Constants.SEMAPHORE_RELEASE );
+	}
+
 	/**
 	 * Gets the probability that this instrumentation point will activate during execution.
 	 * 
@@ -16,6 +16,7 @@ public class SourceFile {
 	private String 	_packageAndImports	= null; // The string of the package and imports of the file
 	private int 	_lowerBound			= 0;	// The lower bound used when automatic instrumentation
 	private int 	_upperBound			= 100;	// The upper bound used when automatic instrumentation
+	private int 	_lineCount			= -1;	// The number of lines found when last parsed, -1 if unknown
 	
 	
 	// A collection of interest points for this source file
@@ -123,6 +124,20 @@ public class SourceFile {
 	public int getLowerBound() {
 		return _lowerBound;
 	}
-	
-	
+
+	/**
+	 * Sets the number of lines in the source file, as found when it was parsed.
+	 * @param lineCount the number of lines
+	 */
+	public void setLineCount( int lineCount ) {
+		_lineCount = lineCount;
+	}
+
+	/**
+	 * Gets the number of lines in the source file, as found when it was parsed.
+	 * @return the number of lines, or -1 if the file has not been parsed
+	 */
+	public int getLineCount() {
+		return _lineCount;
+	}
 }
\ No newline at end of file
@@ -5,11 +5,13 @@ import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
 import java.util.ArrayList;
 
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
@@ -63,15 +65,26 @@ import ca.sqrlab.eclipticon.data.AutomaticConfigurationHandler;
 import ca.sqrlab.eclipticon.data.InstrumentationPoint;
 import ca.sqrlab.eclipticon.data.InterestPoint;
 import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.gui.Activator;
 import ca.sqrlab.eclipticon.gui.EditorHandler;
-import ca.sqrlab.eclipticon.instrumentation.Instrumentor;
+import ca.sqrlab.eclipticon.instrumentation.AgentConfigurationWriter;
+import ca.sqrlab.eclipticon.instrumentation.BackupStore;
+import ca.sqrlab.eclipticon.instrumentation.InstrumentationJob;
+import ca.sqrlab.eclipticon.instrumentation.InstrumentationSession;
+import ca.sqrlab.eclipticon.instrumentation.NoiseControl;
 import ca.sqrlab.eclipticon.parsers.FileParser;
 import ca.sqrlab.eclipticon.parsers.PreParser;
+import ca.sqrlab.eclipticon.runtime.NoiseSwitch;
 import ca.sqrlab.eclipticon.util.Tester;
 import ca.sqrlab.eclipticon.util.TreeCursor;
 
 public class EclipticonViewer extends Viewer implements SelectionListener, ModifyListener, FocusListener {
 
+	// The shadow tree isn't part of a project, it is built by a Java project the user sets up over it
+	private static final String		SHADOW_TOOL_TIP		= "The shadow tree is not refreshed or built by Eclipse, create a Java project named "
+																+ Constants.SHADOW_DIRECTORY + " with <project>/<source folder> as its source folder and "
+																+ Constants.AGENT_JAR + " on its build path to compile it";
+
 	// The GUI components that need to be modified during run time
 
 	Composite						_compositeParent	= null;
@@ -83,12 +96,15 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 	Text							_folderTxt			= null;
 	Text							_executionTxt		= null;
 	Text							_normalizationTxt	= null;
+	Text							_seedTxt			= null;
 
 	Table							_resultsTable		= null;
 	Combo							_executionCombo		= null;
 	Combo							_normalizationCombo	= null;
+	Combo							_noiseCombo			= null;
 	Button							_folderButton		= null;
 	Button							_testButton			= null;
+	Button							_updateNoiseButton	= null;
 	List							_fileList			= null;
 	ProgressBar						_testProgress		= null;
 
@@ -105,11 +121,25 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 
 	Button							_manualButton		= null;
 	Button							_autoButton			= null;
+	Button							_manualUpdateButton	= null;
+	Button							_autoUpdateButton	= null;
+	Button							_manualShadowCheck	= null;
+	Button							_autoShadowCheck	= null;
+	Button							_manualInliningCheck	= null;
 
 	Combo							_cmbType			= null;
+	Combo							_cmbPosition		= null;
 	Scale							_sleepYield			= null;
 	Text							_txtAutoLower		= null;
 	Text							_txtAutoHigher		= null;
+	Combo							_cmbAutoDelayType	= null;
+	Combo							_cmbAutoBudget		= null;
+	Text							_txtAutoBudget		= null;
+	Button							_autoBudgetYield	= null;
+	Text							_txtAutoHoldBudget	= null;
+	Combo							_cmbAutoDecay		= null;
+	Text							_txtAutoDecay		= null;
+	Combo							_cmbAutoPosition	= null;
 	Scale							_scaleBarrier		= null;
 	Scale							_scaleSync			= null;
 	Scale							_scaleSemaphores	= null;
@@ -177,23 +207,35 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		_folderTab.addSelectionListener( this );
 
 		_cmbType.addSelectionListener( this );
+		_cmbPosition.addSelectionListener( this );
 		_scaleBarrier.addSelectionListener( this );
 		_scaleLatches.addSelectionListener( this );
 		_scaleSemaphores.addSelectionListener( this );
 		_scaleSync.addSelectionListener( this );
 		_sleepYield.addSelectionListener( this );
+		_cmbAutoDelayType.addSelectionListener( this );
+		_cmbAutoBudget.addSelectionListener( this );
+		_autoBudgetYield.addSelectionListener( this );
+		_cmbAutoDecay.addSelectionListener( this );
+		_cmbAutoPosition.addSelectionListener( this );
 
 		_txtLower.addFocusListener( this );
 		_txtProb.addFocusListener( this );
 		_txtHigher.addFocusListener( this );
 		_txtAutoLower.addFocusListener( this );
 		_txtAutoHigher.addFocusListener( this );
+		_txtAutoBudget.addFocusListener( this );
+		_txtAutoHoldBudget.addFocusListener( this );
+		_txtAutoDecay.addFocusListener( this );
 
 		_txtLower.addModifyListener( this );
 		_txtHigher.addModifyListener( this );
 		_txtProb.addModifyListener( this );
 		_txtAutoLower.addModifyListener( this );
 		_txtAutoHigher.addModifyListener( this );
+		_txtAutoBudget.addModifyListener( this );
+		_txtAutoHoldBudget.addModifyListener( this );
+		_txtAutoDecay.addModifyListener( this );
 
 		checkButtons();
 
@@ -275,15 +317,30 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		_cmbType = new Combo( groupProperties, SWT.NULL );
 		gridData = new GridData( GridData.FILL_HORIZONTAL | GridData.VERTICAL_ALIGN_BEGINNING );
 		_cmbType.setLayoutData( gridData );
-		_cmbType.add( "Sleep" );
-		_cmbType.add( "Yield" );
-		_cmbType.select( 1 );
+		for( String label : Constants.NOISE_LABELS ) {
+			_cmbType.add( label );
+		}
+		_cmbType.select( Constants.NOISE_YIELD );
+
+		// Noise Position
+		Label positionLbl = new Label( groupProperties, SWT.NULL );
+		gridData = new GridData();
+		positionLbl.setLayoutData( gridData );
+		positionLbl.setText( "Position:" );
+
+		_cmbPosition = new Combo( groupProperties, SWT.READ_ONLY );
+		gridData = new GridData( GridData.FILL_HORIZONTAL | GridData.VERTICAL_ALIGN_BEGINNING );
+		_cmbPosition.setLayoutData( gridData );
+		for( String label : Constants.POSITION_LABELS ) {
+			_cmbPosition.add( label );
+		}
+		_cmbPosition.select( Constants.POSITION_BEFORE );
 
 		// Lower Bound
 		Label lowerLbl = new Label( groupProperties, SWT.NULL );
 		gridData = new GridData( GridData.VERTICAL_ALIGN_BEGINNING );
 		lowerLbl.setLayoutData( gridData );
-		lowerLbl.setText( "Lower Bound (ms):" );
+		lowerLbl.setText( "Lower Bound (ms for Sleep, us otherwise):" );
 
 		_txtLower = new Text( groupProperties, SWT.BORDER );
 		gridData = new GridData( GridData.FILL_HORIZONTAL | GridData.VERTICAL_ALIGN_BEGINNING );
@@ -293,7 +350,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		Label higherLbl = new Label( groupProperties, SWT.NULL );
 		gridData = new GridData( GridData.VERTICAL_ALIGN_BEGINNING );
 		higherLbl.setLayoutData( gridData );
-		higherLbl.setText( "Higher Bound (ms):" );
+		higherLbl.setText( "Higher Bound (ms for Sleep, us otherwise):" );
 
 		_txtHigher = new Text( groupProperties, SWT.BORDER );
 		gridData = new GridData( GridData.FILL_HORIZONTAL | GridData.VERTICAL_ALIGN_BEGINNING );
@@ -309,19 +366,43 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		gridData = new GridData( GridData.FILL_HORIZONTAL | GridData.VERTICAL_ALIGN_BEGINNING );
 		_txtProb.setLayoutData( gridData );
 
+		// Shadow Output
+		_manualShadowCheck = new Button( groupProperties, SWT.CHECK );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING );
+		gridData.horizontalSpan = 3;
+		_manualShadowCheck.setLayoutData( gridData );
+		_manualShadowCheck.setText( "Write to shadow source tree (" + Constants.SHADOW_DIRECTORY + ")" );
+		_manualShadowCheck.setToolTipText( SHADOW_TOOL_TIP );
+
+		// Inlining Report
+		_manualInliningCheck = new Button( groupProperties, SWT.CHECK );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING );
+		gridData.horizontalSpan = 3;
+		_manualInliningCheck.setLayoutData( gridData );
+		_manualInliningCheck.setText( "Report methods pushed past the inlining limits (" + Constants.INLINING_REPORT_FILE + ")" );
+
 		// Default Button
 		_manualButton = new Button( groupProperties, SWT.NULL );
 		gridData = new GridData( GridData.HORIZONTAL_ALIGN_END );
 		gridData.horizontalSpan = 3;
 
 		_manualButton.setLayoutData( gridData );
-		if( _newFP.checkIfBackupExists( _workspacePath ) )
+		if( backupsExist() )
 			_manualButton.setText( "Revert Files" );
 		else
 			_manualButton.setText( "Instrument Files" );
 
 		_manualButton.addSelectionListener( this );
 
+		// Update Button, instruments again only the files whose points changed
+		_manualUpdateButton = new Button( groupProperties, SWT.NULL );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_END );
+		gridData.horizontalSpan = 3;
+		_manualUpdateButton.setLayoutData( gridData );
+		_manualUpdateButton.setText( "Update Changed Files" );
+		_manualUpdateButton.setEnabled( BackupStore.getDefault().hasBackups() );
+		_manualUpdateButton.addSelectionListener( this );
+
 		tabManual.setControl( composite );
 	}
 
@@ -399,7 +480,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		Label rangeLbl = new Label( range, SWT.NULL );
 		gridData = new GridData();
 		rangeLbl.setLayoutData( gridData );
-		rangeLbl.setText( "Delay Range (ms):" );
+		rangeLbl.setText( "Delay Range (ms for Sleep, us otherwise):" );
 
 		_txtAutoLower = new Text( range, SWT.BORDER );
 		gridData = new GridData( GridData.FILL_HORIZONTAL );
@@ -409,6 +490,93 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		gridData = new GridData( GridData.FILL_HORIZONTAL );
 		_txtAutoHigher.setLayoutData( gridData );
 
+		// The type of noise used for the delays
+		Label delayTypeLbl = new Label( range, SWT.NULL );
+		gridData = new GridData();
+		delayTypeLbl.setLayoutData( gridData );
+		delayTypeLbl.setText( "Delay Type:" );
+
+		_cmbAutoDelayType = new Combo( range, SWT.READ_ONLY );
+		gridData = new GridData( GridData.FILL_HORIZONTAL );
+		gridData.horizontalSpan = 2;
+		_cmbAutoDelayType.setLayoutData( gridData );
+		for( int i = 0; i < Constants.NOISE_LABELS.length; i++ ) {
+			if( i != Constants.NOISE_YIELD ) {
+				_cmbAutoDelayType.add( Constants.NOISE_LABELS[ i ] );
+			}
+		}
+		_cmbAutoDelayType.select( 0 );
+
+		// The budget of the delays of each run
+		Label budgetLbl = new Label( range, SWT.NULL );
+		gridData = new GridData();
+		budgetLbl.setLayoutData( gridData );
+		budgetLbl.setText( "Noise Budget:" );
+
+		_cmbAutoBudget = new Combo( range, SWT.READ_ONLY );
+		gridData = new GridData( GridData.FILL_HORIZONTAL );
+		_cmbAutoBudget.setLayoutData( gridData );
+		for( String label : Constants.BUDGET_LABELS ) {
+			_cmbAutoBudget.add( label );
+		}
+		_cmbAutoBudget.select( Constants.BUDGET_UNLIMITED );
+
+		_txtAutoBudget = new Text( range, SWT.BORDER );
+		gridData = new GridData( GridData.FILL_HORIZONTAL );
+		_txtAutoBudget.setLayoutData( gridData );
+
+		_autoBudgetYield = new Button( range, SWT.CHECK );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING );
+		gridData.horizontalSpan = 3;
+		_autoBudgetYield.setLayoutData( gridData );
+		_autoBudgetYield.setText( "Yield once the budget is spent" );
+		_autoBudgetYield.setSelection( true );
+
+		// The budget of the hold points, spent apart from the budget of the other points
+		Label holdBudgetLbl = new Label( range, SWT.NULL );
+		gridData = new GridData();
+		holdBudgetLbl.setLayoutData( gridData );
+		holdBudgetLbl.setText( "Hold Budget:" );
+		holdBudgetLbl.setToolTipText( "The budget of the noise placed where a lock is held, 0 shares the noise budget" );
+
+		_txtAutoHoldBudget = new Text( range, SWT.BORDER );
+		gridData = new GridData( GridData.FILL_HORIZONTAL );
+		gridData.horizontalSpan = 2;
+		_txtAutoHoldBudget.setLayoutData( gridData );
+
+		// How the noise of the points that are reached most often decays
+		Label decayLbl = new Label( range, SWT.NULL );
+		gridData = new GridData();
+		decayLbl.setLayoutData( gridData );
+		decayLbl.setText( "Hot Point Decay:" );
+
+		_cmbAutoDecay = new Combo( range, SWT.READ_ONLY );
+		gridData = new GridData( GridData.FILL_HORIZONTAL );
+		_cmbAutoDecay.setLayoutData( gridData );
+		for( String label : Constants.DECAY_LABELS ) {
+			_cmbAutoDecay.add( label );
+		}
+		_cmbAutoDecay.select( Constants.DECAY_NONE );
+
+		_txtAutoDecay = new Text( range, SWT.BORDER );
+		gridData = new GridData( GridData.FILL_HORIZONTAL );
+		_txtAutoDecay.setLayoutData( gridData );
+
+		// Where the noise goes around the constructs
+		Label positionLbl = new Label( range, SWT.NULL );
+		gridData = new GridData();
+		positionLbl.setLayoutData( gridData );
+		positionLbl.setText( "Noise Position:" );
+
+		_cmbAutoPosition = new Combo( range, SWT.READ_ONLY );
+		gridData = new GridData( GridData.FILL_HORIZONTAL );
+		gridData.horizontalSpan = 2;
+		_cmbAutoPosition.setLayoutData( gridData );
+		for( String label : Constants.POSITION_LABELS ) {
+			_cmbAutoPosition.add( label );
+		}
+		_cmbAutoPosition.select( Constants.POSITION_BEFORE );
+
 		// Create a group for the mechanisms
 		Group groupMech = new Group( groupSettings, SWT.NULL );
 		gridData = new GridData( GridData.FILL_HORIZONTAL );
@@ -638,18 +806,35 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			}
 		} );
 
+		// Shadow Output
+		_autoShadowCheck = new Button( groupSettings, SWT.CHECK );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING );
+		gridData.horizontalSpan = 3;
+		_autoShadowCheck.setLayoutData( gridData );
+		_autoShadowCheck.setText( "Write to shadow source tree (" + Constants.SHADOW_DIRECTORY + ")" );
+		_autoShadowCheck.setToolTipText( SHADOW_TOOL_TIP );
+
 		// Default Button
 		_autoButton = new Button( groupSettings, SWT.NULL );
 		gridData = new GridData( GridData.HORIZONTAL_ALIGN_END );
 		gridData.horizontalSpan = 3;
 		_autoButton.setLayoutData( gridData );
 
-		if( _newFP.checkIfBackupExists( _workspacePath ) )
+		if( backupsExist() )
 			_autoButton.setText( "Revert Files" );
 		else
 			_autoButton.setText( "Instrument Files" );
 
 		_autoButton.addSelectionListener( this );
+
+		// Update Button, instruments again only the files whose configuration or bounds changed
+		_autoUpdateButton = new Button( groupSettings, SWT.NULL );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_END );
+		gridData.horizontalSpan = 3;
+		_autoUpdateButton.setLayoutData( gridData );
+		_autoUpdateButton.setText( "Update Changed Files" );
+		_autoUpdateButton.setEnabled( BackupStore.getDefault().hasBackups() );
+		_autoUpdateButton.addSelectionListener( this );
 		tabAuto.setControl( composite );
 	}
 
@@ -884,6 +1069,38 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		_normalizationCombo.add( "Sort" );
 		_normalizationCombo.select( 0 );
 
+		// Label for Noise
+		Label noiseLbl = new Label( compositeSettings, SWT.NULL );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING );
+		noiseLbl.setLayoutData( gridData );
+		noiseLbl.setText( "Test Noise:" );
+
+		// Combo for Noise, the agent adds the noise to the class files as they are loaded
+		_noiseCombo = new Combo( compositeSettings, SWT.READ_ONLY );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING | GridData.FILL_HORIZONTAL );
+		gridData.horizontalSpan = 2;
+		gridData.minimumWidth = 50;
+		_noiseCombo.setLayoutData( gridData );
+		_noiseCombo.add( "Instrumented Source" );
+		_noiseCombo.add( "Agent (Manual)" );
+		_noiseCombo.add( "Agent (Automatic)" );
+		_noiseCombo.add( "Instrumented Source (Noise Off)" );
+		_noiseCombo.select( 0 );
+
+		// Label for Seed
+		Label seedLbl = new Label( compositeSettings, SWT.NULL );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING );
+		seedLbl.setLayoutData( gridData );
+		seedLbl.setText( "Test Seed:" );
+
+		// The Seed Text, left empty each run gets a new seed which is recorded to replay it
+		_seedTxt = new Text( compositeSettings, SWT.BORDER );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING | GridData.FILL_HORIZONTAL );
+		gridData.horizontalSpan = 2;
+		gridData.minimumWidth = 50;
+		_seedTxt.setLayoutData( gridData );
+		_seedTxt.setToolTipText( "Leave empty for a new seed each run, or enter the seed of a failing run to replay it" );
+
 		// Test Button
 		_testButton = new Button( composite, SWT.NULL );
 		gridData = new GridData( GridData.HORIZONTAL_ALIGN_END );
@@ -916,6 +1133,25 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 					final File[] files = _testingFolder.listFiles( filter );
 					// Type of run
 					final String comboString = _executionCombo.getText();
+					// The seed of every run, or a new seed for each run
+					Long seed = null;
+					try {
+						if( _seedTxt.getText().trim().length() > 0 ) {
+							seed = Long.valueOf( _seedTxt.getText().trim() );
+						}
+					}
+					catch( NumberFormatException E ) {
+						_seedTxt.setText( "" );
+					}
+					final Long testSeed = seed;
+
+					// The runtime library (and agent configuration) is set up before testing starts
+					final String javaOptions = makeRuntimeOptions( _noiseCombo.getSelectionIndex() );
+					InstrumentationSession session = InstrumentationSession.load();
+					final String noiseBudget = session.getNoiseBudget();
+					final String holdBudget = session.getHoldBudget();
+					final String noiseDecay = session.getNoiseDecay();
+
 					// How long/ how many times
 					try {
 						_numberExecution = Integer.parseInt( _executionTxt.getText() );
@@ -930,6 +1166,12 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 						dialog.run( true, true, new IRunnableWithProgress() {
 							public void run( IProgressMonitor monitor ) {
 								Tester t = new Tester();
+								t.setJavaOptions( javaOptions );
+								t.setControlFile( getNoiseControlFile() );
+								t.setSeed( testSeed );
+								t.setNoiseBudget( noiseBudget );
+								t.setHoldBudget( holdBudget );
+								t.setNoiseDecay( noiseDecay );
 
 								// Run a number of times
 								if( comboString.compareTo( "Times" ) == 0 ) {
@@ -966,9 +1208,18 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 						Tester t = new Tester();
 						for( File currentFile : files ) {
 
-							String[] result = new String[2];
+							String[] result = new String[3];
 							result[ 0 ] = currentFile.getName();
 							result[ 1 ] = String.valueOf( t.getResults( currentFile, _numberTested ) ) + "/" + String.valueOf( _numberTested );
+
+							// The seeds of the failing runs, to replay them
+							StringBuilder seeds = new StringBuilder();
+							for( Long failingSeed : t.getFailingSeeds( currentFile, _numberTested ) ) {
+								if( seeds.length() > 0 )
+									seeds.append( ", " );
+								seeds.append( failingSeed );
+							}
+							result[ 2 ] = seeds.toString();
 							TableItem item = new TableItem( _resultsTable, SWT.NULL );
 							item.setText( result );
 
@@ -987,6 +1238,30 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			}
 		} );
 
+		// Update Noise Button, the running tests pick up the current annotations and delay range
+		_updateNoiseButton = new Button( composite, SWT.NULL );
+		gridData = new GridData( GridData.HORIZONTAL_ALIGN_END );
+		_updateNoiseButton.setLayoutData( gridData );
+		_updateNoiseButton.setText( "Update Running Noise" );
+		_updateNoiseButton.addSelectionListener( new SelectionAdapter() {
+
+			/**
+			 * Write the control file
+			 */
+			public void widgetSelected( SelectionEvent e ) {
+				ArrayList<SourceFile> sources = _newFP.getFiles( _workspacePath );
+				for( SourceFile sf : sources ) {
+					_newFP.findInterestPoints( sf );
+				}
+				try {
+					new NoiseControl( getNoiseControlFile() ).update( sources, InstrumentationSession.load() );
+				}
+				catch( IOException e1 ) {
+					e1.printStackTrace();
+				}
+			}
+		} );
+
 		// Label for Execution
 		Label resultsLbl = new Label( composite, SWT.NULL );
 		gridData = new GridData( GridData.HORIZONTAL_ALIGN_BEGINNING );
@@ -1010,6 +1285,10 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		resultsCol.setText( "Results" );
 		resultsCol.pack();
 
+		TableColumn seedsCol = new TableColumn( _resultsTable, SWT.NONE );
+		seedsCol.setText( "Failing Seeds" );
+		seedsCol.pack();
+
 		_resultsTable.setEnabled( false );
 		
 		// Check the Buttons and Widgets
@@ -1034,6 +1313,8 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 				_executionTxt.setEnabled( true );
 				_executionCombo.setEnabled( true );
 				_normalizationCombo.setEnabled( true );
+				_noiseCombo.setEnabled( true );
+				_seedTxt.setEnabled( true );
 				_fileList.setEnabled( true );
 			}
 			else {
@@ -1041,6 +1322,8 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 				_executionTxt.setEnabled( false );
 				_executionCombo.setEnabled( false );
 				_normalizationCombo.setEnabled( false );
+				_noiseCombo.setEnabled( false );
+				_seedTxt.setEnabled( false );
 				_fileList.setEnabled( false );
 
 			}
@@ -1053,10 +1336,92 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			_executionTxt.setEnabled( false );
 			_executionCombo.setEnabled( false );
 			_normalizationCombo.setEnabled( false );
+			_noiseCombo.setEnabled( false );
+			_seedTxt.setEnabled( false );
 			_fileList.setEnabled( false );
 		}
 	}
 
+	/**
+	 * Gets the control file the tests read the noise settings from, creating it if needed.
+	 * 
+	 * @return the control file
+	 */
+	private File getNoiseControlFile() {
+		File file = Activator.getDefault().getStateLocation().append( Constants.CONTROL_FILE ).toFile();
+		try {
+			new NoiseControl( file ).getControlFile();
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+		}
+		return file;
+	}
+
+	/**
+	 * Finds the runtime library, which is shipped inside the plugin.
+	 * 
+	 * @return the runtime library, or null if it can't be found
+	 */
+	private File findRuntimeJar() {
+		try {
+			URL jarUrl = FileLocator.find( Activator.getDefault().getBundle(), new Path( Constants.AGENT_JAR ), null );
+			if( jarUrl != null ) {
+				return new File( FileLocator.toFileURL( jarUrl ).getPath() );
+			}
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Makes the java options that put the runtime library in front of the program under test. The
+	 * instrumented source calls the runtime library, which is appended to the boot class path. For the
+	 * agent the configuration is written and the agent is started instead, the manual mode uses the
+	 * annotated points of the workspace and the automatic mode uses the automatic configuration. With the
+	 * noise off the instrumented source runs with its noise switched off, as a baseline.
+	 * 
+	 * @param noiseSelection the selection of the noise combo
+	 * @return the java options, empty if the runtime library can't be found
+	 */
+	private String makeRuntimeOptions( int noiseSelection ) {
+		try {
+			File jar = findRuntimeJar();
+			if( jar == null ) {
+				return "";
+			}
+			if( noiseSelection <= 0 ) {
+				return "\"-Xbootclasspath/a:" + jar.getAbsolutePath() + "\"";
+			}
+			if( noiseSelection == 3 ) {
+				return "\"-Xbootclasspath/a:" + jar.getAbsolutePath() + "\" -D" + NoiseSwitch.PROPERTY + "=" + NoiseSwitch.OFF;
+			}
+
+			AgentConfigurationWriter writer = null;
+			if( noiseSelection == 1 ) {
+				writer = new AgentConfigurationWriter();
+				ArrayList<SourceFile> sources = _newFP.getFiles( _workspacePath );
+				for( SourceFile sf : sources ) {
+					_newFP.findInterestPoints( sf );
+				}
+				writer.addPoints( sources );
+			}
+			else {
+				writer = new AgentConfigurationWriter( InstrumentationSession.load() );
+			}
+			File configuration = Activator.getDefault().getStateLocation().append( Constants.AGENT_CONFIGURATION_FILE )
+					.toFile();
+			writer.write( configuration );
+			return "\"-javaagent:" + jar.getAbsolutePath() + "=" + configuration.getAbsolutePath() + "\"";
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+		}
+		return "";
+	}
+
 	/*
 	 * Adjust the sliders positions to mimic the XML
 	 * @param autoConfig
@@ -1065,6 +1430,17 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		_sleepYield.setSelection( autoConfig.getYieldProbability() );
 		_txtAutoLower.setText( String.valueOf( autoConfig.getLowDelayRange() ) );
 		_txtAutoHigher.setText( String.valueOf( autoConfig.getHighDelayRange() ) );
+		_cmbAutoDelayType.select( Math.max( 0, _cmbAutoDelayType.indexOf( getNoiseLabel( autoConfig.getDelayType() ) ) ) );
+		_cmbAutoBudget.select( autoConfig.getBudgetType() );
+		_txtAutoBudget.setText( String.valueOf( autoConfig.getBudget() ) );
+		_txtAutoBudget.setEnabled( autoConfig.getBudgetType() != Constants.BUDGET_UNLIMITED );
+		_autoBudgetYield.setSelection( autoConfig.getBudgetYield() != 0 );
+		_txtAutoHoldBudget.setText( String.valueOf( autoConfig.getHoldBudget() ) );
+		_txtAutoHoldBudget.setEnabled( autoConfig.getBudgetType() != Constants.BUDGET_UNLIMITED );
+		_cmbAutoDecay.select( autoConfig.getDecaySchedule() );
+		_txtAutoDecay.setText( String.valueOf( autoConfig.getDecay() ) );
+		_txtAutoDecay.setEnabled( autoConfig.getDecaySchedule() != Constants.DECAY_NONE );
+		_cmbAutoPosition.select( autoConfig.getNoisePosition() );
 		_scaleBarrier.setSelection( autoConfig.getBarrierProbability() );
 		_scaleLatches.setSelection( autoConfig.getLatchProbability() );
 		_scaleSemaphores.setSelection( autoConfig.getSemaphoreProbability() );
@@ -1218,10 +1594,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 						subItem.setChecked( true );
 						item.setChecked( true );
 						InstrumentationPoint tempIP = (InstrumentationPoint)ip;
-						if( tempIP.getType() == Constants.NOISE_SLEEP )
-							subItem.setText( 3, "Sleep" );
-						else if( tempIP.getType() == Constants.NOISE_YIELD )
-							subItem.setText( 3, "Yield" );
+						subItem.setText( 3, getNoiseLabel( tempIP.getType() ) );
 						someChecked = true;
 					}
 					else {
@@ -1234,6 +1607,19 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		}
 	}
 
+	/**
+	 * Gets the label of a noise type shown in the view.
+	 * 
+	 * @param type the noise type
+	 * @return the label of the type, or an empty string if the type is unknown
+	 */
+	private String getNoiseLabel( int type ) {
+		if( type >= 0 && type < Constants.NOISE_LABELS.length ) {
+			return Constants.NOISE_LABELS[ type ];
+		}
+		return "";
+	}
+
 	/**
 	 * Fill the information below the trees on the manual tab.
 	 * 
@@ -1241,14 +1627,13 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 	 */
 	public void fillManualInfoLabels( InstrumentationPoint instrPoint ) {
 		// Sets the the Combo box
-		if( instrPoint.getType() == Constants.NOISE_SLEEP )
-			_cmbType.select( _cmbType.indexOf( "Sleep" ) );
-		else if( instrPoint.getType() == Constants.NOISE_YIELD )
-			_cmbType.select( _cmbType.indexOf( "Yield" ) );
+		_cmbType.select( _cmbType.indexOf( getNoiseLabel( instrPoint.getType() ) ) );
 		_txtLower.setText( String.valueOf( instrPoint.getLow() ) );
 		_txtHigher.setText( String.valueOf( instrPoint.getHigh() ) );
 		_txtProb.setText( String.valueOf( instrPoint.getProbability() ) );
+		_cmbPosition.select( instrPoint.getPosition() );
 		_cmbType.setEnabled( true );
+		_cmbPosition.setEnabled( true );
 		_txtLower.setEnabled( true );
 		_txtHigher.setEnabled( true );
 		_txtProb.setEnabled( true );
@@ -1262,7 +1647,9 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		_txtLower.setText( "" );
 		_txtHigher.setText( "" );
 		_txtProb.setText( "" );
+		_cmbPosition.deselectAll();
 		_cmbType.setEnabled( false );
+		_cmbPosition.setEnabled( false );
 		_txtLower.setEnabled( false );
 		_txtHigher.setEnabled( false );
 		_txtProb.setEnabled( false );
@@ -1309,7 +1696,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		InstrumentationPoint instr = new InstrumentationPoint( ip.getLine(), ip.getSequence(), ip.getConstruct(), ip.getConstructSyntax(), Constants.NOISE_YIELD, 100, 0, 1000 );
 		SourceFile sf = (SourceFile)item.getParentItem().getData();
 		try {
-			_newFP.manipulateAnnotation( sf, instr, Constants.ANNOTATION_ADD, refreshWorkspace );
+			manipulateAnnotation( sf, instr, Constants.ANNOTATION_ADD, refreshWorkspace );
 		}
 		catch( IOException e ) {
 
@@ -1318,6 +1705,28 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		refreshManualTreeItem( item.getParentItem() );
 	}
 
+	/**
+	 * Adds, updates or deletes the annotation of a point. The original of a file that is instrumented in
+	 * place gets the same change, made to a working copy that then replaces the edited copy in the backup
+	 * store, so the next update picks the change up without the snapshot being written to.
+	 * 
+	 * @param sf The source file of the point
+	 * @param point The point whose annotation changes
+	 * @param deleteUpdateAdd The change to make to the annotation
+	 * @param refreshWorkspace Refresh the workspace after the change
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void manipulateAnnotation( SourceFile sf, InstrumentationPoint point, int deleteUpdateAdd,
+			boolean refreshWorkspace ) throws IOException {
+		_newFP.manipulateAnnotation( sf, point, deleteUpdateAdd, refreshWorkspace );
+
+		File working = BackupStore.getDefault().startEdit( sf.getPath().toFile() );
+		if( working != null ) {
+			_newFP.manipulateAnnotation( new SourceFile( new Path( working.getPath() ) ), point, deleteUpdateAdd, false );
+			BackupStore.getDefault().finishEdit( sf.getPath().toFile(), working );
+		}
+	}
+
 	/**
 	 * Uninstrument the Tree Item in the Manual Tab specified
 	 * 
@@ -1330,7 +1739,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		InstrumentationPoint ip = (InstrumentationPoint)item.getData();
 		SourceFile sf = (SourceFile)item.getParentItem().getData();
 		try {
-			_newFP.manipulateAnnotation( sf, ip, Constants.ANNOTATION_DELETE, refreshWorkspace );
+			manipulateAnnotation( sf, ip, Constants.ANNOTATION_DELETE, refreshWorkspace );
 		}
 		catch( IOException e ) {
 
@@ -1364,10 +1773,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			if( ipCurrent instanceof InstrumentationPoint ) {
 
 				InstrumentationPoint tempIP = (InstrumentationPoint)ipCurrent;
-				if( tempIP.getType() == Constants.NOISE_SLEEP )
-					i.setText( 3, "Sleep" );
-				else if( tempIP.getType() == Constants.NOISE_YIELD )
-					i.setText( 3, "Yield" );
+				i.setText( 3, getNoiseLabel( tempIP.getType() ) );
 
 				i.setChecked( true );
 			}
@@ -1531,50 +1937,60 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			if( _testing )
 				createTestTab( _folderTab );
 			else {
-				Instrumentor i = new Instrumentor();
 				ArrayList<SourceFile> sources = _newFP.getFiles( _workspacePath );
 
-				// Revert Files instead of instrumenting them
-				if( _newFP.checkIfBackupExists( _workspacePath ) ) {
+				// An update instruments the files in place again, only the files whose plan changed are rewritten
+				boolean update = ( arg0.widget == _manualUpdateButton || arg0.widget == _autoUpdateButton );
+				boolean manual = ( arg0.widget == _manualButton || arg0.widget == _manualUpdateButton );
 
-					setButtonsInstrument( true );
-					for( SourceFile sf : sources ) {
-						try {
-							i.revertToOriginalState( sf );
-						}
-						catch( IOException e ) {
+				// A shadow tree leaves the files untouched, so there is nothing to revert
+				boolean shadow = !update && ( manual ? _manualShadowCheck.getSelection() : _autoShadowCheck.getSelection() );
+				File shadowRoot = _workspacePath.append( Constants.SHADOW_DIRECTORY ).toFile();
 
-							e.printStackTrace();
-						}
-					}
+				// Revert Files instead of instrumenting them
+				if( !shadow && !update && backupsExist() ) {
+					setButtonsInstrument( true );
+					new InstrumentationJob( sources, Constants.OPERATION_REVERT ).schedule();
 				}
 
 				// Instrument the files
 				else {
-					setButtonsInstrument( false );
+					if( !shadow ) {
+						setButtonsInstrument( false );
+					}
 					// Manual Instrumentation
-					if( arg0.widget == _manualButton ) {
-						for( SourceFile sf : sources ) {
-							sf.clearInterestingPoints();
-							_newFP.findInterestPoints( sf );
-							i.instrument( sf, false );
+					if( manual ) {
+						InstrumentationJob job = new InstrumentationJob( sources, Constants.OPERATION_INSTRUMENT_MANUAL );
+						if( shadow ) {
+							job.setShadowOutput( _workspacePath.toFile(), shadowRoot );
+						}
+						File runtimeJar = findRuntimeJar();
+						if( _manualInliningCheck.getSelection() && runtimeJar != null ) {
+							job.setInliningReport( _workspacePath.append( Constants.INLINING_REPORT_FILE ).toFile(), runtimeJar );
 						}
+						job.schedule();
 					}
 
 					// Automatic Instrumentation
-					else if( arg0.widget == _autoButton ) {
-						{
-							// There are Tree Items (Files)
-							if( _treeAuto.getItemCount() > 0 ) {
-								TreeItem[] items = _treeAuto.getItems();
-								//Go through each top tree item
-								for( TreeItem tI : items ) {
-
-									// Recursively Instrument the tree item 
-									instrumentAutoTreeItem( tI );
-								}
+					else {
+						ArrayList<SourceFile> checkedSources = new ArrayList<SourceFile>();
+
+						// There are Tree Items (Files)
+						if( _treeAuto.getItemCount() > 0 ) {
+							TreeItem[] items = _treeAuto.getItems();
+							//Go through each top tree item
+							for( TreeItem tI : items ) {
+
+								// Recursively collect the checked files of the tree item
+								collectAutoTreeItem( tI, checkedSources );
 							}
 						}
+						InstrumentationJob job = new InstrumentationJob( checkedSources,
+								Constants.OPERATION_INSTRUMENT_AUTOMATIC );
+						if( shadow ) {
+							job.setShadowOutput( _workspacePath.toFile(), shadowRoot );
+						}
+						job.schedule();
 					}
 				}
 
@@ -1589,15 +2005,9 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			InstrumentationPoint point = (InstrumentationPoint)item[ 0 ].getData();
 
 			// If the selection differs from the model, raise a flag
-			if( _cmbType.getText().compareTo( "Sleep" ) == 0 ) {
-				if( point.getType() != Constants.NOISE_SLEEP ) {
-					point.setType( Constants.NOISE_SLEEP );
-					_modified = true;
-				}
-			}
-			else if( _cmbType.getText().compareTo( "Yield" ) == 0 ) {
-				if( point.getType() != Constants.NOISE_YIELD ) {
-					point.setType( Constants.NOISE_YIELD );
+			for( int type = 0; type < Constants.NOISE_LABELS.length; type++ ) {
+				if( _cmbType.getText().compareTo( Constants.NOISE_LABELS[ type ] ) == 0 && point.getType() != type ) {
+					point.setType( type );
 					_modified = true;
 				}
 			}
@@ -1609,7 +2019,29 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 				SourceFile sf = (SourceFile)item[ 0 ].getParentItem().getData();
 				refreshManualTreeItem( item[ 0 ].getParentItem() );
 				try {
-					_newFP.manipulateAnnotation( sf, point, Constants.ANNOTATION_UPDATE, true );
+					manipulateAnnotation( sf, point, Constants.ANNOTATION_UPDATE, true );
+				}
+				catch( IOException e ) {
+
+					e.printStackTrace();
+				}
+				refreshManualTreeItem( item[ 0 ].getParentItem() );
+			}
+		}
+		// The Widget selected was the Position Combo box
+		else if( arg0.widget == _cmbPosition ) {
+
+			// Look at the tree item currently being editted.
+			TreeItem[] item = _treeManual.getSelection();
+			InstrumentationPoint point = (InstrumentationPoint)item[ 0 ].getData();
+
+			// If the selection differs from the model, write the annotation out
+			if( _cmbPosition.getSelectionIndex() >= 0 && point.getPosition() != _cmbPosition.getSelectionIndex() ) {
+				point.setPosition( _cmbPosition.getSelectionIndex() );
+
+				SourceFile sf = (SourceFile)item[ 0 ].getParentItem().getData();
+				try {
+					manipulateAnnotation( sf, point, Constants.ANNOTATION_UPDATE, true );
 				}
 				catch( IOException e ) {
 
@@ -1627,6 +2059,50 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			}
 		}
 
+		// If the Widget Selected is the Delay Type Combo box
+		else if( arg0.widget == _cmbAutoDelayType ) {
+			for( int type = 0; type < Constants.NOISE_LABELS.length; type++ ) {
+				if( _cmbAutoDelayType.getText().compareTo( Constants.NOISE_LABELS[ type ] ) == 0
+						&& _ach.getConfiguration().getDelayType() != type ) {
+					_ach.getConfiguration().setDelayType( type );
+					_modified = true;
+				}
+			}
+		}
+
+		// If the Widget Selected is the Budget Combo box
+		else if( arg0.widget == _cmbAutoBudget ) {
+			if( _cmbAutoBudget.getSelectionIndex() != _ach.getConfiguration().getBudgetType() ) {
+				_ach.getConfiguration().setBudgetType( _cmbAutoBudget.getSelectionIndex() );
+				_txtAutoBudget.setEnabled( _cmbAutoBudget.getSelectionIndex() != Constants.BUDGET_UNLIMITED );
+				_txtAutoHoldBudget.setEnabled( _cmbAutoBudget.getSelectionIndex() != Constants.BUDGET_UNLIMITED );
+				_modified = true;
+			}
+		}
+
+		// If the Widget Selected is the Budget Yield check box
+		else if( arg0.widget == _autoBudgetYield ) {
+			_ach.getConfiguration().setBudgetYield( _autoBudgetYield.getSelection() ? 1 : 0 );
+			_modified = true;
+		}
+
+		// If the Widget Selected is the Decay Combo box
+		else if( arg0.widget == _cmbAutoDecay ) {
+			if( _cmbAutoDecay.getSelectionIndex() != _ach.getConfiguration().getDecaySchedule() ) {
+				_ach.getConfiguration().setDecaySchedule( _cmbAutoDecay.getSelectionIndex() );
+				_txtAutoDecay.setEnabled( _cmbAutoDecay.getSelectionIndex() != Constants.DECAY_NONE );
+				_modified = true;
+			}
+		}
+
+		// If the Widget Selected is the Noise Position Combo box
+		else if( arg0.widget == _cmbAutoPosition ) {
+			if( _cmbAutoPosition.getSelectionIndex() != _ach.getConfiguration().getNoisePosition() ) {
+				_ach.getConfiguration().setNoisePosition( _cmbAutoPosition.getSelectionIndex() );
+				_modified = true;
+			}
+		}
+
 		// If the Widget Selected is a Barrier Scale
 		else if( arg0.widget == _scaleBarrier ) {
 			// If it was moved set the flag
@@ -1698,7 +2174,8 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 		if( _modified ) {
 			TreeItem[] selectedItem = null;
 			InstrumentationPoint pointChanging = null;
-			if( e.widget != _txtAutoHigher && e.widget != _txtAutoLower ) {
+			if( e.widget != _txtAutoHigher && e.widget != _txtAutoLower && e.widget != _txtAutoBudget
+					&& e.widget != _txtAutoHoldBudget && e.widget != _txtAutoDecay ) {
 				// If it has been modified
 				selectedItem = _treeManual.getSelection();
 				pointChanging = (InstrumentationPoint)selectedItem[ 0 ].getData();
@@ -1723,6 +2200,15 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			else if( e.widget == _txtAutoLower ) {
 				_ach.getConfiguration().setLowDelayRange( Integer.parseInt( _txtAutoLower.getText() ) );
 			}
+			else if( e.widget == _txtAutoBudget ) {
+				_ach.getConfiguration().setBudget( Integer.parseInt( _txtAutoBudget.getText() ) );
+			}
+			else if( e.widget == _txtAutoHoldBudget ) {
+				_ach.getConfiguration().setHoldBudget( Integer.parseInt( _txtAutoHoldBudget.getText() ) );
+			}
+			else if( e.widget == _txtAutoDecay ) {
+				_ach.getConfiguration().setDecay( Integer.parseInt( _txtAutoDecay.getText() ) );
+			}
 			// Update the respective XML
 
 			// Update the respective configuration
@@ -1732,7 +2218,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 				else {
 					refreshManualTreeItem( selectedItem[ 0 ].getParentItem() );
 					SourceFile sf = (SourceFile)selectedItem[ 0 ].getParentItem().getData();
-					_newFP.manipulateAnnotation( sf, pointChanging, Constants.ANNOTATION_UPDATE, true );
+					manipulateAnnotation( sf, pointChanging, Constants.ANNOTATION_UPDATE, true );
 					refreshManualTreeItem( selectedItem[ 0 ].getParentItem() );
 				}
 			}
@@ -1744,11 +2230,13 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 	}
 
 	/**
-	 * Recursively auto instrument the tree items
+	 * Recursively collect the checked source files of the tree items, along with their bounds, so
+	 * they can be instrumented together in one job
 	 * 
 	 * @param item the top tree item to check.
+	 * @param sources the list the checked source files are added to
 	 */
-	public void instrumentAutoTreeItem( TreeItem item ) {
+	public void collectAutoTreeItem( TreeItem item, ArrayList<SourceFile> sources ) {
 
 		// If it is checked then check if it a source file
 		// or has children
@@ -1756,10 +2244,7 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 
 			// The Tree Item is a sourceFile
 			if( item.getData() instanceof SourceFile ) {
-				Instrumentor i = new Instrumentor();
 				SourceFile sf = (SourceFile)item.getData();
-				sf.clearInterestingPoints();
-				_newFP.findInterestPoints( sf );
 
 				// set the lower and upper bound if it exists
 				try {
@@ -1774,17 +2259,14 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 				catch( Exception e ) {
 					// TODO: handle exception
 				}
-
-				// Only instrument it if it has points worth looking at.
-				if( sf.getInterestingPoints().size() > 0 )
-					i.instrument( sf, true );
+				sources.add( sf );
 			}
 
-			// Recursively Instrument the children
+			// Recursively collect the children
 			else {
 				if( item.getItemCount() > 0 ) {
 					for( TreeItem childItem : item.getItems() ) {
-						instrumentAutoTreeItem( childItem );
+						collectAutoTreeItem( childItem, sources );
 					}
 				}
 			}
@@ -1858,13 +2340,23 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 
 	}
 
+	/**
+	 * Checks if there are instrumented files waiting to be reverted, either in the backup store or
+	 * as backups beside the files left by an older version.
+	 * 
+	 * @return true, if there are backups
+	 */
+	private boolean backupsExist() {
+		return BackupStore.getDefault().hasBackups() || _newFP.checkIfBackupExists( _workspacePath );
+	}
+
 	/**
 	 * Check the buttons in the Auto and Manual to see if they have the correct text to represent
 	 * reverting files or not.
 	 */
 	public void checkButtons() {
 		// There's backup files, so set appropriate text for the buttons
-		if( _newFP.checkIfBackupExists( _workspacePath ) ) {
+		if( backupsExist() ) {
 			setButtonsInstrument( false );
 		}
 		else {
@@ -1886,9 +2378,11 @@ public class EclipticonViewer extends Viewer implements SelectionListener, Modif
 			_autoButton.setText( "Uninstrument" );
 			_manualButton.setText( "Uninstrument" );
 		}
+		_autoUpdateButton.setEnabled( !instrument );
+		_manualUpdateButton.setEnabled( !instrument );
 		_autoButton.pack();
 		_manualButton.pack();
 		_autoButton.redraw();
 		_manualButton.redraw();
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
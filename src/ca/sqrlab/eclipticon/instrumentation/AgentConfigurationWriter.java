@@ -0,0 +1,166 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.InstrumentationPoint;
+import ca.sqrlab.eclipticon.data.InterestPoint;
+import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.runtime.AgentConfiguration;
+
+/**
+ * This class writes the configuration file of the load-time agent. In manual mode the points chosen
+ * with &#64;PreemptionPoint annotations are written out, keyed by the source file, line, syntax and
+ * sequence the same way the agent finds them in the bytecode. In automatic mode the settings of the
+ * session are written out and the agent picks the noise as the classes are loaded.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class AgentConfigurationWriter {
+
+	private Properties	_properties	= new Properties(); // The configuration being written
+
+	/**
+	 * Instantiates a new writer for a manual configuration.
+	 */
+	public AgentConfigurationWriter() {
+		_properties.setProperty( AgentConfiguration.KEY_MODE, AgentConfiguration.MODE_MANUAL );
+	}
+
+	/**
+	 * Instantiates a new writer for an automatic configuration using the settings of the session.
+	 * 
+	 * @param session the instrumentation session
+	 */
+	public AgentConfigurationWriter( InstrumentationSession session ) {
+		_properties.setProperty( AgentConfiguration.KEY_MODE, AgentConfiguration.MODE_AUTOMATIC );
+		_properties.setProperty( AgentConfiguration.KEY_LOW_DELAY, String.valueOf( session.getLowDelayRange() ) );
+		_properties.setProperty( AgentConfiguration.KEY_HIGH_DELAY, String.valueOf( session.getHighDelayRange() ) );
+		_properties.setProperty( AgentConfiguration.KEY_SLEEP, String.valueOf( session.getSleepProbability() ) );
+		_properties.setProperty( AgentConfiguration.KEY_DELAY_TYPE, String.valueOf( session.getDelayType() ) );
+		_properties.setProperty( AgentConfiguration.KEY_SYNCHRONIZE, String.valueOf( session.getSynchronizeProbability() ) );
+		_properties.setProperty( AgentConfiguration.KEY_BARRIER, String.valueOf( session.getBarrierProbability() ) );
+		_properties.setProperty( AgentConfiguration.KEY_LATCH, String.valueOf( session.getLatchProbability() ) );
+		_properties.setProperty( AgentConfiguration.KEY_SEMAPHORE, String.valueOf( session.getSemaphoreProbability() ) );
+	}
+
+	/**
+	 * Sets the packages whose classes are instrumented by the agent.
+	 * 
+	 * @param packages the package names, all classes are instrumented if none are given
+	 */
+	public void setIncludes( List<String> packages ) {
+		StringBuilder includes = new StringBuilder();
+		for( String packageName : packages ) {
+			if( includes.length() > 0 ) {
+				includes.append( ',' );
+			}
+			includes.append( packageName );
+		}
+		_properties.setProperty( AgentConfiguration.KEY_INCLUDE, includes.toString() );
+	}
+
+	/**
+	 * Adds the annotated instrumentation points of the source files, the files must have been parsed.
+	 * 
+	 * @param sourceFiles the source files
+	 */
+	public void addPoints( List<SourceFile> sourceFiles ) {
+		for( SourceFile sourceFile : sourceFiles ) {
+			String sourcePath = null;
+			for( InterestPoint point : sourceFile.getInterestingPoints() ) {
+				if( point instanceof InstrumentationPoint ) {
+					InstrumentationPoint instrPoint = (InstrumentationPoint)point;
+
+					// The path is only found once there is something to write
+					if( sourcePath == null ) {
+						sourcePath = findSourcePath( sourceFile );
+					}
+					_properties.setProperty( AgentConfiguration.makePointKey( sourcePath, instrPoint.getLine(),
+							instrPoint.getConstructSyntax(), instrPoint.getSequence() ), AgentConfiguration.makePointValue(
+							instrPoint.getType(), instrPoint.getProbability(), instrPoint.getLow(), instrPoint.getHigh() ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the configuration file.
+	 * 
+	 * @param file the file to write
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write( File file ) throws IOException {
+		OutputStream output = new FileOutputStream( file );
+		try {
+			_properties.store( output, "Eclipticon agent configuration" );
+		}
+		finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Finds the path of the source file as the compiler records it, the package directories followed
+	 * by the file name.
+	 * 
+	 * @param sourceFile the source file
+	 * @return the path of the source file
+	 */
+	static String findSourcePath( SourceFile sourceFile ) {
+		String header = sourceFile.getPackageAndImports();
+		if( header == null ) {
+			header = readHeader( sourceFile );
+		}
+
+		Matcher matcher = Constants.PATTERN_PACKAGE.matcher( header );
+		if( matcher.find() ) {
+			String packageName = matcher.group().replaceFirst( "package", "" ).replace( ";", "" ).replaceAll( "\\s", "" );
+			return packageName.replace( '.', '/' ) + "/" + sourceFile.getName();
+		}
+		return sourceFile.getName();
+	}
+
+	/**
+	 * Reads the source file up to the first class statement.
+	 * 
+	 * @param sourceFile the source file
+	 * @return the start of the source file
+	 */
+	private static String readHeader( SourceFile sourceFile ) {
+		StringBuilder header = new StringBuilder();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader( new FileReader( sourceFile.getPath().toFile() ) );
+			String line = null;
+			while( ( line = reader.readLine() ) != null ) {
+				header.append( line ).append( '\n' );
+				if( Constants.PATTERN_CLASS.matcher( header ).find() ) {
+					break;
+				}
+			}
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+		}
+		finally {
+			if( reader != null ) {
+				try {
+					reader.close();
+				}
+				catch( IOException e ) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return header.toString();
+	}
+}
@@ -0,0 +1,473 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.gui.Activator;
+
+/**
+ * This class keeps the pristine copies of the instrumented source files away from the workspace,
+ * under the plugin's state location. Each instrumentation session gets its own snapshot directory
+ * holding the copies and an append-only manifest, a line is added to the manifest once a copy is
+ * complete and once the file has been reverted. Since the manifest is read back on start up, the
+ * originals can still be restored after a crash part way through instrumenting or reverting. The
+ * manifest also records the plan (the fingerprint of the original and its points) that each file was
+ * last instrumented with, so instrumenting again only rewrites the files whose plan has changed.<br/><br/>
+ *
+ * A snapshot is never written to once it is complete. The annotations edited while a file is
+ * instrumented go to an edited copy beside the snapshot, which is replaced as a whole on each edit,
+ * and the edited copy is the one restored on revert.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class BackupStore {
+
+	private static BackupStore		_default		= null; // The store under the plugin's state location
+
+	private File					_root			= null;								// The directory of all the sessions
+	private File					_sessionDir		= null;								// The directory of the current session
+	private int						_nextIndex		= 0;								// The index of the next snapshot
+	private HashMap<String, File>	_snapshots		= new HashMap<String, File>();		// The snapshot of each backed up file
+	private HashMap<File, Integer>	_pendingCounts	= new HashMap<File, Integer>();		// The files not reverted per session
+	private HashMap<String, String>	_plans			= new HashMap<String, String>();	// The plan each backed up file was instrumented with
+
+	/**
+	 * Instantiates a new backup store, reading back the sessions that have not been fully reverted.
+	 *
+	 * @param root the directory to hold the sessions
+	 */
+	public BackupStore( File root ) {
+		_root = root;
+		_root.mkdirs();
+
+		File[] sessionDirs = _root.listFiles();
+		if( sessionDirs != null ) {
+			for( File sessionDir : sessionDirs ) {
+				if( sessionDir.isDirectory() ) {
+					loadSession( sessionDir );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the backup store kept under the plugin's state location (or the temporary directory if
+	 * the plugin isn't running).
+	 *
+	 * @return the default backup store
+	 */
+	public static synchronized BackupStore getDefault() {
+		if( _default == null ) {
+			File root = null;
+			if( Activator.getDefault() != null ) {
+				root = Activator.getDefault().getStateLocation().append( Constants.BACKUP_DIRECTORY ).toFile();
+			}
+			else {
+				root = new File( System.getProperty( "java.io.tmpdir" ), "eclipticon-" + Constants.BACKUP_DIRECTORY );
+			}
+			_default = new BackupStore( root );
+		}
+		return _default;
+	}
+
+	/**
+	 * Makes a snapshot of the original file, unless there is already a snapshot of it that has not been
+	 * reverted (in which case the file is already instrumented and the original is the existing snapshot).
+	 *
+	 * @param original the original file
+	 * @return the snapshot of the original file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public File snapshot( File original ) throws IOException {
+
+		String key = original.getAbsolutePath();
+		File snapshot = null;
+		File sessionDir = null;
+
+		synchronized( this ) {
+			if( _snapshots.containsKey( key ) ) {
+				return _snapshots.get( key );
+			}
+
+			// Reserve a name in the current session
+			sessionDir = getSessionDir();
+			snapshot = new File( sessionDir, ( _nextIndex++ ) + "_" + original.getName() );
+		}
+
+		// The copy is done outside the lock so several files can be copied at once
+		copy( original, snapshot );
+
+		synchronized( this ) {
+			appendToManifest( sessionDir, Constants.MANIFEST_BACKUP + "\t" + snapshot.getName() + "\t" + key );
+			_snapshots.put( key, snapshot );
+			_pendingCounts.put( sessionDir, pendingCount( sessionDir ) + 1 );
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Restores the original file from its snapshot, or from the edited copy of the snapshot when there
+	 * is one. The copy is renamed back into place when possible, otherwise it is copied next to the file
+	 * and then renamed over it, so the file is never left half written. A backup left beside the file by
+	 * an older version is restored as well.
+	 *
+	 * @param original the original file
+	 * @return true, if there was a snapshot to restore
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public boolean restore( File original ) throws IOException {
+
+		String key = original.getAbsolutePath();
+		File snapshot = null;
+		synchronized( this ) {
+			snapshot = _snapshots.get( key );
+		}
+
+		// There is no snapshot, check for an old backup beside the file
+		if( snapshot == null ) {
+			File legacyBackup = new File( original.getPath() + Constants.EXTENSION_ECLIPTICON );
+			if( legacyBackup.exists() ) {
+				replace( legacyBackup, original );
+				return true;
+			}
+			return false;
+		}
+
+		// Rename the latest copy back, or copy it over if it's on another file system
+		File latest = getLatest( snapshot );
+		if( !latest.renameTo( original ) ) {
+			File temporary = new File( original.getPath() + Constants.EXTENSION_TEMPORARY );
+			copy( latest, temporary );
+			replace( temporary, original );
+			latest.delete();
+		}
+		snapshot.delete();
+
+		synchronized( this ) {
+			File sessionDir = snapshot.getParentFile();
+			appendToManifest( sessionDir, Constants.MANIFEST_REVERT + "\t" + key );
+			_snapshots.remove( key );
+			_plans.remove( key );
+
+			// Remove the session once all of its files are reverted
+			int pending = pendingCount( sessionDir ) - 1;
+			if( pending > 0 ) {
+				_pendingCounts.put( sessionDir, pending );
+			}
+			else {
+				_pendingCounts.remove( sessionDir );
+				deleteSession( sessionDir );
+				if( sessionDir.equals( _sessionDir ) ) {
+					_sessionDir = null;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the snapshot of the original file, for a file that is instrumented in place.
+	 *
+	 * @param original the original file
+	 * @return the snapshot, or null if the file has not been backed up
+	 */
+	public synchronized File getSnapshot( File original ) {
+		return _snapshots.get( original.getAbsolutePath() );
+	}
+
+	/**
+	 * Gets the latest copy of the original file, which is the edited copy of the snapshot if the
+	 * annotations were edited since the file was instrumented, otherwise the snapshot itself.
+	 *
+	 * @param original the original file
+	 * @return the latest copy, or null if the file has not been backed up
+	 */
+	public synchronized File getOriginal( File original ) {
+		File snapshot = _snapshots.get( original.getAbsolutePath() );
+		return ( snapshot != null ) ? getLatest( snapshot ) : null;
+	}
+
+	/**
+	 * Starts an edit of the original file, by copying its latest copy to a working file. The edit is
+	 * made to the working file, which is then given to {@link #finishEdit(File, File)}.
+	 *
+	 * @param original the original file
+	 * @return the working file, or null if the file has not been backed up
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public File startEdit( File original ) throws IOException {
+		File snapshot = getSnapshot( original );
+		if( snapshot == null ) {
+			return null;
+		}
+		File working = new File( snapshot.getPath() + Constants.EXTENSION_TEMPORARY );
+		copy( getLatest( snapshot ), working );
+		return working;
+	}
+
+	/**
+	 * Finishes an edit of the original file, the working file replaces the edited copy of the snapshot
+	 * in one step. The working file is dropped if the file was reverted in the meantime.
+	 *
+	 * @param original the original file
+	 * @param working the working file given by {@link #startEdit(File)}
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public synchronized void finishEdit( File original, File working ) throws IOException {
+		File snapshot = _snapshots.get( original.getAbsolutePath() );
+		if( snapshot == null ) {
+			working.delete();
+			return;
+		}
+		replace( working, new File( snapshot.getPath() + Constants.EXTENSION_EDITED ) );
+	}
+
+	/**
+	 * Records the plan the file was instrumented with, the file must have a snapshot.
+	 *
+	 * @param original the original file
+	 * @param plan the fingerprint of the original and the points it was instrumented with
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public synchronized void recordPlan( File original, String plan ) throws IOException {
+		String key = original.getAbsolutePath();
+		File snapshot = _snapshots.get( key );
+		if( snapshot != null ) {
+			appendToManifest( snapshot.getParentFile(), Constants.MANIFEST_PLAN + "\t" + plan + "\t" + key );
+			_plans.put( key, plan );
+		}
+	}
+
+	/**
+	 * Gets the plan the file was last instrumented with.
+	 *
+	 * @param original the original file
+	 * @return the plan, or null if the file isn't instrumented or its plan wasn't recorded
+	 */
+	public synchronized String getPlan( File original ) {
+		return _plans.get( original.getAbsolutePath() );
+	}
+
+	/**
+	 * Checks if there are any files that have not been reverted.
+	 *
+	 * @return true, if there are backups
+	 */
+	public synchronized boolean hasBackups() {
+		return !_snapshots.isEmpty();
+	}
+
+	/**
+	 * Checks if there is a snapshot of the file that has not been reverted.
+	 *
+	 * @param original the original file
+	 * @return true, if there is a backup
+	 */
+	public synchronized boolean hasBackup( File original ) {
+		return _snapshots.containsKey( original.getAbsolutePath() );
+	}
+
+	/**
+	 * Moves the source file over the target file. The rename replaces the target in one step where the
+	 * file system allows it. Otherwise the target is renamed aside before the source is renamed in, and
+	 * the aside copy is only deleted afterwards, so there is always a copy of the file on the disk.
+	 *
+	 * @param source the file to move
+	 * @param target the file to replace
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void replace( File source, File target ) throws IOException {
+		if( !source.renameTo( target ) ) {
+			File aside = new File( target.getPath() + Constants.EXTENSION_REPLACED );
+			aside.delete();
+			if( target.exists() && !target.renameTo( aside ) ) {
+				throw new IOException( "Unable to rename " + target + " to " + aside );
+			}
+			if( !source.renameTo( target ) ) {
+				aside.renameTo( target );
+				throw new IOException( "Unable to rename " + source + " to " + target );
+			}
+			aside.delete();
+		}
+	}
+
+	/**
+	 * Gets the edited copy of a snapshot if there is one, otherwise the snapshot.
+	 *
+	 * @param snapshot the snapshot
+	 * @return the latest copy of the original
+	 */
+	private static File getLatest( File snapshot ) {
+		File edited = new File( snapshot.getPath() + Constants.EXTENSION_EDITED );
+		return edited.exists() ? edited : snapshot;
+	}
+
+	/**
+	 * Copies one file to another, the copy is forced to the disk before returning.
+	 *
+	 * @param from the file to copy
+	 * @param to the file to copy to
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void copy( File from, File to ) throws IOException {
+		FileInputStream in = null;
+		FileOutputStream out = null;
+		try {
+			in = new FileInputStream( from );
+			out = new FileOutputStream( to );
+			FileChannel source = in.getChannel();
+			FileChannel destination = out.getChannel();
+
+			long size = source.size();
+			long position = 0;
+			while( position < size ) {
+				position += source.transferTo( position, size - position, destination );
+			}
+			destination.force( true );
+		}
+		finally {
+			if( in != null ) {
+				in.close();
+			}
+			if( out != null ) {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets the directory of the current session, creating it on first use.
+	 *
+	 * @return the session directory
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private File getSessionDir() throws IOException {
+		if( _sessionDir == null ) {
+			long id = System.currentTimeMillis();
+			File sessionDir = new File( _root, String.valueOf( id ) );
+			while( sessionDir.exists() ) {
+				sessionDir = new File( _root, String.valueOf( ++id ) );
+			}
+			if( !sessionDir.mkdirs() ) {
+				throw new IOException( "Unable to create the backup directory " + sessionDir );
+			}
+			_sessionDir = sessionDir;
+			_nextIndex = 0;
+		}
+		return _sessionDir;
+	}
+
+	/**
+	 * Gets the number of files of the session that have not been reverted.
+	 *
+	 * @param sessionDir the session directory
+	 * @return the number of files
+	 */
+	private int pendingCount( File sessionDir ) {
+		Integer count = _pendingCounts.get( sessionDir );
+		return ( count == null ) ? 0 : count;
+	}
+
+	/**
+	 * Appends a line to the manifest of the session and forces it to the disk.
+	 *
+	 * @param sessionDir the session directory
+	 * @param line the line to append
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void appendToManifest( File sessionDir, String line ) throws IOException {
+		FileOutputStream output = new FileOutputStream( new File( sessionDir, Constants.MANIFEST_FILE ), true );
+		try {
+			output.write( ( line + "\n" ).getBytes( "UTF-8" ) );
+			output.getFD().sync();
+		}
+		finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Reads the manifest of a session, keeping the snapshots of the files that were not reverted. A
+	 * session that has nothing left to revert is removed.
+	 *
+	 * @param sessionDir the session directory
+	 */
+	private void loadSession( File sessionDir ) {
+
+		HashMap<String, File> snapshots = new HashMap<String, File>();
+		HashMap<String, String> plans = new HashMap<String, String>();
+		File manifest = new File( sessionDir, Constants.MANIFEST_FILE );
+
+		if( manifest.exists() ) {
+			BufferedReader reader = null;
+			try {
+				reader = new BufferedReader( new FileReader( manifest ) );
+				String line = null;
+				while( ( line = reader.readLine() ) != null ) {
+					String[] fields = line.split( "\t" );
+
+					// A backup line has the snapshot name and original path, a revert line has the original path,
+					// and a plan line has the plan and original path
+					if( fields.length == 3 && fields[ 0 ].equals( Constants.MANIFEST_BACKUP ) ) {
+						File snapshot = new File( sessionDir, fields[ 1 ] );
+						if( snapshot.exists() ) {
+							snapshots.put( fields[ 2 ], snapshot );
+						}
+					}
+					else if( fields.length == 2 && fields[ 0 ].equals( Constants.MANIFEST_REVERT ) ) {
+						snapshots.remove( fields[ 1 ] );
+						plans.remove( fields[ 1 ] );
+					}
+					else if( fields.length == 3 && fields[ 0 ].equals( Constants.MANIFEST_PLAN ) ) {
+						plans.put( fields[ 2 ], fields[ 1 ] );
+					}
+				}
+			}
+			catch( IOException e ) {
+				e.printStackTrace();
+			}
+			finally {
+				if( reader != null ) {
+					try {
+						reader.close();
+					}
+					catch( IOException e ) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+
+		if( snapshots.isEmpty() ) {
+			deleteSession( sessionDir );
+		}
+		else {
+			_snapshots.putAll( snapshots );
+			plans.keySet().retainAll( snapshots.keySet() );
+			_plans.putAll( plans );
+			_pendingCounts.put( sessionDir, snapshots.size() );
+		}
+	}
+
+	/**
+	 * Deletes the session directory and everything in it.
+	 *
+	 * @param sessionDir the session directory
+	 */
+	private void deleteSession( File sessionDir ) {
+		File[] files = sessionDir.listFiles();
+		if( files != null ) {
+			for( File file : files ) {
+				file.delete();
+			}
+		}
+		sessionDir.delete();
+	}
+}
@@ -0,0 +1,611 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.SourceFile;
+
+/**
+ * This class finds the methods that the noise pushed past the bytecode sizes HotSpot inlines. A method
+ * that is inlined while it is small stops being inlined once its noise statements make it larger than
+ * MaxInlineSize (or FreqInlineSize at a hot call site), which changes the timing of the program in a way
+ * that has nothing to do with the noise itself.<br/><br/>
+ *
+ * The original and the instrumented source of a file are both compiled in memory, and the size of the
+ * code of each method is compared. A method that crossed a limit is reported with the points that are
+ * best given up to bring it back under the limit, the points with the lowest probability first: a point
+ * placed at more than one position is first cut down to a single position, then points are dropped. The
+ * bytes a noise statement costs are estimated from the growth of the method, and the statements of a
+ * lambda or local class count for the method that holds it.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class InliningReport {
+
+	/** The limits checked, and their names as HotSpot options */
+	private static final int[]		LIMITS			= { Constants.INLINE_MAX_SIZE, Constants.INLINE_FREQ_SIZE };
+	private static final String[]	LIMIT_NAMES		= { "MaxInlineSize", "FreqInlineSize" };
+
+	/** The class file attributes that are read */
+	private static final String		CODE			= "Code";
+	private static final String		LINE_NUMBERS	= "LineNumberTable";
+
+	private String					_classPath		= null; // The class path the source is compiled against
+	private String					_sourcePath		= null; // The source path of the classes the source refers to
+
+	/**
+	 * Instantiates a new inlining report.
+	 *
+	 * @param classPath the class path the source is compiled against, which has to hold the runtime
+	 *            library, or null for the class path of the compiler
+	 * @param sourcePath the source path of the classes the source refers to, or null if there is none
+	 */
+	public InliningReport( String classPath, String sourcePath ) {
+		_classPath = classPath;
+		_sourcePath = sourcePath;
+	}
+
+	/**
+	 * Compares the methods of the original and instrumented source of a source file, as they are on disk
+	 * after the instrumentor instrumented the file.
+	 *
+	 * @param sourceFile the source file
+	 * @param instrumentor the instrumentor that instrumented the file
+	 * @return the methods that crossed a limit, empty if the file isn't instrumented, or null if the sources
+	 *         could not be compiled
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public ArrayList<Crossing> compare( SourceFile sourceFile, Instrumentor instrumentor ) throws IOException {
+		File original = instrumentor.getOriginalFile( sourceFile );
+		File instrumented = instrumentor.getInstrumentedFile( sourceFile );
+		if( original.equals( instrumented ) || !instrumented.exists() ) {
+			return new ArrayList<Crossing>();
+		}
+		return compare( sourceFile.getName(), readSource( original ), readSource( instrumented ) );
+	}
+
+	/**
+	 * Compares the methods of the original and instrumented source of a file.
+	 *
+	 * @param fileName the name of the source file
+	 * @param original the original source
+	 * @param instrumented the instrumented source
+	 * @return the methods that crossed a limit, or null if the sources could not be compiled
+	 */
+	public ArrayList<Crossing> compare( String fileName, String original, String instrumented ) {
+
+		Map<String, int[]> before = measure( fileName, original );
+		Map<String, int[]> after = measure( fileName, instrumented );
+		if( before == null || after == null ) {
+			return null;
+		}
+
+		String[] lines = instrumented.split( "\r\n|\r|\n", -1 );
+		int[] table = readPointTable( instrumented );
+
+		ArrayList<Crossing> crossings = new ArrayList<Crossing>();
+		for( Map.Entry<String, int[]> method : after.entrySet() ) {
+			int[] sizes = before.get( method.getKey() );
+			if( sizes == null ) {
+				continue; // The holder of the point table
+			}
+			int[] instrumentedSizes = method.getValue();
+			for( int l = 0; l < LIMITS.length; l++ ) {
+				if( sizes[ 0 ] <= LIMITS[ l ] && instrumentedSizes[ 0 ] > LIMITS[ l ] ) {
+					Crossing crossing = new Crossing( method.getKey(), sizes[ 0 ], instrumentedSizes[ 0 ], l );
+					suggest( crossing, lines, table, instrumentedSizes[ 1 ], instrumentedSizes[ 2 ] );
+					crossings.add( crossing );
+				}
+			}
+		}
+		return crossings;
+	}
+
+	/**
+	 * Formats the crossings of a file as lines of text.
+	 *
+	 * @param fileName the name of the source file
+	 * @param crossings the crossings of the file
+	 * @return the report of the file, empty if there are no crossings
+	 */
+	public static String format( String fileName, List<Crossing> crossings ) {
+		StringBuilder report = new StringBuilder();
+		for( Crossing crossing : crossings ) {
+			report.append( fileName ).append( ": " ).append( crossing ).append( '\n' );
+			for( Suggestion suggestion : crossing.getSuggestions() ) {
+				report.append( "\t" ).append( suggestion ).append( '\n' );
+			}
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Suggests the points to give up so the method is back under the limit it crossed.
+	 *
+	 * @param crossing the crossing
+	 * @param lines the lines of the instrumented source
+	 * @param table the point table, four numbers per point
+	 * @param firstLine the first line of the method
+	 * @param lastLine the last line of the method
+	 */
+	private void suggest( Crossing crossing, String[] lines, int[] table, int firstLine, int lastLine ) {
+
+		// Count the noise statements of each point within the method
+		TreeMap<Integer, int[]> points = new TreeMap<Integer, int[]>(); // The statements and first line of each point
+		int statements = 0;
+		for( int line = Math.max( firstLine, 1 ); line <= lastLine && line <= lines.length; line++ ) {
+			Matcher matcher = NoiseMaker.PATTERN_POINT.matcher( lines[ line - 1 ] );
+			while( matcher.find() ) {
+				Integer index = Integer.valueOf( matcher.group( 1 ) );
+				if( !points.containsKey( index ) ) {
+					points.put( index, new int[] { 0, line } );
+				}
+				points.get( index )[ 0 ]++;
+				statements++;
+			}
+		}
+		if( statements == 0 ) {
+			return;
+		}
+
+		// The points with the lowest probability are given up first
+		ArrayList<Integer> order = new ArrayList<Integer>( points.keySet() );
+		final int[] probabilities = table;
+		Collections.sort( order, new Comparator<Integer>() {
+
+			public int compare( Integer first, Integer second ) {
+				return probability( probabilities, first ) - probability( probabilities, second );
+			}
+		} );
+
+		int cost = ( crossing.getAfter() - crossing.getBefore() + statements - 1 ) / statements;
+		int excess = crossing.getAfter() - crossing.getLimit();
+		HashMap<Integer, Suggestion> suggestions = new HashMap<Integer, Suggestion>();
+		for( Integer index : order ) {
+			int[] point = points.get( index );
+			if( excess > 0 && point[ 0 ] > 1 ) {
+				excess -= ( point[ 0 ] - 1 ) * cost;
+				suggestions.put( index, new Suggestion( index, point[ 1 ], probability( table, index ), Suggestion.CONVERT ) );
+			}
+		}
+		for( Integer index : order ) {
+			if( excess > 0 ) {
+				excess -= suggestions.containsKey( index ) ? cost : points.get( index )[ 0 ] * cost;
+				suggestions.put( index, new Suggestion( index, points.get( index )[ 1 ], probability( table, index ), Suggestion.DROP ) );
+			}
+		}
+		for( Integer index : order ) {
+			if( suggestions.containsKey( index ) ) {
+				crossing._suggestions.add( suggestions.get( index ) );
+			}
+		}
+	}
+
+	/**
+	 * Gets the probability of a point of the point table.
+	 *
+	 * @param table the point table, four numbers per point
+	 * @param index the number of the point
+	 * @return the probability, or 0 if the point isn't in the table
+	 */
+	private static int probability( int[] table, int index ) {
+		return ( index * 4 + 1 < table.length ) ? table[ index * 4 + 1 ] : 0;
+	}
+
+	/**
+	 * Reads the point table of the instrumented source.
+	 *
+	 * @param instrumented the instrumented source
+	 * @return the numbers of the table, four per point, empty if there is no table
+	 */
+	private static int[] readPointTable( String instrumented ) {
+		Matcher matcher = NoiseMaker.PATTERN_TABLE.matcher( instrumented );
+		if( !matcher.find() || matcher.group( 1 ).length() == 0 ) {
+			return new int[ 0 ];
+		}
+		String[] values = matcher.group( 1 ).split( "," );
+		int[] table = new int[ values.length ];
+		for( int i = 0; i < values.length; i++ ) {
+			table[ i ] = Integer.parseInt( values[ i ] );
+		}
+		return table;
+	}
+
+	/**
+	 * Reads the whole of a source file.
+	 *
+	 * @param file the source file
+	 * @return the source
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static String readSource( File file ) throws IOException {
+		StringBuilder source = new StringBuilder();
+		Reader reader = new BufferedReader( new FileReader( file ), Constants.BUFFER_SIZE );
+		try {
+			char[] c = new char[ Constants.BUFFER_SIZE ];
+			int readChars = 0;
+			while( ( readChars = reader.read( c ) ) != -1 ) {
+				source.append( c, 0, readChars );
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return source.toString();
+	}
+
+	/**
+	 * Compiles the source in memory and measures the code of each of its methods.
+	 *
+	 * @param fileName the name of the source file
+	 * @param source the source
+	 * @return the size of the code and the first and last line of each method, by class, name and
+	 *         descriptor, or null if the source could not be compiled
+	 */
+	Map<String, int[]> measure( String fileName, String source ) {
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if( compiler == null ) {
+			return null; // Running on a JRE
+		}
+
+		final HashMap<String, ByteArrayOutputStream> classes = new HashMap<String, ByteArrayOutputStream>();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager standardManager = compiler.getStandardFileManager( diagnostics, null, null );
+		JavaFileManager manager = new ForwardingJavaFileManager<StandardJavaFileManager>( standardManager ) {
+
+			@Override
+			public JavaFileObject getJavaFileForOutput( Location location, final String className, JavaFileObject.Kind kind,
+					FileObject sibling ) {
+				return new SimpleJavaFileObject( URI.create( "memory:///" + className.replace( '.', '/' ) + kind.extension ), kind ) {
+
+					@Override
+					public OutputStream openOutputStream() {
+						ByteArrayOutputStream output = new ByteArrayOutputStream();
+						classes.put( className, output );
+						return output;
+					}
+				};
+			}
+		};
+
+		ArrayList<String> options = new ArrayList<String>( Arrays.asList( "-g:source,lines", "-proc:none", "-implicit:none",
+				"-nowarn" ) );
+		if( _classPath != null ) {
+			options.add( "-classpath" );
+			options.add( _classPath );
+		}
+		if( _sourcePath != null ) {
+			options.add( "-sourcepath" );
+			options.add( _sourcePath );
+		}
+
+		try {
+			JavaFileObject file = new SourceObject( fileName, source );
+			if( !compiler.getTask( null, manager, diagnostics, options, null, Collections.singletonList( file ) ).call() ) {
+				return null;
+			}
+
+			TreeMap<String, int[]> methods = new TreeMap<String, int[]>();
+			for( ByteArrayOutputStream classFile : classes.values() ) {
+				readMethods( classFile.toByteArray(), methods );
+			}
+			return methods;
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+		}
+		catch( RuntimeException e ) {
+			e.printStackTrace();
+		}
+		finally {
+			try {
+				manager.close();
+			}
+			catch( IOException e ) {
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the size of the code and the first and last line of each method of a class file.
+	 *
+	 * @param classFile the class file
+	 * @param methods the methods read, by class, name and descriptor
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	static void readMethods( byte[] classFile, Map<String, int[]> methods ) throws IOException {
+
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( classFile ) );
+		in.readInt(); // Magic
+		in.readInt(); // Version
+
+		// Only the strings and class names of the constant pool are needed
+		int count = in.readUnsignedShort();
+		String[] strings = new String[ count ];
+		int[] classNames = new int[ count ];
+		for( int i = 1; i < count; i++ ) {
+			int tag = in.readUnsignedByte();
+			switch( tag ) {
+			case 1:
+				strings[ i ] = in.readUTF();
+				break;
+			case 7:
+				classNames[ i ] = in.readUnsignedShort();
+				break;
+			case 8: case 16: case 19: case 20:
+				in.skipBytes( 2 );
+				break;
+			case 15:
+				in.skipBytes( 3 );
+				break;
+			case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+				in.skipBytes( 4 );
+				break;
+			case 5: case 6:
+				in.skipBytes( 8 );
+				i++;
+				break;
+			default:
+				throw new IOException( "Unknown constant pool tag " + tag );
+			}
+		}
+
+		in.skipBytes( 2 ); // Access
+		String className = strings[ classNames[ in.readUnsignedShort() ] ].replace( '/', '.' );
+		in.skipBytes( 2 ); // Super class
+		in.skipBytes( 2 * in.readUnsignedShort() ); // Interfaces
+
+		int fields = in.readUnsignedShort();
+		for( int i = 0; i < fields; i++ ) {
+			in.skipBytes( 6 );
+			skipAttributes( in );
+		}
+
+		int methodCount = in.readUnsignedShort();
+		for( int i = 0; i < methodCount; i++ ) {
+			in.skipBytes( 2 ); // Access
+			String name = strings[ in.readUnsignedShort() ];
+			String descriptor = strings[ in.readUnsignedShort() ];
+			int[] method = { 0, Integer.MAX_VALUE, 0 };
+
+			int attributes = in.readUnsignedShort();
+			for( int a = 0; a < attributes; a++ ) {
+				String attribute = strings[ in.readUnsignedShort() ];
+				int length = in.readInt();
+				if( !CODE.equals( attribute ) ) {
+					in.skipBytes( length );
+					continue;
+				}
+				in.skipBytes( 4 ); // Max stack and locals
+				method[ 0 ] = in.readInt();
+				in.skipBytes( method[ 0 ] );
+				in.skipBytes( 8 * in.readUnsignedShort() ); // Exception table
+
+				int codeAttributes = in.readUnsignedShort();
+				for( int c = 0; c < codeAttributes; c++ ) {
+					String codeAttribute = strings[ in.readUnsignedShort() ];
+					int codeLength = in.readInt();
+					if( !LINE_NUMBERS.equals( codeAttribute ) ) {
+						in.skipBytes( codeLength );
+						continue;
+					}
+					int lines = in.readUnsignedShort();
+					for( int l = 0; l < lines; l++ ) {
+						in.skipBytes( 2 );
+						int line = in.readUnsignedShort();
+						method[ 1 ] = Math.min( method[ 1 ], line );
+						method[ 2 ] = Math.max( method[ 2 ], line );
+					}
+				}
+			}
+
+			// Abstract and native methods have no code to inline
+			if( method[ 0 ] > 0 ) {
+				methods.put( className + "." + name + descriptor, method );
+			}
+		}
+	}
+
+	/**
+	 * Skips the attributes of a field or method.
+	 *
+	 * @param in the class file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void skipAttributes( DataInputStream in ) throws IOException {
+		int attributes = in.readUnsignedShort();
+		for( int a = 0; a < attributes; a++ ) {
+			in.skipBytes( 2 );
+			in.skipBytes( in.readInt() );
+		}
+	}
+
+	/**
+	 * This class holds a source to be compiled in memory. Its name isn't checked against the classes it
+	 * declares, so the source can come from a file that isn't named after its public class.
+	 */
+	private static class SourceObject extends SimpleJavaFileObject {
+
+		private String	_source	= null; // The source code
+
+		SourceObject( String fileName, String source ) {
+			super( URI.create( "memory:///" + fileName.replace( '\\', '/' ).replace( ' ', '_' ) ), JavaFileObject.Kind.SOURCE );
+			_source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent( boolean ignoreEncodingErrors ) {
+			return _source;
+		}
+
+		@Override
+		public boolean isNameCompatible( String simpleName, JavaFileObject.Kind kind ) {
+			return kind == JavaFileObject.Kind.SOURCE;
+		}
+	}
+
+	/**
+	 * This class holds a method that the noise pushed past one of the inlining limits.
+	 */
+	public static class Crossing {
+
+		private String					_method			= null;						// The class, name and descriptor of the method
+		private int						_before			= 0;						// The size of the code before the noise
+		private int						_after			= 0;						// The size of the code with the noise
+		private int						_limit			= 0;						// The index of the limit that was crossed
+		private ArrayList<Suggestion>	_suggestions	= new ArrayList<Suggestion>();	// The points to give up
+
+		Crossing( String method, int before, int after, int limit ) {
+			_method = method;
+			_before = before;
+			_after = after;
+			_limit = limit;
+		}
+
+		/**
+		 * Gets the method, as its class, name and descriptor.
+		 *
+		 * @return the method
+		 */
+		public String getMethod() {
+			return _method;
+		}
+
+		/**
+		 * Gets the size of the code of the method before the noise, in bytes.
+		 *
+		 * @return the size before the noise
+		 */
+		public int getBefore() {
+			return _before;
+		}
+
+		/**
+		 * Gets the size of the code of the method with the noise, in bytes.
+		 *
+		 * @return the size with the noise
+		 */
+		public int getAfter() {
+			return _after;
+		}
+
+		/**
+		 * Gets the limit that was crossed, in bytes.
+		 *
+		 * @return the limit
+		 */
+		public int getLimit() {
+			return LIMITS[ _limit ];
+		}
+
+		/**
+		 * Gets the name of the HotSpot option of the limit that was crossed.
+		 *
+		 * @return the name of the limit
+		 */
+		public String getLimitName() {
+			return LIMIT_NAMES[ _limit ];
+		}
+
+		/**
+		 * Gets the points to give up to bring the method back under the limit, in the order they are
+		 * given up.
+		 *
+		 * @return the suggested points
+		 */
+		public ArrayList<Suggestion> getSuggestions() {
+			return _suggestions;
+		}
+
+		@Override
+		public String toString() {
+			return _method + " grew from " + _before + " to " + _after + " bytes, past " + getLimitName() + " ("
+					+ getLimit() + ")";
+		}
+	}
+
+	/**
+	 * This class holds a point suggested to be given up.
+	 */
+	public static class Suggestion {
+
+		static final int	CONVERT			= 0;	// The point keeps only one of its positions
+		static final int	DROP			= 1;	// The point is removed
+
+		private int			_index			= 0;	// The number of the point in the point table
+		private int			_line			= 0;	// The line of the first noise statement of the point
+		private int			_probability	= 0;	// The probability of the point
+		private int			_action			= 0;	// What is done with the point
+
+		Suggestion( int index, int line, int probability, int action ) {
+			_index = index;
+			_line = line;
+			_probability = probability;
+			_action = action;
+		}
+
+		/**
+		 * Gets the number of the point in the point table.
+		 *
+		 * @return the number of the point
+		 */
+		public int getIndex() {
+			return _index;
+		}
+
+		/**
+		 * Gets the line of the point.
+		 *
+		 * @return the line
+		 */
+		public int getLine() {
+			return _line;
+		}
+
+		/**
+		 * Checks if the point is to be dropped, rather than cut down to a single position.
+		 *
+		 * @return true if the point is to be dropped
+		 */
+		public boolean isDrop() {
+			return _action == DROP;
+		}
+
+		@Override
+		public String toString() {
+			return ( isDrop() ? "drop" : "use a single position for" ) + " the point on line " + _line + " (point "
+					+ _index + ", " + _probability + "%)";
+		}
+	}
+}
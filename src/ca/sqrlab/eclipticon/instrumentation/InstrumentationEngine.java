@@ -0,0 +1,164 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.parsers.FileParser;
+
+/**
+ * This class fans a batch of source files out over a bounded pool of worker threads, each file
+ * being parsed and then instrumented (or reverted) independently of the others. A file that fails
+ * is recorded in the summary and does not stop the rest of the batch.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class InstrumentationEngine {
+
+	private Instrumentor	_instrumentor	= null; // The instrumentor shared by the workers
+	private int				_threads		= 0;	// The maximum number of worker threads
+
+	/**
+	 * Instantiates a new instrumentation engine with one worker per available processor.
+	 * 
+	 * @param instrumentor the instrumentor that does the work on each file
+	 */
+	public InstrumentationEngine( Instrumentor instrumentor ) {
+		this( instrumentor, Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Instantiates a new instrumentation engine.
+	 * 
+	 * @param instrumentor the instrumentor that does the work on each file
+	 * @param threads the maximum number of worker threads
+	 */
+	public InstrumentationEngine( Instrumentor instrumentor, int threads ) {
+		_instrumentor = instrumentor;
+		_threads = Math.max( 1, threads );
+	}
+
+	/**
+	 * Performs the operation on every source file, the call returns once all the workers are done.
+	 * 
+	 * @param sources the source files to operate on
+	 * @param operation the operation to perform (see Constants.OPERATION_*)
+	 * @param monitor the progress monitor, a unit of work is reported for each file
+	 * @return the summary of the files and points handled
+	 */
+	public InstrumentationSummary run( ArrayList<SourceFile> sources, final int operation, IProgressMonitor monitor ) {
+
+		InstrumentationSummary summary = new InstrumentationSummary();
+		if( sources.isEmpty() ) {
+			return summary;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool( Math.min( _threads, sources.size() ) );
+		CompletionService<Integer> completion = new ExecutorCompletionService<Integer>( executor );
+		HashMap<Future<Integer>, SourceFile> pending = new HashMap<Future<Integer>, SourceFile>();
+		final AtomicBoolean canceled = new AtomicBoolean( false ); // Set once no more files are to be started
+
+		try {
+			for( final SourceFile sf : sources ) {
+				pending.put( completion.submit( new Callable<Integer>() {
+
+					public Integer call() throws Exception {
+						if( canceled.get() ) {
+							return 0;
+						}
+						return processFile( sf, operation );
+					}
+				} ), sf );
+			}
+
+			// Collect the files as they finish, checking for the cancel button in between
+			while( !pending.isEmpty() ) {
+				if( monitor.isCanceled() ) {
+					summary.setCanceled( true );
+					break;
+				}
+
+				Future<Integer> done = completion.poll( 100, TimeUnit.MILLISECONDS );
+				if( done != null ) {
+					SourceFile sf = pending.remove( done );
+					try {
+						int points = done.get();
+						if( points == Constants.FILE_UNCHANGED ) {
+							summary.addUnchangedFile();
+						}
+						else {
+							summary.addFile( points );
+						}
+					}
+					catch( ExecutionException e ) {
+						e.getCause().printStackTrace();
+						summary.addFailure( sf );
+					}
+					monitor.worked( 1 );
+				}
+			}
+		}
+		catch( InterruptedException e ) {
+			summary.setCanceled( true );
+		}
+		finally {
+
+			// Files not yet started are dropped, the ones in progress are allowed to finish without being
+			// interrupted, as an interrupt part way through a copy would leave the file half written
+			canceled.set( true );
+			executor.shutdown();
+			try {
+				while( !executor.awaitTermination( 1, TimeUnit.SECONDS ) ) {
+					// Keep waiting, a half written file is worse than a late one
+				}
+			}
+			catch( InterruptedException e ) {
+				e.printStackTrace();
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * Parses and instruments (or reverts) a single source file.
+	 * 
+	 * @param sf the source file
+	 * @param operation the operation to perform
+	 * @return the number of instrumentation points injected, or {@link Constants#FILE_UNCHANGED} if the
+	 *         file was already instrumented with the same plan
+	 * @throws Exception any error with the file
+	 */
+	private int processFile( SourceFile sf, int operation ) throws Exception {
+
+		if( operation == Constants.OPERATION_REVERT ) {
+			_instrumentor.revertToOriginalState( sf );
+			return 0;
+		}
+
+		// Each file gets its own parser, as a parser keeps state for the line being parsed, the points are
+		// found in the original of a file that is already instrumented
+		sf.clearInterestingPoints();
+		new FileParser().findInterestPoints( sf, _instrumentor.getOriginalFile( sf ) );
+
+		// Automatic instrumentation only occurs on files with points worth looking at
+		if( operation == Constants.OPERATION_INSTRUMENT_MANUAL ) {
+			return _instrumentor.instrument( sf, false );
+		}
+		else if( sf.getInterestingPoints().size() > 0 ) {
+			return _instrumentor.instrument( sf, true );
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,248 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.gui.Activator;
+
+/**
+ * This job instruments or reverts a batch of source files as one workspace operation. The
+ * whole batch runs under a single scheduling rule, and only the files that were touched are
+ * refreshed once at the end, so the workspace sees one change (and one build) per batch rather
+ * than one per file. The job can also report the methods that the noise pushed past the bytecode
+ * sizes HotSpot inlines, compiling each instrumented file against the class path of its project.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class InstrumentationJob extends WorkspaceJob {
+
+	private ArrayList<SourceFile>	_sources	= null; // The source files to operate on
+	private int						_operation	= 0;	// The operation to perform (see Constants.OPERATION_*)
+	private File					_sourceRoot	= null;	// The root that the shadow tree mirrors
+	private File					_shadowRoot	= null;	// The root of the shadow tree, null to instrument in place
+	private File					_reportFile	= null;	// The file the inlining report is written to, null for no report
+	private File					_runtimeJar	= null;	// The runtime library the instrumented files are compiled against
+
+	/**
+	 * Instantiates a new instrumentation job.
+	 * 
+	 * @param sources the source files to operate on
+	 * @param operation the operation to perform on the source files
+	 */
+	public InstrumentationJob( ArrayList<SourceFile> sources, int operation ) {
+		super( operation == Constants.OPERATION_REVERT ? "Reverting instrumented files" : "Instrumenting files" );
+		_sources = sources;
+		_operation = operation;
+
+		setRule( ResourcesPlugin.getWorkspace().getRoot() );
+		setUser( true );
+	}
+
+	/**
+	 * Sets the job to write the instrumented files into a shadow source tree, leaving the original
+	 * files as they are. The shadow tree is outside of the projects, so nothing is refreshed.
+	 * 
+	 * @param sourceRoot the root of the original source files
+	 * @param shadowRoot the root of the shadow source tree
+	 */
+	public void setShadowOutput( File sourceRoot, File shadowRoot ) {
+		_sourceRoot = sourceRoot;
+		_shadowRoot = shadowRoot;
+	}
+
+	/**
+	 * Sets the job to report the methods that the noise pushed past an inlining limit, once the files are
+	 * instrumented.
+	 * 
+	 * @param reportFile the file to write the report to
+	 * @param runtimeJar the runtime library the instrumented files call
+	 */
+	public void setInliningReport( File reportFile, File runtimeJar ) {
+		_reportFile = reportFile;
+		_runtimeJar = runtimeJar;
+	}
+
+	@Override
+	public IStatus runInWorkspace( IProgressMonitor monitor ) {
+
+		// The automatic configuration is read once for the whole batch
+		Instrumentor instrumentor = null;
+		if( _operation == Constants.OPERATION_INSTRUMENT_AUTOMATIC ) {
+			instrumentor = new Instrumentor( InstrumentationSession.load() );
+		}
+		else {
+			instrumentor = new Instrumentor();
+		}
+		if( _shadowRoot != null ) {
+			instrumentor.setShadowOutput( _sourceRoot, _shadowRoot );
+		}
+		InstrumentationSummary summary = null;
+
+		boolean report = ( _reportFile != null && _operation != Constants.OPERATION_REVERT );
+		monitor.beginTask( getName(), _sources.size() + ( report ? _sources.size() : 0 ) + 1 );
+		try {
+
+			// The files are handled in parallel, the ones done before a cancel are still refreshed
+			summary = new InstrumentationEngine( instrumentor ).run( _sources, _operation, monitor );
+			try {
+				instrumentor.saveShadowIndex();
+			}
+			catch( IOException e ) {
+				e.printStackTrace();
+			}
+
+			// Refresh all the changed files at once, the shadow tree is not part of the workspace
+			if( _shadowRoot == null ) {
+				monitor.subTask( "Refreshing workspace" );
+				instrumentor.refreshTouchedFiles( monitor );
+			}
+			monitor.worked( 1 );
+
+			if( report && !summary.isCanceled() ) {
+				writeInliningReport( instrumentor, summary, monitor );
+			}
+		}
+		finally {
+			monitor.done();
+		}
+
+		if( summary.isCanceled() ) {
+			return Status.CANCEL_STATUS;
+		}
+		if( !summary.getFailedFiles().isEmpty() ) {
+			return new Status( IStatus.WARNING, Activator.PLUGIN_ID, summary.toString() );
+		}
+		return new Status( IStatus.OK, Activator.PLUGIN_ID, summary.toString() );
+	}
+
+	/**
+	 * Compares each instrumented file with its original and writes the methods that crossed an inlining
+	 * limit to the report file. A file that can't be compiled on its own is left out of the report.
+	 * 
+	 * @param instrumentor the instrumentor that instrumented the files
+	 * @param summary the summary the crossings are added to
+	 * @param monitor the progress monitor
+	 */
+	private void writeInliningReport( Instrumentor instrumentor, InstrumentationSummary summary, IProgressMonitor monitor ) {
+
+		monitor.subTask( "Checking inlining limits" );
+		HashMap<IProject, InliningReport> reports = new HashMap<IProject, InliningReport>();
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter( new FileWriter( _reportFile ) );
+			for( SourceFile sf : _sources ) {
+				if( monitor.isCanceled() ) {
+					break;
+				}
+				InliningReport inliningReport = findReport( sf, reports );
+				ArrayList<InliningReport.Crossing> crossings = inliningReport.compare( sf, instrumentor );
+				if( crossings == null ) {
+					writer.write( sf.getPath().toOSString() + ": could not be compiled\n" );
+				}
+				else {
+					summary.addCrossings( crossings.size() );
+					writer.write( InliningReport.format( sf.getPath().toOSString(), crossings ) );
+				}
+				monitor.worked( 1 );
+			}
+		}
+		catch( IOException e ) {
+			e.printStackTrace();
+		}
+		finally {
+			if( writer != null ) {
+				try {
+					writer.close();
+				}
+				catch( IOException e ) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the report that compiles the source file against the class path of its project, the reports
+	 * are made once per project.
+	 * 
+	 * @param sf the source file
+	 * @param reports the reports made so far, by project
+	 * @return the report
+	 */
+	private InliningReport findReport( SourceFile sf, HashMap<IProject, InliningReport> reports ) {
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+		IFile file = root.getFileForLocation( sf.getPath() );
+		IProject project = ( file == null ) ? null : file.getProject();
+		if( reports.containsKey( project ) ) {
+			return reports.get( project );
+		}
+
+		StringBuilder classPath = new StringBuilder( _runtimeJar.getAbsolutePath() );
+		StringBuilder sourcePath = new StringBuilder();
+		if( project != null ) {
+			try {
+				IJavaProject javaProject = JavaCore.create( project );
+				classPath.append( File.pathSeparator ).append( resolve( root, javaProject.getOutputLocation() ) );
+				for( IClasspathEntry entry : javaProject.getResolvedClasspath( true ) ) {
+					if( entry.getEntryKind() == IClasspathEntry.CPE_SOURCE ) {
+						sourcePath.append( ( sourcePath.length() > 0 ) ? File.pathSeparator : "" ).append(
+								resolve( root, entry.getPath() ) );
+					}
+					else if( entry.getEntryKind() == IClasspathEntry.CPE_LIBRARY ) {
+						classPath.append( File.pathSeparator ).append( resolve( root, entry.getPath() ) );
+					}
+					else if( entry.getEntryKind() == IClasspathEntry.CPE_PROJECT ) {
+						IJavaProject required = JavaCore.create( root.getProject( entry.getPath().lastSegment() ) );
+						classPath.append( File.pathSeparator ).append( resolve( root, required.getOutputLocation() ) );
+					}
+				}
+			}
+			catch( JavaModelException e ) {
+				e.printStackTrace();
+			}
+		}
+
+		InliningReport report = new InliningReport( classPath.toString(), ( sourcePath.length() > 0 ) ? sourcePath
+				.toString() : null );
+		reports.put( project, report );
+		return report;
+	}
+
+	/**
+	 * Resolves a path of the class path to a path in the file system, a path within the workspace is
+	 * resolved to the location of its resource.
+	 * 
+	 * @param root the workspace root
+	 * @param path the path
+	 * @return the path in the file system
+	 */
+	private static String resolve( IWorkspaceRoot root, IPath path ) {
+		IResource resource = root.findMember( path );
+		if( resource != null && resource.getLocation() != null ) {
+			return resource.getLocation().toOSString();
+		}
+		return path.toOSString();
+	}
+}
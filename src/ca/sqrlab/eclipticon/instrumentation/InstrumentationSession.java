@@ -0,0 +1,205 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.FileNotFoundException;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.AutomaticConfiguration;
+import ca.sqrlab.eclipticon.data.AutomaticConfigurationHandler;
+import ca.sqrlab.eclipticon.runtime.Noise;
+
+/**
+ * This class holds the settings that stay the same for every file of a single instrumentation
+ * run. The automatic configuration is read once when the session is created and kept as an
+ * immutable snapshot, so it can be shared by all the files (and threads) of the run.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class InstrumentationSession {
+
+	private final int	_lowDelayRange;				// The low delay range for the sleep noise
+	private final int	_highDelayRange;			// The high delay range for the sleep noise
+	private final int	_sleepProbability;			// The probability of a noise being sleep (out of 100)
+	private final int	_yieldProbability;			// The probability of a noise being yield (out of 100)
+	private final int	_delayType;					// The type of noise used when the noise is not a yield
+	private final int	_synchronizeProbability;	// The probability of a synchronize being instrumented (out of 100)
+	private final int	_barrierProbability;		// The probability of a barrier being instrumented (out of 100)
+	private final int	_latchProbability;			// The probability of a latch being instrumented (out of 100)
+	private final int	_semaphoreProbability;		// The probability of a semaphore being instrumented (out of 100)
+	private final int	_budgetType;				// The type of budget of the delays of a run
+	private final int	_budget;					// The total delay (ms) or the percentage of the run time
+	private final int	_budgetYield;				// If the noise yields once the budget is spent (1) or does nothing (0)
+	private final int	_holdBudget;				// The budget of the hold points, in the units of the budget (0 to share it)
+	private final int	_decaySchedule;				// The decay schedule of the points that are reached most often
+	private final int	_decay;						// The hits before decaying, or the size of the bucket
+	private final int	_noisePosition;				// Where the noise goes around the construct (before, after, both or hold)
+
+	/**
+	 * Instantiates a new session from a copy of the given configuration, later changes to the
+	 * configuration do not affect the session.
+	 * 
+	 * @param configuration the automatic configuration
+	 */
+	public InstrumentationSession( AutomaticConfiguration configuration ) {
+		_lowDelayRange = configuration.getLowDelayRange();
+		_highDelayRange = configuration.getHighDelayRange();
+		_sleepProbability = configuration.getSleepProbability();
+		_yieldProbability = configuration.getYieldProbability();
+		_delayType = configuration.getDelayType();
+		_synchronizeProbability = configuration.getSynchronizeProbability();
+		_barrierProbability = configuration.getBarrierProbability();
+		_latchProbability = configuration.getLatchProbability();
+		_semaphoreProbability = configuration.getSemaphoreProbability();
+		_budgetType = configuration.getBudgetType();
+		_budget = configuration.getBudget();
+		_budgetYield = configuration.getBudgetYield();
+		_holdBudget = configuration.getHoldBudget();
+		_decaySchedule = configuration.getDecaySchedule();
+		_decay = configuration.getDecay();
+		_noisePosition = configuration.getNoisePosition();
+	}
+
+	/**
+	 * Creates a new session by reading the stored automatic configuration.
+	 * 
+	 * @return the session
+	 */
+	public static InstrumentationSession load() {
+		AutomaticConfigurationHandler configurationHandler = new AutomaticConfigurationHandler();
+
+		try {
+			configurationHandler.readXml();
+		}
+		catch( FileNotFoundException e ) {
+			e.printStackTrace();
+		}
+		return new InstrumentationSession( configurationHandler.getConfiguration() );
+	}
+
+	/**
+	 * Gets the low delay range.
+	 * 
+	 * @return the low delay range
+	 */
+	public int getLowDelayRange() {
+		return _lowDelayRange;
+	}
+
+	/**
+	 * Gets the high delay range.
+	 * 
+	 * @return the high delay range
+	 */
+	public int getHighDelayRange() {
+		return _highDelayRange;
+	}
+
+	/**
+	 * Gets the sleep probability.
+	 * 
+	 * @return the sleep probability
+	 */
+	public int getSleepProbability() {
+		return _sleepProbability;
+	}
+
+	/**
+	 * Gets the yield probability.
+	 * 
+	 * @return the yield probability
+	 */
+	public int getYieldProbability() {
+		return _yieldProbability;
+	}
+
+	/**
+	 * Gets the type of noise used when the noise is not a yield.
+	 * 
+	 * @return the delay type
+	 */
+	public int getDelayType() {
+		return _delayType;
+	}
+
+	/**
+	 * Gets where the noise goes around the construct, before it, after it, both or where its lock is held.
+	 * 
+	 * @return the noise position
+	 */
+	public int getNoisePosition() {
+		return _noisePosition;
+	}
+
+	/**
+	 * Gets the synchronize probability.
+	 * 
+	 * @return the synchronize probability
+	 */
+	public int getSynchronizeProbability() {
+		return _synchronizeProbability;
+	}
+
+	/**
+	 * Gets the barrier probability.
+	 * 
+	 * @return the barrier probability
+	 */
+	public int getBarrierProbability() {
+		return _barrierProbability;
+	}
+
+	/**
+	 * Gets the latch probability.
+	 * 
+	 * @return the latch probability
+	 */
+	public int getLatchProbability() {
+		return _latchProbability;
+	}
+
+	/**
+	 * Gets the semaphore probability.
+	 * 
+	 * @return the semaphore probability
+	 */
+	public int getSemaphoreProbability() {
+		return _semaphoreProbability;
+	}
+
+	/**
+	 * Gets the budget of the delays of a run, as it is given to the tested program.
+	 * 
+	 * @return the budget, or null if the delays are unlimited
+	 */
+	public String getNoiseBudget() {
+		if( _budgetType != Constants.BUDGET_TOTAL && _budgetType != Constants.BUDGET_RUN_TIME ) {
+			return null;
+		}
+		return Noise.makeBudget( _budget, _budgetType == Constants.BUDGET_RUN_TIME, _budgetYield != 0 );
+	}
+
+	/**
+	 * Gets the budget of the delays of the hold points of a run, as it is given to the tested program. It
+	 * is limited the same way as the budget of the run, but is spent separately.
+	 * 
+	 * @return the hold budget, or null if the delays are unlimited or the hold points share the budget
+	 */
+	public String getHoldBudget() {
+		if( getNoiseBudget() == null || _holdBudget <= 0 ) {
+			return null;
+		}
+		return Noise.makeBudget( _holdBudget, _budgetType == Constants.BUDGET_RUN_TIME, _budgetYield != 0 );
+	}
+
+	/**
+	 * Gets the decay schedule of the points that are reached most often, as it is given to the tested
+	 * program.
+	 * 
+	 * @return the decay schedule, or null if the points don't decay
+	 */
+	public String getNoiseDecay() {
+		if( ( _decaySchedule != Constants.DECAY_LOG && _decaySchedule != Constants.DECAY_BUCKET ) || _decay <= 0 ) {
+			return null;
+		}
+		return Noise.makeDecay( _decaySchedule == Constants.DECAY_BUCKET, _decay );
+	}
+}
@@ -0,0 +1,138 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.util.ArrayList;
+
+import ca.sqrlab.eclipticon.data.SourceFile;
+
+/**
+ * This class holds the outcome of a batch of instrumentation, which is the number of files and
+ * instrumentation points that were handled, the files left as they were since their plan hadn't
+ * changed, and the files that failed along the way.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class InstrumentationSummary {
+
+	private int						_files			= 0;							// The number of files handled
+	private int						_points			= 0;							// The number of points instrumented
+	private int						_unchanged		= 0;							// The number of files left as they were
+	private boolean					_canceled		= false;						// If the batch was canceled
+	private int						_crossings		= 0;							// The methods the noise pushed past an inlining limit
+	private ArrayList<SourceFile>	_failedFiles	= new ArrayList<SourceFile>();	// The files that failed
+
+	/**
+	 * Records a file that was handled successfully.
+	 * 
+	 * @param points the number of instrumentation points in the file
+	 */
+	public void addFile( int points ) {
+		_files++;
+		_points += points;
+	}
+
+	/**
+	 * Records a file that was left as it was, as it was already instrumented with the same plan.
+	 */
+	public void addUnchangedFile() {
+		_unchanged++;
+	}
+
+	/**
+	 * Records a file that failed.
+	 * 
+	 * @param sourceFile the source file that failed
+	 */
+	public void addFailure( SourceFile sourceFile ) {
+		_failedFiles.add( sourceFile );
+	}
+
+	/**
+	 * Gets the number of files handled successfully.
+	 * 
+	 * @return the number of files
+	 */
+	public int getFiles() {
+		return _files;
+	}
+
+	/**
+	 * Gets the number of files left as they were.
+	 * 
+	 * @return the number of files
+	 */
+	public int getUnchangedFiles() {
+		return _unchanged;
+	}
+
+	/**
+	 * Gets the number of instrumentation points injected.
+	 * 
+	 * @return the number of points
+	 */
+	public int getPoints() {
+		return _points;
+	}
+
+	/**
+	 * Gets the files that failed.
+	 * 
+	 * @return the failed files
+	 */
+	public ArrayList<SourceFile> getFailedFiles() {
+		return _failedFiles;
+	}
+
+	/**
+	 * Checks if the batch was canceled before all the files were handled.
+	 * 
+	 * @return true, if canceled
+	 */
+	public boolean isCanceled() {
+		return _canceled;
+	}
+
+	/**
+	 * Sets if the batch was canceled.
+	 * 
+	 * @param canceled if the batch was canceled
+	 */
+	public void setCanceled( boolean canceled ) {
+		_canceled = canceled;
+	}
+
+	/**
+	 * Records the methods of a file that the noise pushed past an inlining limit.
+	 * 
+	 * @param crossings the number of methods
+	 */
+	public void addCrossings( int crossings ) {
+		_crossings += crossings;
+	}
+
+	/**
+	 * Gets the number of methods that the noise pushed past an inlining limit.
+	 * 
+	 * @return the number of methods
+	 */
+	public int getCrossings() {
+		return _crossings;
+	}
+
+	@Override
+	public String toString() {
+		String summary = _files + " file(s) and " + _points + " point(s) instrumented";
+		if( _unchanged > 0 ) {
+			summary += ", " + _unchanged + " file(s) unchanged";
+		}
+		if( !_failedFiles.isEmpty() ) {
+			summary += ", " + _failedFiles.size() + " file(s) failed";
+		}
+		if( _crossings > 0 ) {
+			summary += ", " + _crossings + " method(s) pushed past an inlining limit";
+		}
+		if( _canceled ) {
+			summary += " (canceled)";
+		}
+		return summary;
+	}
+}
@@ -0,0 +1,75 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class streams instrumented source code to a writer one line at a time. Nothing
+ * of the source is held in memory, every line goes straight through to the underlying
+ * writer. The declarations needed by the noise don't belong to any type of the source,
+ * so they are added after the last line once the stream is finished.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class InstrumentedWriter {
+
+	private Writer	_out			= null; // The writer the instrumented code ends up in
+	private String	_trailerText	= null; // The declaration to add after the last line
+
+	/**
+	 * Instantiates a new instrumented writer. When the declaration is null the source is
+	 * written through as is.
+	 *
+	 * @param out the writer to send the instrumented code to
+	 * @param trailerText the declaration to place on a line of its own after the source
+	 */
+	public InstrumentedWriter( Writer out, String trailerText ) {
+		_out = out;
+		_trailerText = trailerText;
+	}
+
+	/**
+	 * Writes part of the current line.
+	 *
+	 * @param text the text to write
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write( String text ) throws IOException {
+		_out.write( text );
+	}
+
+	/**
+	 * Writes a part of a line given by the start (inclusive) and end (exclusive) positions.
+	 *
+	 * @param line the line that holds the text
+	 * @param start the start position
+	 * @param end the end position
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write( String line, int start, int end ) throws IOException {
+		_out.write( line, start, end - start );
+	}
+
+	/**
+	 * Ends the current line.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void endLine() throws IOException {
+		write( "\n" );
+	}
+
+	/**
+	 * Finishes the stream, writing out the declaration after the last line.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void close() throws IOException {
+		if( _trailerText != null ) {
+			_out.write( _trailerText );
+			_out.write( "\n" );
+			_trailerText = null;
+		}
+		_out.flush();
+	}
+}
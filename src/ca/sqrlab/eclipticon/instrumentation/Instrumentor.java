@@ -2,33 +2,44 @@ package ca.sqrlab.eclipticon.instrumentation;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
 import java.util.Random;
-import java.util.regex.Matcher;
 
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MultiTextEdit;
 
 import ca.sqrlab.eclipticon.Constants;
-import ca.sqrlab.eclipticon.data.AutomaticConfiguration;
-import ca.sqrlab.eclipticon.data.AutomaticConfigurationHandler;
 import ca.sqrlab.eclipticon.data.InstrumentationPoint;
 import ca.sqrlab.eclipticon.data.InterestPoint;
 import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.gui.Activator;
 
 /**
  * This class will perform the actual instrumentation of source files by inserting 
@@ -38,76 +49,71 @@ import ca.sqrlab.eclipticon.data.SourceFile;
  */
 public class Instrumentor {
 
-	private NoiseMaker	_noiseMaker	= new NoiseMaker(); // The object to generate noise
+	private NoiseMaker				_noiseMaker		= new NoiseMaker(); // The object to generate noise
+	private InstrumentationSession	_session		= null; // The session settings, loaded on first use if not given
+	private BackupStore				_backupStore	= BackupStore.getDefault(); // The store of the original files
+	private File					_sourceRoot		= null; // The root that the shadow tree mirrors
+	private File					_shadowRoot		= null; // The root of the shadow tree, null to instrument in place
+	private ShadowIndex				_shadowIndex	= null; // The fingerprints of the shadow files
+	private List<Path>				_touchedFiles	= Collections.synchronizedList( new ArrayList<Path>() ); // The files changed since the last refresh
 
 	/**
-	 * Makes a backup of the source file with the file extension of .eclipticon
-	 * 
-	 * @param sourceFile file to backup
-	 * @throws IOException Signals that an I/O exception has occurred. 
+	 * Orders instrumentation points by line number and then by sequence number, so that
+	 * the points of a single line form one contiguous run that can be consumed in order.
 	 */
-	private void makeBackupFile( File sourceFile ) throws IOException {
-
-		File copyFile = new File( sourceFile.getPath() + Constants.EXTENSION_ECLIPTICON );
-
-		// Create the file if it doesn't exist
-		if( !copyFile.exists() ) {
-			copyFile.createNewFile();
-		}
+	static final Comparator<InstrumentationPoint>			LINE_ORDER	= new Comparator<InstrumentationPoint>() {
 
-		FileChannel source = null;
-		FileChannel destination = null;
-
-		// Copy the original to the copy
-		try {
-			source = new FileInputStream( sourceFile ).getChannel();
-			destination = new FileOutputStream( copyFile ).getChannel();
-			destination.transferFrom( source, 0, source.size() );
-		}
-		// Then close the stream
-		finally {
-			if( source != null ) {
-				source.close();
+		public int compare( InstrumentationPoint first, InstrumentationPoint second ) {
+			if( first.getLine() != second.getLine() ) {
+				return first.getLine() < second.getLine() ? -1 : 1;
 			}
-			if( destination != null ) {
-				destination.close();
+			if( first.getSequence() != second.getSequence() ) {
+				return first.getSequence() < second.getSequence() ? -1 : 1;
 			}
+			return 0;
 		}
+	};
+
+	/**
+	 * Instantiates a new instrumentor, the session is loaded the first time automatic
+	 * instrumentation is used.
+	 */
+	public Instrumentor() {
 	}
 
 	/**
-	 * Prints the file content to the same file path with the modification of
-	 * .eclipticon append to the original file.
+	 * Instantiates a new instrumentor that uses the settings of the given session.
 	 * 
-	 * @param instrumentedCode the file's content
-	 * @param filePath the file's path
-	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @param session the instrumentation session
 	 */
-	private void printFile( String instrumentedCode, String filePath ) throws IOException {
+	public Instrumentor( InstrumentationSession session ) {
+		_session = session;
+	}
 
-		// Write the fileContent to the new file
-		FileWriter fw = null;
-		try {
-			fw = new FileWriter( filePath );
-			fw.write( instrumentedCode );
-		}
-		finally { // Close the writer
-			if( fw != null ) {
-				fw.flush();
-				fw.close();
-			}
-			
-			// Get the local file then refresh the copy
-			IWorkspace workspace = ResourcesPlugin.getWorkspace();
-			IWorkspaceRoot root = workspace.getRoot();
+	/**
+	 * Sets the instrumentor to write the instrumented files into a shadow source tree instead of
+	 * over the original files. The shadow tree mirrors the layout of the files under the source root.
+	 * It isn't a folder of any project, so the shadow files aren't refreshed in the workspace, the tree
+	 * is built as a project of its own that the user sets up over it (see the README).
+	 * 
+	 * @param sourceRoot the root of the original source files
+	 * @param shadowRoot the root of the shadow source tree
+	 */
+	public void setShadowOutput( File sourceRoot, File shadowRoot ) {
+		_sourceRoot = sourceRoot;
+		_shadowRoot = shadowRoot;
+		_shadowIndex = new ShadowIndex( shadowRoot );
+	}
 
-		
-			try {
-				root.refreshLocal(IResource.DEPTH_INFINITE, null);
-			} catch (CoreException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+	/**
+	 * Saves the fingerprints of the shadow files that were generated, this is to be called once a
+	 * batch of files is done.
+	 * 
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void saveShadowIndex() throws IOException {
+		if( _shadowIndex != null ) {
+			_shadowIndex.save();
 		}
 	}
 
@@ -120,81 +126,316 @@ public class Instrumentor {
 	 */
 	public void revertToOriginalState( SourceFile sourceFile ) throws IOException {
 
-		// This is the path to the backup file and original file
-		File backupFile = new File( sourceFile.getPath() + Constants.EXTENSION_ECLIPTICON );
+		// Only revert if there is a backup of the file
+		if( _backupStore.restore( sourceFile.getPath().toFile() ) ) {
+			_touchedFiles.add( sourceFile.getPath() );
+		}
+	}
+
+	/**
+	 * Gets the file that holds the original source of the source file, which is the file the points
+	 * are to be found in. A file instrumented in place has its original in the backup store.
+	 * 
+	 * @param sourceFile the source file
+	 * @return the file holding the original source
+	 */
+	public File getOriginalFile( SourceFile sourceFile ) {
+		File file = sourceFile.getPath().toFile();
+		if( _shadowRoot == null ) {
+			File original = _backupStore.getOriginal( file );
+			if( original != null ) {
+				return original;
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Gets the file that the instrumented source of the source file is written to, which is the copy in
+	 * the shadow tree when there is one, otherwise the source file itself.
+	 * 
+	 * @param sourceFile the source file
+	 * @return the file holding the instrumented source
+	 */
+	public File getInstrumentedFile( SourceFile sourceFile ) {
+		File file = sourceFile.getPath().toFile();
+		if( _shadowRoot != null ) {
+			return new File( _shadowRoot, getShadowPath( file ) );
+		}
+		return file;
+	}
+
+	/**
+	 * This method will perform the instrumentation on a source file using all
+	 * the instrumentation points. The source file is interpreted one line at a
+	 * time, reading from the backup copy and streaming the instrumented lines
+	 * into a temporary file that is then renamed over the source file. An instrumentor can be shared by several threads as
+	 * long as each of them works on a different source file.<br/><br/>
+	 * 
+	 * A file is only rewritten when its source or plan (the points and their parameters, or the
+	 * automatic configuration) has changed since it was last instrumented, so instrumenting again after a
+	 * change doesn't need the whole workspace to be reverted first.
+	 * 
+	 * @param sourceFile the source file to be instrumented
+	 * @param automaticMode if the automatic configuration is used to create the instrumentation points
+	 * @return the number of instrumentation points that were injected, or {@link Constants#FILE_UNCHANGED}
+	 *         if the file was left as it was
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public int instrument( SourceFile sourceFile, boolean automaticMode ) throws IOException {
+
 		File originalFile = sourceFile.getPath().toFile();
+		File inputFile = null;
+		File outputFile = null;
+		String shadowPath = null;
+		String fingerprint = null;
+
+		if( _shadowRoot != null ) {
+
+			// The original is left alone, the instrumented copy goes to the same place in the shadow tree
+			shadowPath = getShadowPath( originalFile );
+			outputFile = new File( _shadowRoot, shadowPath );
+			inputFile = originalFile;
+
+			// Skip the file if neither the source nor the plan changed since it was last generated
+			fingerprint = makeFingerprint( sourceFile, inputFile, automaticMode );
+			if( outputFile.exists() && _shadowIndex.isUpToDate( shadowPath, fingerprint ) ) {
+				return Constants.FILE_UNCHANGED;
+			}
+			outputFile.getParentFile().mkdirs();
+		}
+		else {
 
-		// Only revert if the backup file exists
-		if( backupFile.exists() ) {
-			// Clear the instrumented file
-			originalFile.delete();
-			originalFile.createNewFile();
-			FileChannel source = null;
-			FileChannel destination = null;
+			// Make backup of original source file, the backup (with any annotations edited since) is then the input
+			_backupStore.snapshot( originalFile );
+			inputFile = _backupStore.getOriginal( originalFile );
+			outputFile = originalFile;
 
-			// Put back the original file
-			try {
-				source = new FileInputStream( backupFile ).getChannel();
-				destination = new FileOutputStream( sourceFile.getPath().toString() ).getChannel();
-				destination.transferFrom( source, 0, source.size() );
+			// A file that is already instrumented is left in place if its plan hasn't changed
+			fingerprint = makeFingerprint( sourceFile, inputFile, automaticMode );
+			if( fingerprint.equals( _backupStore.getPlan( originalFile ) ) ) {
+				return Constants.FILE_UNCHANGED;
 			}
-			finally { // Then close the stream
-				if( source != null ) {
-					source.close();
-				}
-				if( destination != null ) {
-					destination.close();
-				}
-				backupFile.delete();
-				
+		}
+		File temporaryFile = new File( outputFile.getPath() + Constants.EXTENSION_TEMPORARY );
 
-				// Get the local file then refresh the copy
-				IWorkspace workspace = ResourcesPlugin.getWorkspace();
-				IWorkspaceRoot root = workspace.getRoot();
-			
-				
+		ArrayList<InstrumentationPoint> instrPoints = collectPoints( sourceFile, automaticMode );
+
+		// Bucket the points by line (a stable sort keeps the original order of equal points)
+		ArrayList<InstrumentationPoint> orderedPoints = new ArrayList<InstrumentationPoint>( instrPoints );
+		Collections.sort( orderedPoints, LINE_ORDER );
+
+		BufferedReader bufReader = null;
+		InstrumentedWriter writer = null;
+		String holder = _noiseMaker.makeHolderName( sourceFile.getName() );
+		try {
+			bufReader = new BufferedReader( new FileReader( inputFile ), Constants.BUFFER_SIZE );
+
+			// If there were some instrumentation points then the point table is added
+			if( orderedPoints.isEmpty() ) {
+				writer = new InstrumentedWriter( new BufferedWriter( new FileWriter( temporaryFile ),
+						Constants.BUFFER_SIZE ), null );
+			}
+			else {
+				writer = new InstrumentedWriter( new BufferedWriter( new FileWriter( temporaryFile ),
+						Constants.BUFFER_SIZE ), _noiseMaker.makePointTable( holder, AgentConfigurationWriter.findSourcePath( sourceFile ), orderedPoints ) );
+			}
+
+			writeInstrumentedLines( bufReader, writer, orderedPoints, holder );
+			writer.close();
+			writer = null;
+
+			// The output file is only replaced once it has been completely written
+			BackupStore.replace( temporaryFile, outputFile );
+			if( shadowPath != null ) {
+				_shadowIndex.put( shadowPath, fingerprint );
+			}
+			else {
+				_backupStore.recordPlan( originalFile, fingerprint );
+				_touchedFiles.add( new Path( outputFile.getPath() ) );
+			}
+		}
+		finally {
+			closeQuietly( bufReader );
+			if( writer != null ) {
 				try {
-					root.refreshLocal(IResource.DEPTH_INFINITE, null);
-				} catch (CoreException e) {
-					// TODO Auto-generated catch block
+					writer.close();
+				}
+				catch( IOException e ) {
 					e.printStackTrace();
 				}
 			}
+			temporaryFile.delete();
 		}
+		return orderedPoints.size();
 	}
 
 	/**
-	 * This method will perform the instrumentation on a source file using all
-	 * the instrumentation points. The source file is interpreted one line at a
-	 * time.
+	 * Creates the instrumentation of a source file as a set of text edits, rather than writing the
+	 * instrumented file. The edits are offsets into the source file as it is on disk.
 	 * 
 	 * @param sourceFile the source file to be instrumented
+	 * @param automaticMode if the automatic configuration is used to create the instrumentation points
+	 * @return the edits that instrument the source file
+	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	public void instrument( SourceFile sourceFile, boolean automaticMode ) {
+	public MultiTextEdit createEdits( SourceFile sourceFile, boolean automaticMode ) throws IOException {
 
-				
-		// Get a buffer reader of this file
-		BufferedReader bufReader = null;
+		// Read in the whole source
+		StringBuilder source = new StringBuilder();
+		BufferedReader bufReader = new BufferedReader( new FileReader( sourceFile.getPath().toFile() ),
+				Constants.BUFFER_SIZE );
 		try {
-			bufReader = new BufferedReader( new FileReader( sourceFile.getPath().toFile() ) );
+			char[] c = new char[ Constants.BUFFER_SIZE ];
+			int readChars = 0;
+			while( ( readChars = bufReader.read( c ) ) != -1 ) {
+				source.append( c, 0, readChars );
+			}
 		}
-		catch( FileNotFoundException e ) {
-			e.printStackTrace();
+		finally {
+			closeQuietly( bufReader );
 		}
+		return createEdits( sourceFile, automaticMode, source.toString() );
+	}
+
+	/**
+	 * Creates the instrumentation of a source file as a set of text edits on the given source, which
+	 * can be the content of an open document. The line numbers of the points are the lines of the source.
+	 * Insertions at the same offset are merged into one edit so the edits never overlap.
+	 * 
+	 * @param sourceFile the source file to be instrumented
+	 * @param automaticMode if the automatic configuration is used to create the instrumentation points
+	 * @param source the source code of the file
+	 * @return the edits that instrument the source
+	 */
+	public MultiTextEdit createEdits( SourceFile sourceFile, boolean automaticMode, String source ) {
+
+		ArrayList<InstrumentationPoint> orderedPoints = collectPoints( sourceFile, automaticMode );
+		Collections.sort( orderedPoints, LINE_ORDER );
+
+		// The text to insert at each offset, in the order it is to appear
+		TreeMap<Integer, StringBuilder> insertions = new TreeMap<Integer, StringBuilder>();
+		String holder = _noiseMaker.makeHolderName( sourceFile.getName() );
+
+		int lineNum = 1; // The current line number
+		int lineStart = 0; // The offset of the start of the current line
+		int cursor = 0; // The next point that has not been serviced yet
+		ScopeScanner scanner = new ScopeScanner(); // Finds where the noise placed after a construct goes
+
+		while( lineStart <= source.length() && ( cursor < orderedPoints.size() || scanner.hasPending() ) ) {
 
-		// Make backup of original source file
+			// Find the end of the line, a line can end with \n, \r\n or \r
+			int lineEnd = lineStart;
+			while( lineEnd < source.length() && source.charAt( lineEnd ) != '\n' && source.charAt( lineEnd ) != '\r' ) {
+				lineEnd++;
+			}
+			String currentLine = source.substring( lineStart, lineEnd );
+
+			// Skip any points that refer to lines that have already gone by
+			while( cursor < orderedPoints.size() && orderedPoints.get( cursor ).getLine() < lineNum ) {
+				cursor++;
+			}
+
+			// Service only the points that are on the current line, in order of position
+			ArrayList<Integer> positions = new ArrayList<Integer>();
+			ArrayList<String> noises = new ArrayList<String>();
+			cursor = placeNoise( orderedPoints, cursor, lineNum, currentLine, holder, scanner, positions, noises );
+			for( int i = 0; i < positions.size(); i++ ) {
+				addInsertion( insertions, lineStart + positions.get( i ), noises.get( i ) );
+			}
+
+			// Move past the line delimiter
+			if( lineEnd < source.length() && source.charAt( lineEnd ) == '\r' && lineEnd + 1 < source.length()
+					&& source.charAt( lineEnd + 1 ) == '\n' ) {
+				lineEnd++;
+			}
+			lineStart = lineEnd + 1;
+			lineNum++;
+		}
+
+		// The point table goes after the types of the file on a line of its own, just like when the file is written
+		if( !orderedPoints.isEmpty() ) {
+			String table = _noiseMaker.makePointTable( holder, AgentConfigurationWriter.findSourcePath( sourceFile ), orderedPoints );
+			char last = ( source.length() == 0 ) ? '\n' : source.charAt( source.length() - 1 );
+			addInsertion( insertions, source.length(), ( last == '\n' || last == '\r' ) ? table + "\n" : "\n" + table );
+		}
+
+		MultiTextEdit edits = new MultiTextEdit();
+		for( Integer offset : insertions.keySet() ) {
+			edits.addChild( new InsertEdit( offset, insertions.get( offset ).toString() ) );
+		}
+		return edits;
+	}
+
+	/**
+	 * Applies the edits to the source file through its file buffer, so an open editor sees the change
+	 * and the file is only written when the buffer is committed. The original file is backed up first
+	 * so it can be reverted like any other instrumented file, and the plan is recorded the same way as
+	 * when the file is instrumented, so the edits aren't applied again over a file that already has them.
+	 * 
+	 * @param sourceFile the source file the edits are for
+	 * @param automaticMode if the automatic configuration was used to create the edits
+	 * @param edits the edits to apply
+	 * @param monitor the progress monitor, can be null
+	 * @return true if the edits were applied, false if the file was already instrumented with the same plan
+	 * @throws CoreException if the file buffer could not be used or the edits don't fit the file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public boolean applyEdits( SourceFile sourceFile, boolean automaticMode, MultiTextEdit edits,
+			IProgressMonitor monitor ) throws CoreException, IOException {
+
+		File originalFile = sourceFile.getPath().toFile();
+		_backupStore.snapshot( originalFile );
+		String fingerprint = makeFingerprint( sourceFile, _backupStore.getOriginal( originalFile ), automaticMode );
+		if( fingerprint.equals( _backupStore.getPlan( originalFile ) ) ) {
+			return false;
+		}
+
+		ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+		manager.connect( sourceFile.getPath(), LocationKind.LOCATION, monitor );
 		try {
-			makeBackupFile( sourceFile.getPath().toFile() );
+			ITextFileBuffer buffer = manager.getTextFileBuffer( sourceFile.getPath(), LocationKind.LOCATION );
+			edits.apply( buffer.getDocument() );
+			buffer.commit( monitor, true );
+			_backupStore.recordPlan( originalFile, fingerprint );
+			_touchedFiles.add( sourceFile.getPath() );
 		}
-		catch( IOException e ) {
-			e.printStackTrace();
+		catch( BadLocationException e ) {
+			throw new CoreException( new Status( IStatus.ERROR, Activator.PLUGIN_ID, "The instrumentation of "
+					+ sourceFile.getName() + " does not fit the file", e ) );
+		}
+		finally {
+			manager.disconnect( sourceFile.getPath(), LocationKind.LOCATION, monitor );
+		}
+		return true;
+	}
+
+	/**
+	 * Adds text to insert at an offset, after any text already inserted at that offset.
+	 * 
+	 * @param insertions the text to insert by offset
+	 * @param offset the offset
+	 * @param text the text to insert
+	 */
+	private void addInsertion( TreeMap<Integer, StringBuilder> insertions, int offset, String text ) {
+		StringBuilder insertion = insertions.get( offset );
+		if( insertion == null ) {
+			insertion = new StringBuilder();
+			insertions.put( offset, insertion );
 		}
+		insertion.append( text );
+	}
+
+	/**
+	 * Collects the instrumentation points of the source file, either the annotated points or (in
+	 * automatic mode) points made from the interest points using the automatic configuration.
+	 * 
+	 * @param sourceFile the source file
+	 * @param automaticMode if the automatic configuration is used
+	 * @return the instrumentation points
+	 */
+	private ArrayList<InstrumentationPoint> collectPoints( SourceFile sourceFile, boolean automaticMode ) {
 
-		StringBuffer fileContents = new StringBuffer(); // The new file with the instrumentation
-		String currentLine = ""; // The current line's value
-		int lineNum = 1; // The current line number
-		
-		
 		// Make the arraylists to hold the points
 		ArrayList<InterestPoint> interestingPoints = sourceFile.getInterestingPoints();
 		ArrayList<InstrumentationPoint> instrPoints = new ArrayList<InstrumentationPoint>();
@@ -214,64 +455,59 @@ public class Instrumentor {
 				}
 			}
 		}
+		return instrPoints;
+	}
 
-		// If bufferReader is ready start parsing the sourceFile
-		try {
-
-			if( bufReader.ready() ) {
-				String buffer = "";
-
-				// For as long as there are lines left to read; acquire current one
-				while( ( currentLine = bufReader.readLine() ) != null ) {
-
-					// Loop through all the instrumentation points
-					for( InstrumentationPoint point : instrPoints ) {
-
-						// If this instrumentation point is on the current line
-						if( point.getLine() == lineNum ) {
-
-							// Evaluate this line based on the current information
-							currentLine = evaluateLine( point, currentLine );
-						}
-					}
+	/**
+	 * Streams the lines from the reader into the writer, injecting the noise of the points
+	 * as their lines go by. The points must be ordered by line and sequence number.
+	 * 
+	 * @param bufReader the reader of the original source
+	 * @param writer the writer of the instrumented source
+	 * @param orderedPoints the instrumentation points ordered by line and sequence number
+	 * @param holder the name of the class holding the point table
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeInstrumentedLines( BufferedReader bufReader, InstrumentedWriter writer,
+			ArrayList<InstrumentationPoint> orderedPoints, String holder ) throws IOException {
 
-					// Add the currentLine to the buffer
-					buffer = buffer + currentLine + "\n";
+		String currentLine = null; // The current line's value
+		int lineNum = 1; // The current line number
+		int cursor = 0; // The next point that has not been serviced yet
 
-					// If the buffer's length is over the buffer size then dump it
-					if( buffer.length() > Constants.BUFFER_SIZE ) {
-						fileContents.append( buffer );
-						buffer = "";
-					}
+		// Injection positions and noise of the points on the current line
+		ArrayList<Integer> positions = new ArrayList<Integer>();
+		ArrayList<String> noises = new ArrayList<String>();
+		ScopeScanner scanner = new ScopeScanner(); // Finds where the noise placed after a construct goes
 
-					// Increase the line number
-					lineNum++;
-				}
+		// For as long as there are lines left to read; acquire current one
+		while( ( currentLine = bufReader.readLine() ) != null ) {
 
-				// Append the rest of the buffer before exiting
-				fileContents.append( buffer );
+			// Skip any points that refer to lines that have already gone by
+			while( cursor < orderedPoints.size() && orderedPoints.get( cursor ).getLine() < lineNum ) {
+				cursor++;
 			}
-		}
-		catch( IOException e ) {
-			e.printStackTrace();
-		}
 
-		// The final instrumented code
-		String instrumentedCode = fileContents.toString();
+			// Service only the points that are on the current line
+			if( cursor < orderedPoints.size() || scanner.hasPending() ) {
+				cursor = placeNoise( orderedPoints, cursor, lineNum, currentLine, holder, scanner, positions, noises );
+			}
 
-		// If there were some instrumentation points then add the random import and variable
-		if( !instrPoints.isEmpty() ) {
+			// Write the line with the noise placed in between the pieces of the original line
+			int written = 0;
+			for( int i = 0; i < positions.size(); i++ ) {
+				writer.write( currentLine, written, positions.get( i ) );
+				writer.write( noises.get( i ) );
+				written = positions.get( i );
+			}
+			writer.write( currentLine, written, currentLine.length() );
+			writer.endLine();
 
-			// Add random import and variable to source file
-			instrumentedCode = addRandImportAndVariable( instrumentedCode );
-		}
+			positions.clear();
+			noises.clear();
 
-		// Print the fileContents to an instrumented source
-		try {
-			printFile( instrumentedCode, sourceFile.getPath().toString() );
-		}
-		catch( IOException e ) {
-			e.printStackTrace();
+			// Increase the line number
+			lineNum++;
 		}
 	}
 
@@ -285,61 +521,40 @@ public class Instrumentor {
 	private ArrayList<InstrumentationPoint> getAutomaticInstrumentationPoints(
 			ArrayList<InterestPoint> interestingPoints, SourceFile sourceFile ) {
 
-		AutomaticConfigurationHandler configurationHandler = new AutomaticConfigurationHandler();
+		InstrumentationSession session = getSession();
 
-		try {
-			configurationHandler.readXml();
+		// The line count is known from parsing the file, only count the lines if it wasn't parsed
+		int lineCount = sourceFile.getLineCount();
+		if( lineCount < 0 ) {
+			lineCount = countLines( sourceFile );
 		}
-		catch( FileNotFoundException e ) {
-			e.printStackTrace();
-		}
-		
-        int lineCount = 0;
-
-		// Get the line count
-	    try {
-	    	InputStream is = new BufferedInputStream(new FileInputStream(sourceFile.getPath().toString()));
-	        byte[] c = new byte[1024];
-	        int readChars = 0;
-	        while ((readChars = is.read(c)) != -1) {
-	            for (int i = 0; i < readChars; ++i) {
-	                if (c[i] == '\n')
-	                    ++lineCount;
-	            }
-	        }
-	        is.close();
-	    } catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-	    }
-		
-		
 
-		AutomaticConfiguration configuration = configurationHandler.getConfiguration();
-
-		int lowDelayRange = configuration.getLowDelayRange();
-		int highDelayRange = configuration.getHighDelayRange();
-		int sleepProbability = configuration.getSleepProbability();
-		int yieldProbability = configuration.getYieldProbability();
-		int synchronizeProbability = configuration.getSynchronizeProbability();
-		int barrierProbability = configuration.getBarrierProbability();
-		int latchProbability = configuration.getLatchProbability();
-		int semaphoreProbability = configuration.getSemaphoreProbability();
+		int lowDelayRange = session.getLowDelayRange();
+		int highDelayRange = session.getHighDelayRange();
+		int sleepProbability = session.getSleepProbability();
+		int delayType = session.getDelayType();
+		int noisePosition = session.getNoisePosition();
+		int synchronizeProbability = session.getSynchronizeProbability();
+		int barrierProbability = session.getBarrierProbability();
+		int latchProbability = session.getLatchProbability();
+		int semaphoreProbability = session.getSemaphoreProbability();
 
 		ArrayList<InstrumentationPoint> instrPoints = new ArrayList<InstrumentationPoint>();
 
 		Random rand = new Random();
 
+		// The region of lines that can be instrumented
+		double lowerCount = ((double) sourceFile.getLowerBound())/100*lineCount;
+		double higherCount = ((double) sourceFile.getUpperBound())/100*lineCount;
+
 		for( InterestPoint interestPoint : interestingPoints ) {
 			// Make sure the line is in the specified region
-			double lowerCount = ((double) sourceFile.getLowerBound())/100*lineCount;
-			double higherCount = ((double) sourceFile.getUpperBound())/100*lineCount;
 			if ((interestPoint.getLine() >= lowerCount) && (interestPoint.getLine() <= higherCount)){
 			
 				// Figure out the type of noise to use
 				int type = 0;
 				if( rand.nextInt( 100 ) <= sleepProbability ) {
-					type = Constants.NOISE_SLEEP;
+					type = delayType;
 				}
 				else {
 					type = Constants.NOISE_YIELD;
@@ -363,129 +578,450 @@ public class Instrumentor {
 				}
 	
 				// Add the newly made instrumentation point
-				instrPoints.add( new InstrumentationPoint( interestPoint.getLine(), interestPoint.getSequence(),
+				InstrumentationPoint instrPoint = new InstrumentationPoint( interestPoint.getLine(), interestPoint.getSequence(),
 						interestPoint.getConstruct(), interestPoint.getConstructSyntax(), type, probability, lowDelayRange,
-						highDelayRange ) );
+						highDelayRange );
+				instrPoint.setPosition( noisePosition );
+				instrPoints.add( instrPoint );
 			}
 		}
 		return instrPoints;
 	}
 
 	/**
-	 * Adds the random import statement and a global random variable to the class
-	 * which will be used by the instrumentation noise statements.
+	 * Gets the session, loading it if it wasn't given to the instrumentor.
 	 * 
-	 * @param instrumentedCode the instrumented code
-	 * @return the final instrumented code with the import and variable added
+	 * @return the instrumentation session
 	 */
-	private String addRandImportAndVariable( String instrumentedCode ) {
+	private synchronized InstrumentationSession getSession() {
+		if( _session == null ) {
+			_session = InstrumentationSession.load();
+		}
+		return _session;
+	}
 
-		// Matcher to match on the import and class statements to allow for the injection of the random variable
-		Matcher matcher = null;
-		String finalInstrumentedCode = "";
-		int importEndPos = 0;
-		int classEndPos = 0;
+	/**
+	 * Gets the path of the file relative to the source root, which is where the file goes in the
+	 * shadow tree. A file that isn't under the source root goes to the top of the shadow tree.
+	 * 
+	 * @param originalFile the original file
+	 * @return the relative path
+	 */
+	private String getShadowPath( File originalFile ) {
+		String rootPath = _sourceRoot.getAbsolutePath() + File.separator;
+		String filePath = originalFile.getAbsolutePath();
 
-		// Set matcher to find package
-		matcher = Constants.PATTERN_PACKAGE.matcher( instrumentedCode );
-		if( matcher.find() ) {
+		if( filePath.startsWith( rootPath ) ) {
+			return filePath.substring( rootPath.length() ).replace( File.separatorChar, '/' );
+		}
+		return originalFile.getName();
+	}
+
+	/**
+	 * Makes the fingerprint of the file's source and its instrumentation plan. For automatic mode
+	 * the plan is the configuration, bounds and interest points that the points are drawn from.
+	 * 
+	 * @param sourceFile the source file
+	 * @param inputFile the file holding the original source
+	 * @param automaticMode if automatic instrumentation is used
+	 * @return the fingerprint
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private String makeFingerprint( SourceFile sourceFile, File inputFile, boolean automaticMode ) throws IOException {
 
-			// Append from the start till the end of the matched package and add the import statement
-			importEndPos = matcher.end();
-			finalInstrumentedCode = finalInstrumentedCode.concat( instrumentedCode.substring( 0, importEndPos )
-					+ _noiseMaker.makeRandImport() );
+		MessageDigest digest = null;
+		try {
+			digest = MessageDigest.getInstance( "MD5" );
+		}
+		catch( NoSuchAlgorithmException e ) {
+			throw new IOException( e.toString() );
 		}
-		else { // Try to match on import instead
-			matcher = Constants.PATTERN_IMPORT.matcher( instrumentedCode );
-			if( matcher.find() ) {
 
-				// Append from the start till the end of the matched import and add the import statement
-				importEndPos = matcher.end();
-				finalInstrumentedCode = finalInstrumentedCode.concat( instrumentedCode.substring( 0, importEndPos )
-						+ _noiseMaker.makeRandImport() );
+		// The source
+		InputStream is = new FileInputStream( inputFile );
+		try {
+			byte[] c = new byte[ Constants.BUFFER_SIZE ];
+			int readChars = 0;
+			while( ( readChars = is.read( c ) ) != -1 ) {
+				digest.update( c, 0, readChars );
 			}
-			else { // Nothing is found
+		}
+		finally {
+			is.close();
+		}
 
-				// Append the import statement
-				finalInstrumentedCode = finalInstrumentedCode.concat( _noiseMaker.makeRandImport() );
+		// The plan
+		StringBuilder plan = new StringBuilder();
+		if( automaticMode ) {
+			InstrumentationSession session = getSession();
+			plan.append( session.getLowDelayRange() ).append( ',' ).append( session.getHighDelayRange() ).append( ',' )
+					.append( session.getSleepProbability() ).append( ',' ).append( session.getDelayType() ).append( ',' )
+					.append( session.getNoisePosition() ).append( ',' )
+					.append( session.getSynchronizeProbability() ).append( ',' ).append( session.getBarrierProbability() )
+					.append( ',' ).append( session.getLatchProbability() ).append( ',' ).append( session.getSemaphoreProbability() )
+					.append( ',' ).append( sourceFile.getLowerBound() ).append( ',' ).append( sourceFile.getUpperBound() )
+					.append( ';' );
+		}
+		for( InterestPoint point : sourceFile.getInterestingPoints() ) {
+			if( point instanceof InstrumentationPoint ) {
+				InstrumentationPoint instrPoint = (InstrumentationPoint)point;
+				plan.append( instrPoint.getType() ).append( ',' ).append( instrPoint.getProbability() ).append( ',' )
+						.append( instrPoint.getLow() ).append( ',' ).append( instrPoint.getHigh() ).append( ',' )
+						.append( instrPoint.getPosition() ).append( ',' );
 			}
+			else if( !automaticMode ) {
+				continue;
+			}
+			plan.append( point.getLine() ).append( ',' ).append( point.getSequence() ).append( ',' )
+					.append( point.getConstructSyntax() ).append( ';' );
 		}
+		digest.update( plan.toString().getBytes( "UTF-8" ) );
 
-		// Match on the class statement
-		matcher = Constants.PATTERN_CLASS.matcher( instrumentedCode );
-		if( matcher.find() ) {
-			
-			// Take the ending position of the match
-			classEndPos = matcher.end();
+		// Turn the digest into hex
+		StringBuilder fingerprint = new StringBuilder();
+		for( byte b : digest.digest() ) {
+			fingerprint.append( Integer.toHexString( ( b & 0xff ) | 0x100 ).substring( 1 ) );
+		}
+		return fingerprint.toString();
+	}
+
+	/**
+	 * Counts the lines of the source file by counting its new line characters.
+	 * 
+	 * @param sourceFile the source file
+	 * @return the number of lines
+	 */
+	private int countLines( SourceFile sourceFile ) {
 
-			// Append from the ending of the import match till the end of the class match, and add the random variable
-			finalInstrumentedCode = finalInstrumentedCode.concat( instrumentedCode
-					.substring( importEndPos, classEndPos )
-					+ _noiseMaker.makeRandVariable() );
+		int lineCount = 0;
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream( new FileInputStream( sourceFile.getPath().toString() ) );
+			byte[] c = new byte[ Constants.BUFFER_SIZE ];
+			int readChars = 0;
+			while( ( readChars = is.read( c ) ) != -1 ) {
+				for( int i = 0; i < readChars; ++i ) {
+					if( c[ i ] == '\n' ) {
+						++lineCount;
+					}
+				}
+			}
 		}
-		else { // Class was not found
-			finalInstrumentedCode = finalInstrumentedCode.concat( "/* NO CLASS WAS FOUND - ECLIPTICON */" );
+		catch( IOException e ) {
+			e.printStackTrace();
 		}
+		finally {
+			if( is != null ) {
+				try {
+					is.close();
+				}
+				catch( IOException e ) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return lineCount;
+	}
+
+	/**
+	 * Places the noise of the points on the current line. The noise placed before a construct goes at
+	 * the start of its statement, the noise placed after a construct is given to the scanner, which
+	 * places it once the end of the statement or block is reached (on this line or a later one). The
+	 * body of a synchronized method is wrapped in a try, with the noise at its start and in its finally,
+	 * so the noise runs right after the monitor is entered and right before it is released on every path
+	 * out (including the end of a method without a return), whether it is before, after or both.<br/><br/>
+	 * 
+	 * The noise of a hold point goes where the lock of its construct is held. The body of a synchronized
+	 * block is wrapped the same way as the body of a synchronized method. The noise of a lock or an
+	 * acquire goes after it, and the noise of an unlock or a release goes before it. Any other construct
+	 * of a hold point has its noise before it.<br/><br/>
+	 * 
+	 * The scanner locates the statement of each construct first. The body of an if, else or loop
+	 * without braces is given braces so the noise stays in it. A construct where a statement can't go
+	 * in front of it (a loop condition, a call to another constructor, a statement that started on an
+	 * earlier line, a lambda or a field initializer) has the noise wrapped around its receiver instead,
+	 * which gives back the receiver unchanged. A construct without such a receiver is left without the
+	 * noise before it, rather than breaking the source. A construct in a lambda runs when the lambda is
+	 * called, so it gets no noise after it at the end of the statement declaring the lambda.
+	 * 
+	 * @param orderedPoints the instrumentation points ordered by line and sequence number
+	 * @param cursor the next point that has not been serviced yet
+	 * @param lineNum the number of the current line
+	 * @param currentLine the current line
+	 * @param holder the name of the class holding the point table
+	 * @param scanner the scanner of the scopes of the source
+	 * @param positions the positions in the line to place noise at, kept in order
+	 * @param noises the noise of each position
+	 * @return the next point that has not been serviced yet
+	 */
+	private int placeNoise( ArrayList<InstrumentationPoint> orderedPoints, int cursor, int lineNum, String currentLine,
+			String holder, ScopeScanner scanner, List<Integer> positions, List<String> noises ) {
+
+		while( cursor < orderedPoints.size() && orderedPoints.get( cursor ).getLine() == lineNum ) {
+			InstrumentationPoint point = orderedPoints.get( cursor );
+			String noise = _noiseMaker.makeNoise( holder, cursor );
+			String syntax = point.getConstructSyntax();
+			boolean block = syntax.equals( Constants.SYNCHRONIZE_BLOCK );
+
+			// A synchronized method holds the monitor for its whole body, so its noise goes at both ends of
+			// the body, and a hold point keeps the monitor of a block for longer the same way
+			if( syntax.equals( Constants.SYNCHRONIZE_METHOD ) || ( point.isHold() && block ) ) {
+				int column = findConstructPosition( point, currentLine );
+				if( column != -1 ) {
+					scanner.addAroundBody( noise + "try{", "}finally{" + noise + "}", column );
+				}
+				cursor++;
+				continue;
+			}
+
+			int column = findConstructPosition( point, currentLine );
+			if( column == -1 ) {
+				// The construct isn't on the line
+				cursor++;
+				continue;
+			}
+
+			// The lock of a hold point is held after the statement taking it and before the statement releasing it
+			int placement = point.getPosition();
+			if( point.isHold() && !syntax.equals( Constants.SYNCHRONIZE_UNLOCK ) && !syntax.equals( Constants.SEMAPHORE_RELEASE ) ) {
+				placement = Constants.POSITION_AFTER;
+			}
+			else if( placement == Constants.POSITION_HOLD ) {
+				placement = Constants.POSITION_BEFORE;
+			}
+
+			int[] location = scanner.locate( currentLine, column );
+			int start = location[ 1 ];
+			boolean before = placement != Constants.POSITION_AFTER;
+
+			// Noise after a return or throw could never be reached, and the block of a switch can't start with it
+			boolean after = placement != Constants.POSITION_BEFORE
+					&& ( block || ( location[ 2 ] != StatementLexer.EXIT && location[ 2 ] != StatementLexer.SWITCH ) );
 
-		// Fill in the rest of the instrumented code
-		finalInstrumentedCode = finalInstrumentedCode.concat( instrumentedCode.substring( classEndPos ) );
+			if( location[ 0 ] == StatementLexer.AT_STATEMENT ) {
 
-		return finalInstrumentedCode;
+				// The noise goes right after the previous statement, or at the start of the line
+				if( before ) {
+					int position = start;
+					while( position > 0 && Character.isWhitespace( currentLine.charAt( position - 1 ) ) ) {
+						position--;
+					}
+					addPosition( positions, noises, position, noise );
+				}
+				if( after ) {
+					placeAfter( point, column, location[ 2 ], noise, scanner );
+				}
+			}
+			else if( location[ 0 ] == StatementLexer.IN_BODY ) {
+
+				// The body of an if, else or loop without braces is given braces, so the noise stays in it
+				if( before || after ) {
+					addPosition( positions, noises, start, before ? "{" + noise : "{" );
+					if( after ) {
+						placeAfter( point, column, StatementLexer.SIMPLE, noise, scanner );
+					}
+					scanner.addClosingBrace( start, block );
+				}
+			}
+			else {
+
+				// A statement can't go in front of the construct, its receiver is wrapped instead
+				int receiver = findReceiver( currentLine, column );
+				if( before && receiver != -1 ) {
+					addPosition( positions, noises, receiver, _noiseMaker.makeNoiseAround( holder, cursor ) );
+					addPosition( positions, noises, column, ")" );
+				}
+				if( after && location[ 0 ] == StatementLexer.IN_EXPRESSION ) {
+					placeAfter( point, column, location[ 2 ], noise, scanner );
+				}
+			}
+			cursor++;
+		}
+
+		scanner.scanLine( currentLine, positions, noises );
+		return cursor;
 	}
 
 	/**
-	 * This method will evaluate a line and will insert noise if the current
-	 * instrumentation point demands it.
+	 * Gives the noise placed after a construct to the scanner. The noise goes after the end of a
+	 * synchronized block, at the start of the block of a compound statement, or after the end of any
+	 * other statement.
 	 * 
-	 * @param point the current instrumentation point that is being serviced
-	 * @param currentLine the current line that is being instrumented
-	 * @return the modified (instrumented) string of the original line
+	 * @param point the instrumentation point
+	 * @param column the column of the construct
+	 * @param statement the kind of the statement holding the construct
+	 * @param noise the noise statement
+	 * @param scanner the scanner of the scopes of the source
 	 */
-	private String evaluateLine( InstrumentationPoint point, String currentLine ) {
+	private void placeAfter( InstrumentationPoint point, int column, int statement, String noise, ScopeScanner scanner ) {
+		if( point.getConstructSyntax().equals( Constants.SYNCHRONIZE_BLOCK ) ) {
+			scanner.addAfterBlock( noise, column );
+		}
+		else if( statement == StatementLexer.COMPOUND ) {
+			scanner.addInBlock( noise, column );
+		}
+		else {
+			scanner.addAfterStatement( noise, column );
+		}
+	}
 
-		int injectionPosition = -1;
+	/**
+	 * Adds noise at a position in the line, keeping the positions in order. Equal positions keep the
+	 * order the noise was added in.
+	 * 
+	 * @param positions the positions in the line to place noise at, kept in order
+	 * @param noises the noise of each position
+	 * @param position the position of the noise
+	 * @param noise the noise
+	 */
+	private void addPosition( List<Integer> positions, List<String> noises, int position, String noise ) {
+		int index = positions.size();
+		while( index > 0 && positions.get( index - 1 ) > position ) {
+			index--;
+		}
+		positions.add( index, position );
+		noises.add( index, noise );
+	}
 
-		// Skip to the correct instrumentation point based on the sequence number and the construct's syntax
-		for( int i = 0; i <= point.getSequence(); i++ ) {
+	/**
+	 * Finds the start of the receiver of a method call construct, such as the lock of a tryLock. The
+	 * receiver is the chain of names, calls and array accesses in front of the construct, along with a
+	 * new that creates it.
+	 * 
+	 * @param currentLine the line
+	 * @param column the column of the construct
+	 * @return the start of the receiver, or -1 if the construct has no receiver that can be wrapped
+	 */
+	private int findReceiver( String currentLine, int column ) {
+		if( currentLine.charAt( column ) != '.' ) {
+			return -1;
+		}
 
-			injectionPosition = currentLine.indexOf( point.getConstructSyntax(), injectionPosition + 1 );
+		int start = column;
+		while( start > 0 ) {
+			char character = currentLine.charAt( start - 1 );
+			if( Character.isJavaIdentifierPart( character ) || character == '.' ) {
+				start--;
+			}
+			else if( character == ')' || character == ']' ) {
+				start = findOpening( currentLine, start - 1 );
+				if( start == -1 ) {
+					return -1;
+				}
+			}
+			else {
+				break;
+			}
+		}
 
-			if( i == point.getSequence() ) {
+		// The receiver has to be a value, super can't be passed along
+		String receiver = currentLine.substring( start, column );
+		if( receiver.length() == 0 || receiver.startsWith( "." ) || receiver.equals( "super" )
+				|| receiver.startsWith( "super." ) || Character.isDigit( receiver.charAt( 0 ) ) ) {
+			return -1;
+		}
 
-				// Point is found, now to backtrack from this point till a valid statement delimiter is found
-				injectionPosition = currentLine.indexOf( point.getConstructSyntax(), injectionPosition );
+		int keyword = start;
+		while( keyword > 0 && Character.isWhitespace( currentLine.charAt( keyword - 1 ) ) ) {
+			keyword--;
+		}
+		if( keyword >= 3 && currentLine.startsWith( "new", keyword - 3 )
+				&& ( keyword == 3 || !Character.isJavaIdentifierPart( currentLine.charAt( keyword - 4 ) ) ) ) {
+			start = keyword - 3;
+		}
+		return start;
+	}
 
-				/*
-				 * TODO Need to instrument afterwards as well (need to take into account scope)
-				 * TODO If in a synchronized block need to check for the correct closing }
-				 * TODO Need to ensure that the method of ending the injection point is valid
-				 */
-				// Loop backwards from injectionPosition till a valid delimiter is found
-				for( int j = injectionPosition; j >= 0; j-- ) {
+	/**
+	 * Finds the parenthesis or bracket that opens the one at the given position.
+	 * 
+	 * @param currentLine the line
+	 * @param close the position of the closing parenthesis or bracket
+	 * @return the position of the opening one, or -1 if it isn't on the line
+	 */
+	private int findOpening( String currentLine, int close ) {
+		int depth = 0;
+		for( int i = close; i >= 0; i-- ) {
+			char character = currentLine.charAt( i );
+			if( character == ')' || character == ']' ) {
+				depth++;
+			}
+			else if( ( character == '(' || character == '[' ) && --depth == 0 ) {
+				return i;
+			}
+		}
+		return -1;
+	}
 
-					// If the character matches a delimiter
-					if( Character.toString( currentLine.charAt( j ) ).matches( "[;]|[}]|[{]" ) ) {
+	/**
+	 * Finds the position of the point's construct in the line, using the sequence number to tell
+	 * constructs with the same syntax apart.
+	 * 
+	 * @param point the instrumentation point
+	 * @param currentLine the line
+	 * @return the position of the construct, or -1 if it isn't found
+	 */
+	private int findConstructPosition( InstrumentationPoint point, String currentLine ) {
 
-						// Adjust to the new position
-						injectionPosition = j + 1;
-						break;
-					}
+		// A synchronized method is found by its keyword
+		String syntax = point.getConstructSyntax();
+		if( syntax.equals( Constants.SYNCHRONIZE_METHOD ) ) {
+			syntax = Constants.SYNCHRONIZE_BLOCK;
+		}
 
-					if( j == 0 ) { // Nothing was found, place noise at the start of the line
-						injectionPosition = j;
-					}
-				}
+		int position = -1;
+		for( int i = 0; i <= point.getSequence(); i++ ) {
+			position = currentLine.indexOf( syntax, position + 1 );
+			if( position == -1 ) {
+				break;
 			}
 		}
+		return position;
+	}
+
+	/**
+	 * Refreshes the files that were instrumented or reverted since the last refresh, so that
+	 * the workspace picks up the changes. The refresh is left to the caller so that a whole
+	 * batch of files can be refreshed once (ideally within a single workspace operation).
+	 * 
+	 * @param monitor the progress monitor, can be null
+	 */
+	public void refreshTouchedFiles( IProgressMonitor monitor ) {
 
-		// Make the noise given the instrumentation information
-		String noise = _noiseMaker.makeNoise( point.getProbability(), point.getType(), point.getLow(), point.getHigh() );
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
 
-		// Add the noise to the line
-		String firstHalf = currentLine.substring( 0, injectionPosition );
-		String otherHalf = currentLine.substring( injectionPosition );
-		currentLine = firstHalf + noise + otherHalf;
+		// Refresh only the files that have changed
+		ArrayList<Path> touchedFiles = null;
+		synchronized( _touchedFiles ) {
+			touchedFiles = new ArrayList<Path>( _touchedFiles );
+			_touchedFiles.clear();
+		}
+		for( Path path : touchedFiles ) {
+			IFile file = root.getFileForLocation( path );
+			if( file != null ) {
+				try {
+					file.refreshLocal( IResource.DEPTH_ZERO, monitor );
+				}
+				catch( CoreException e ) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
 
-		return currentLine;
+	/**
+	 * Closes the reader, ignoring any error since there is nothing left to do with it.
+	 * 
+	 * @param reader the reader to close, can be null
+	 */
+	private void closeQuietly( BufferedReader reader ) {
+		if( reader != null ) {
+			try {
+				reader.close();
+			}
+			catch( IOException e ) {
+				e.printStackTrace();
+			}
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ca.sqrlab.eclipticon.data.InstrumentationPoint;
+import ca.sqrlab.eclipticon.data.InterestPoint;
+import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.runtime.AgentConfiguration;
+import ca.sqrlab.eclipticon.runtime.ControlFile;
+import ca.sqrlab.eclipticon.runtime.Noise;
+
+/**
+ * This class writes the current settings of the workspace into the control file of a running test, so
+ * the changes take effect without instrumenting and starting the program again. Each annotated point
+ * is written under the key the instrumented source registers it with and under the key the agent
+ * registers it with, and the delay range of the session is written as the global override.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class NoiseControl {
+
+	private File	_file	= null; // The control file
+
+	/**
+	 * Instantiates a new noise control on the given control file.
+	 * 
+	 * @param file the control file
+	 */
+	public NoiseControl( File file ) {
+		_file = file;
+	}
+
+	/**
+	 * Gets the control file, creating it if it doesn't exist yet.
+	 * 
+	 * @return the control file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public ControlFile getControlFile() throws IOException {
+		ControlFile control = null;
+		if( _file.isFile() ) {
+			control = ControlFile.open( _file, true );
+		}
+		if( control == null ) {
+			control = ControlFile.create( _file, ControlFile.DEFAULT_CAPACITY );
+		}
+		return control;
+	}
+
+	/**
+	 * Replaces the overrides of the control file with the annotated points of the source files.
+	 * 
+	 * @param sourceFiles the parsed source files
+	 * @param session the session whose delay range is used for every point, or null to keep the ranges
+	 * @return false if the control file could not hold all of the points
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public boolean update( List<SourceFile> sourceFiles, InstrumentationSession session ) throws IOException {
+
+		int[] global = { ControlFile.UNCHANGED, ControlFile.UNCHANGED, ControlFile.UNCHANGED, ControlFile.UNCHANGED };
+		if( session != null ) {
+			global[ 2 ] = session.getLowDelayRange();
+			global[ 3 ] = session.getHighDelayRange();
+		}
+
+		ArrayList<String> keys = new ArrayList<String>();
+		ArrayList<Integer> settings = new ArrayList<Integer>();
+		for( SourceFile sourceFile : sourceFiles ) {
+
+			// The points are numbered in the same order as the point table of the instrumented source
+			ArrayList<InstrumentationPoint> orderedPoints = new ArrayList<InstrumentationPoint>();
+			for( InterestPoint point : sourceFile.getInterestingPoints() ) {
+				if( point instanceof InstrumentationPoint ) {
+					orderedPoints.add( (InstrumentationPoint)point );
+				}
+			}
+			if( orderedPoints.isEmpty() ) {
+				continue;
+			}
+			Collections.sort( orderedPoints, Instrumentor.LINE_ORDER );
+
+			String sourcePath = AgentConfigurationWriter.findSourcePath( sourceFile );
+			for( int i = 0; i < orderedPoints.size(); i++ ) {
+				InstrumentationPoint point = orderedPoints.get( i );
+				keys.add( Noise.makeKey( sourcePath, i ) );
+				keys.add( AgentConfiguration.makeSiteKey( sourcePath, point.getLine(), point.getConstructSyntax(),
+						point.getSequence() ) );
+				for( int j = 0; j < 2; j++ ) {
+					settings.add( point.getType() );
+					settings.add( point.getProbability() );
+					settings.add( point.getLow() );
+					settings.add( point.getHigh() );
+				}
+			}
+		}
+
+		int[] settingValues = new int[ settings.size() ];
+		for( int i = 0; i < settingValues.length; i++ ) {
+			settingValues[ i ] = settings.get( i );
+		}
+		return getControlFile().replace( global, keys.toArray( new String[ keys.size() ] ), settingValues );
+	}
+}
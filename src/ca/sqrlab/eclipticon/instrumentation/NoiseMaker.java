@@ -1,94 +1,123 @@
 package ca.sqrlab.eclipticon.instrumentation;
 
+import java.util.List;
+import java.util.regex.Pattern;
+
 import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.InstrumentationPoint;
 
 /**
- * This class will provide the proper setup required for the generated noise statements,
- * the use of the random numbers. The creation of noise statements for thread sleep and 
- * yield delays are also created here.
+ * This class will provide the statements placed in the instrumented source code. The noise itself
+ * lives in the Eclipticon runtime library, which holds all of the state of the noise statically for the
+ * whole project. Every instrumented file registers the table of its points with the runtime once, from a
+ * small holder class placed at the end of the file, and each point is then a single call with the number
+ * of the point. The holder is a top level class of its own, so no field is added to the classes, enums,
+ * interfaces or records of the file and every type in the file can reach the table.
  * 
  * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
  */
 public class NoiseMaker {
 
+	/** The class of the runtime library that makes the noise */
+	private static final String	NOISE_CLASS		= "ca.sqrlab.eclipticon.runtime.Noise";
+
+	/** The switch that guards every noise statement, a constant the JIT folds away when it is off */
+	private static final String	SWITCH			= "ca.sqrlab.eclipticon.runtime.NoiseSwitch.ON";
+
+	/** The start and end of the name of the class holding the point table, around the name of the file */
+	private static final String	HOLDER_PREFIX	= "_____EclipticonNoise_";
+	private static final String	HOLDER_SUFFIX	= "_____";
+
+	/** The name of the field holding the number of the first point of the file */
+	private static final String	POINTS_FIELD	= "POINTS";
+
+	/** Finds the number of the point in each noise statement of the instrumented source */
+	static final Pattern		PATTERN_POINT	= Pattern.compile( Pattern.quote( HOLDER_PREFIX ) + "\\w*"
+														+ Pattern.quote( HOLDER_SUFFIX + "." + POINTS_FIELD + "+" ) + "(\\d+)" );
+
+	/** Finds the numbers of the point table (type, probability, low and high of each point) in the instrumented source */
+	static final Pattern		PATTERN_TABLE	= Pattern.compile( Pattern.quote( NOISE_CLASS + ".register(" )
+														+ "\".*?\",new int\\[\\]\\{([0-9,]*)\\}" );
+
 	/**
 	 * Instantiates a new noise maker.
 	 */
 	public NoiseMaker() {
 	}
-	
-	/**
-	 * Creates the random import statement needed for the random method calls in the noise.
-	 */
-	public String makeRandImport() {
-		return "import java.util.Random;";
-	}
 
 	/**
-	 * Creates the random variable to be used for the noise making random values
-	 */
-	public String makeRandVariable() {
-		return "Random _____rand0123456789_____ = new Random();";
-	}
-
-	/**
-	 * Method will create a noise statement given the noise type and delay ranges.
-	 * 
-	 * @param type the noise type
-	 * @param chance the chance of this noise activating out of 100
-	 * @param low the lower bound of the sleep delay
-	 * @param high the upper bound of the sleep delay
+	 * Creates the name of the class holding the point table of a source file. The name is made from the
+	 * name of the file, so it is unique within the package of the file.
 	 * 
-	 * @return the noise statement
+	 * @param fileName the name of the source file
+	 * @return the name of the holder class
 	 */
-	public String makeNoise( int chance, int type, int low, int high ) {
-
-		String noise = null;
+	public String makeHolderName( String fileName ) {
+		int extension = fileName.lastIndexOf( '.' );
+		String name = ( extension > 0 ) ? fileName.substring( 0, extension ) : fileName;
 
-		// Create the noise statement based on the type of noise to make
-		if( type == Constants.NOISE_SLEEP ) {
-			noise = getIfChance( chance ) + createSleep( low, high );
-		}
-		else if( type == Constants.NOISE_YIELD ) {
-			noise = getIfChance( chance ) + createYield();
+		StringBuilder holder = new StringBuilder( HOLDER_PREFIX );
+		for( int i = 0; i < name.length(); i++ ) {
+			char character = name.charAt( i );
+			holder.append( Character.isJavaIdentifierPart( character ) ? character : '_' );
 		}
-
-		// Returns the noise statement
-		return noise;
+		return holder.append( HOLDER_SUFFIX ).toString();
 	}
 
 	/**
-	 * This method will create the sleep instrumentation statement by using the
-	 * delay ranges, it also includes the appropriate try/catch syntax.
-	 * 
-	 * @param low the low bound of the sleep delay
-	 * @param high the high bound of the sleep delay
+	 * Creates the holder class that registers the points of a source file with the runtime library, the
+	 * points are numbered in the order they are given and keyed by the source path and their number. The
+	 * class is package private, so it goes after the types of the file. The type of a point that holds a
+	 * lock longer is flagged, so the runtime charges its delays to the budget of the hold points.
 	 * 
-	 * @return the sleep statement
+	 * @param holder the name of the holder class
+	 * @param sourcePath the path of the source file (package directories and file name)
+	 * @param points the instrumentation points of the file
+	 * @return the declaration of the holder class
 	 */
-	private String createSleep( int low, int high ) {
-		return "try{Thread.sleep((_____rand0123456789_____.nextInt(" + high + "-" + low + ")" +"+" + low + "));}catch(Exception _____e0123456789_____){};";
+	public String makePointTable( String holder, String sourcePath, List<InstrumentationPoint> points ) {
+		StringBuilder table = new StringBuilder();
+		table.append( "final class " ).append( holder ).append( "{static final int " ).append( POINTS_FIELD )
+				.append( "=" ).append( NOISE_CLASS )
+				.append( ".register(\"" ).append( sourcePath.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) )
+				.append( "\",new int[]{" );
+		for( int i = 0; i < points.size(); i++ ) {
+			InstrumentationPoint point = points.get( i );
+			if( i > 0 ) {
+				table.append( ',' );
+			}
+			table.append( point.isHold() ? point.getType() | Constants.NOISE_HOLD : point.getType() ).append( ',' ).append( point.getProbability() ).append( ',' )
+					.append( point.getLow() ).append( ',' ).append( point.getHigh() );
+		}
+		table.append( "});}" );
+		return table.toString();
 	}
 
 	/**
-	 * This method will create the yield instrumentation statement,
-	 * it also includes the appropriate try/catch syntax.
+	 * Method will create a noise statement for a point of the point table. The statement is guarded by
+	 * the noise switch, so a run with the noise switched off doesn't pay for the call.
 	 * 
-	 * @return the yield statement
+	 * @param holder the name of the class holding the point table
+	 * @param index the index of the point in the point table
+	 * 
+	 * @return the noise statement
 	 */
-	private String createYield() {
-		return "try{Thread.yield();}catch(Exception _____e0123456789_____){};";
+	public String makeNoise( String holder, int index ) {
+		return "if(" + SWITCH + ")" + NOISE_CLASS + ".point(" + holder + "." + POINTS_FIELD + "+" + index + ");";
 	}
 
 	/**
-	 * This method will create the if statement that controls the chance (out of
-	 * 100) of an instrumentation point actually executing.
+	 * Method will create the start of the noise placed around the receiver of a construct, for a construct
+	 * in an expression where a statement can't go. The receiver and a closing parenthesis follow it, and
+	 * the call gives back the receiver, so the value of the expression doesn't change. The runtime checks
+	 * the noise switch itself.
 	 * 
-	 * @param chance the value out of 100 that will decide the executing chance
+	 * @param holder the name of the class holding the point table
+	 * @param index the index of the point in the point table
 	 * 
-	 * @return the if statement that will decide if the instrument will occur
+	 * @return the start of the noise call
 	 */
-	private String getIfChance( int chance ) {
-		return "if((_____rand0123456789_____.nextInt(100-0)+0)<=" + chance + ")";
+	public String makeNoiseAround( String holder, int index ) {
+		return NOISE_CLASS + ".at(" + holder + "." + POINTS_FIELD + "+" + index + ",";
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,271 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class finds where the noise that is placed after a construct goes. Noise after a method call
+ * (such as unlock, release or countDown) goes after the end of the statement holding the call, and
+ * noise after a synchronized block goes after the closing brace of the block. The source is scanned
+ * one line at a time by a {@link StatementLexer}, so the end is found even when it is on a later line
+ * than the construct, and the statement holding a construct can be located before noise is placed in
+ * front of it. The scanner also places the noise around the body of a synchronized block or method,
+ * at the start and end of the body.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+class ScopeScanner {
+
+	private StatementLexer		_lexer		= new StatementLexer();		// The lexer that follows the statements of the source
+	private ArrayList<Pending>	_pending	= new ArrayList<Pending>();	// The noise waiting for its statement or block to end
+
+	/**
+	 * Adds noise to place after the statement that holds the construct at the given column of the line
+	 * that is scanned next. Blocks within the statement (such as the body of an anonymous class) are
+	 * skipped, so the noise goes after the semicolon that ends the statement.
+	 *
+	 * @param noise the noise statement
+	 * @param column the column of the construct
+	 */
+	void addAfterStatement( String noise, int column ) {
+		_pending.add( new Pending( noise, column, Pending.STATEMENT ) );
+	}
+
+	/**
+	 * Adds noise to place after the closing brace of the block that starts with the construct at the
+	 * given column of the line that is scanned next.
+	 *
+	 * @param noise the noise statement
+	 * @param column the column of the construct
+	 */
+	void addAfterBlock( String noise, int column ) {
+		_pending.add( new Pending( noise, column, Pending.BLOCK ) );
+	}
+
+	/**
+	 * Adds noise to place around the body of the synchronized block or method at the given column of the
+	 * line that is scanned next. The opening goes right after the opening brace of the body and the
+	 * closing goes right before its closing brace, so the noise can wrap the body in a try and finally
+	 * that run while the monitor is held.
+	 *
+	 * @param opening the text placed at the start of the body
+	 * @param closing the text placed at the end of the body
+	 * @param column the column of the construct or declaration
+	 */
+	void addAroundBody( String opening, String closing, int column ) {
+		Pending pending = new Pending( opening, column, Pending.BODY );
+		pending._closing = closing;
+		_pending.add( pending );
+	}
+
+	/**
+	 * Adds a closing brace to place after the end of the statement that starts at the given column of the
+	 * line that is scanned next, closing the braces placed around the body of an if, else or loop. When
+	 * the statement is a synchronized block the brace goes after the end of the block.
+	 *
+	 * @param column the column the statement starts at
+	 * @param block if the statement is a synchronized block
+	 */
+	void addClosingBrace( int column, boolean block ) {
+		_pending.add( new Pending( "}", column, block ? Pending.BLOCK : Pending.STATEMENT ) );
+	}
+
+	/**
+	 * Adds noise to place at the start of the block of the compound statement (such as an if or while)
+	 * whose header holds the construct at the given column of the line that is scanned next. The noise
+	 * is dropped if the body of the statement has no braces, since noise after its end would change
+	 * which statement an else belongs to.
+	 *
+	 * @param noise the noise statement
+	 * @param column the column of the construct
+	 */
+	void addInBlock( String noise, int column ) {
+		_pending.add( new Pending( noise, column, Pending.HEADER ) );
+	}
+
+	/**
+	 * Locates the statement holding the construct at the given column of the line that is scanned next.
+	 *
+	 * @param line the line
+	 * @param column the column of the construct
+	 * @return the context of the construct, the column the statement starts at (-1 if it isn't on the
+	 *         line), and the kind of the statement, as given by {@link StatementLexer}
+	 */
+	int[] locate( String line, int column ) {
+		return _lexer.locate( line, column );
+	}
+
+	/**
+	 * Checks if there is noise waiting for its statement or block to end.
+	 *
+	 * @return true if there is noise waiting
+	 */
+	boolean hasPending() {
+		return !_pending.isEmpty();
+	}
+
+	/**
+	 * Scans a line, adding the positions and noise of the waiting noise whose statement or block ends
+	 * on the line. The positions are kept in order, the noise that ends a statement goes ahead of any
+	 * noise already at the same position, since that noise is placed before the next statement. Every
+	 * line of the source has to be scanned, so the comments are followed correctly.
+	 *
+	 * @param line the line
+	 * @param positions the positions in the line, in order
+	 * @param noises the noise of each position
+	 */
+	void scanLine( String line, List<Integer> positions, List<String> noises ) {
+
+		int i = 0;
+		while( true ) {
+			i = _lexer.next( line, i );
+			if( i == -1 ) {
+				break;
+			}
+
+			// The noise only ends at parentheses, braces and semicolons
+			char character = _lexer.getToken();
+			if( !_pending.isEmpty() && ( character == '(' || character == ')' || character == '{' || character == '}'
+					|| character == ';' ) ) {
+				int column = _lexer.getTokenStart();
+				int index = -1; // Where the next noise that ends at this character goes
+				for( int p = 0; p < _pending.size(); p++ ) {
+					Pending pending = _pending.get( p );
+					if( column < pending._column ) {
+						continue;
+					}
+					int state = pending.scan( character );
+					if( state == Pending.OPENED ) {
+						index = insert( positions, noises, column + 1, pending._noise, index );
+					}
+					else if( state != Pending.WAITING ) {
+						if( state == Pending.ENDED && pending._mode == Pending.BODY ) {
+							index = insert( positions, noises, column, pending._closing, index );
+						}
+						else if( state == Pending.ENDED ) {
+							index = insert( positions, noises, column + 1, pending._noise, index );
+						}
+						_pending.remove( p );
+						p--;
+					}
+				}
+			}
+		}
+		_lexer.endLine();
+
+		// The waiting noise scans the next lines from their start
+		for( Pending pending : _pending ) {
+			pending._column = 0;
+		}
+	}
+
+	/**
+	 * Inserts noise at a position, keeping the positions in order.
+	 *
+	 * @param positions the positions in the line, in order
+	 * @param noises the noise of each position
+	 * @param position the position of the noise
+	 * @param noise the noise
+	 * @param index where the noise goes, or -1 to put it ahead of any noise already at the position
+	 * @return where the next noise at the same position goes
+	 */
+	private int insert( List<Integer> positions, List<String> noises, int position, String noise, int index ) {
+		if( index == -1 ) {
+			index = positions.size();
+			while( index > 0 && positions.get( index - 1 ) >= position ) {
+				index--;
+			}
+		}
+		positions.add( index, position );
+		noises.add( index, noise );
+		return index + 1;
+	}
+
+	/**
+	 * This class holds noise waiting for the end of its statement or block.
+	 */
+	private static class Pending {
+
+		static final int	STATEMENT	= 0;	// The end is the semicolon that ends the statement
+		static final int	BLOCK		= 1;	// The end is the closing brace of the block
+		static final int	HEADER		= 2;	// The end is the start of the block of the statement
+		static final int	BODY		= 3;	// The noise goes at the start and the end of the body of the block or method
+
+		static final int	WAITING		= 0;	// The end has not been reached
+		static final int	ENDED		= 1;	// The end was reached
+		static final int	DROPPED		= 2;	// The enclosing scope ended first, there is nowhere to put the noise
+		static final int	OPENED		= 3;	// The body of the block or method was opened
+
+		private String		_noise		= null;		// The noise statement
+		private String		_closing	= null;		// The text placed at the end of the body
+		private int			_column		= 0;		// The column the scan starts at on the current line
+		private int			_mode		= 0;		// Where the end of the noise is
+		private boolean		_opened		= false;	// If the block has been opened
+		private int			_parens		= 0;		// The depth of the parentheses
+		private int			_braces		= 0;		// The depth of the braces
+
+		Pending( String noise, int column, int mode ) {
+			_noise = noise;
+			_column = column;
+			_mode = mode;
+		}
+
+		/**
+		 * Follows a parenthesis, brace or semicolon.
+		 *
+		 * @param character the character
+		 * @return the state of the noise
+		 */
+		int scan( char character ) {
+			if( character == '(' ) {
+				_parens++;
+			}
+			else if( character == ')' ) {
+				_parens--;
+			}
+			else if( _mode == BLOCK || _mode == BODY ) {
+				if( character == '{' ) {
+					if( _opened ) {
+						_braces++;
+					}
+					else if( _parens == 0 ) {
+						_opened = true;
+						_braces = 1;
+						if( _mode == BODY ) {
+							return OPENED;
+						}
+					}
+				}
+				else if( character == '}' ) {
+					if( !_opened ) {
+						return DROPPED;
+					}
+					if( --_braces == 0 ) {
+						return ENDED;
+					}
+				}
+				else if( !_opened && _parens == 0 ) {
+					return DROPPED;
+				}
+			}
+			else {
+				if( character == '{' ) {
+					if( _mode == HEADER && _braces == 0 && _parens <= 0 ) {
+						return ENDED;
+					}
+					_braces++;
+				}
+				else if( character == '}' ) {
+					if( _braces == 0 ) {
+						return DROPPED;
+					}
+					_braces--;
+				}
+				else if( _braces == 0 && _parens <= 0 ) {
+					return ( _mode == HEADER ) ? DROPPED : ENDED;
+				}
+			}
+			return WAITING;
+		}
+	}
+}
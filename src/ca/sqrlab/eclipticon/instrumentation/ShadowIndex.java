@@ -0,0 +1,101 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import ca.sqrlab.eclipticon.Constants;
+
+/**
+ * This class keeps track of the fingerprint (the source and the instrumentation plan) that each file of a
+ * shadow source tree was generated from, so that a later run only needs to regenerate the shadow files
+ * whose source or plan has changed. The index is kept in a file at the top of the shadow tree.
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class ShadowIndex {
+
+	private File		_indexFile		= null;				// The file holding the index
+	private Properties	_fingerprints	= new Properties();	// The fingerprint of each shadow file by relative path
+	private boolean		_modified		= false;			// If the index has changed since it was saved
+
+	/**
+	 * Instantiates a new shadow index, reading the index of the shadow tree if there is one.
+	 * 
+	 * @param shadowRoot the root of the shadow source tree
+	 */
+	public ShadowIndex( File shadowRoot ) {
+		_indexFile = new File( shadowRoot, Constants.SHADOW_INDEX_FILE );
+
+		if( _indexFile.exists() ) {
+			InputStream input = null;
+			try {
+				input = new FileInputStream( _indexFile );
+				_fingerprints.load( input );
+			}
+			catch( IOException e ) {
+				e.printStackTrace();
+			}
+			finally {
+				if( input != null ) {
+					try {
+						input.close();
+					}
+					catch( IOException e ) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the shadow file was generated from the given fingerprint.
+	 * 
+	 * @param relativePath the path of the file relative to the shadow root
+	 * @param fingerprint the fingerprint of the source and plan
+	 * @return true, if the shadow file is up to date
+	 */
+	public synchronized boolean isUpToDate( String relativePath, String fingerprint ) {
+		return fingerprint.equals( _fingerprints.getProperty( relativePath ) );
+	}
+
+	/**
+	 * Records the fingerprint that the shadow file was generated from.
+	 * 
+	 * @param relativePath the path of the file relative to the shadow root
+	 * @param fingerprint the fingerprint of the source and plan
+	 */
+	public synchronized void put( String relativePath, String fingerprint ) {
+		_fingerprints.setProperty( relativePath, fingerprint );
+		_modified = true;
+	}
+
+	/**
+	 * Writes the index back to the shadow tree if it has changed.
+	 * 
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public synchronized void save() throws IOException {
+		if( !_modified ) {
+			return;
+		}
+
+		// Write the index next to the old one and then rename it into place
+		_indexFile.getParentFile().mkdirs();
+		File temporaryFile = new File( _indexFile.getPath() + Constants.EXTENSION_TEMPORARY );
+		OutputStream output = new FileOutputStream( temporaryFile );
+		try {
+			_fingerprints.store( output, "Eclipticon shadow index" );
+		}
+		finally {
+			output.close();
+		}
+		BackupStore.replace( temporaryFile, _indexFile );
+		_modified = false;
+	}
+}
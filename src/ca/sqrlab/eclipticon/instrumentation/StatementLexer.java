@@ -0,0 +1,465 @@
+package ca.sqrlab.eclipticon.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class reads the tokens of the source one line at a time and keeps track of the statements they
+ * form. It knows which parentheses, blocks, class bodies and array initializers the scan is inside and
+ * where the current statement of each block started, so the injector can tell if a construct starts a
+ * statement (where a noise statement can go in front of it) or sits inside an expression, a loop header,
+ * a lambda or a field initializer (where it can't).<br/><br/>
+ *
+ * This is not a full parser, it only follows the tokens that decide where a statement starts and ends.
+ *
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+class StatementLexer {
+
+	/** These are the contexts a construct can be found in */
+	static final int					AT_STATEMENT	= 0;	// The construct is in a statement that starts on the line
+	static final int					IN_BODY			= 1;	// As above, but the statement is the body of an if, else or loop without braces
+	static final int					IN_EXPRESSION	= 2;	// The construct is in code, but not where a statement can go before it
+	static final int					IN_LAMBDA		= 3;	// As above, and the construct runs when a lambda is called, not with its statement
+	static final int					OUTSIDE_CODE	= 4;	// The construct is in a field or other declaration of a class
+
+	/** These are the kinds of statements a construct can be in */
+	static final int					SIMPLE			= 0;	// A statement that ends with a semicolon
+	static final int					COMPOUND		= 1;	// A statement with a body, or part of the statement before it
+	static final int					SWITCH			= 2;	// A switch, its block can't start with a statement
+	static final int					EXIT			= 3;	// A return, throw, break or continue, nothing after it can be reached
+
+	/** These are the kinds of groups the tokens can be inside of */
+	private static final int			PAREN			= 0;	// Parentheses
+	private static final int			CODE			= 1;	// A block of statements
+	private static final int			TYPE			= 2;	// The body of a class, interface or enum
+	private static final int			INIT			= 3;	// An array initializer
+
+	/** The statements whose headers are followed by a body */
+	private static final List<String>	HEADERS			= Arrays.asList( "if", "while", "for", "switch", "synchronized",
+																"catch", "try" );
+
+	/** The statements whose body doesn't need braces */
+	private static final List<String>	BODIES			= Arrays.asList( "if", "while", "for", "else", "do" );
+
+	/** The statements that are followed by their body or block right away */
+	private static final List<String>	OPENERS			= Arrays.asList( "else", "do", "try", "finally" );
+
+	/** The statements that are part of the statement before them */
+	private static final List<String>	CONTINUATIONS	= Arrays.asList( "else", "catch", "finally" );
+
+	/** The statements that hold other statements, and can't be wrapped in braces without knowing their end */
+	private static final List<String>	COMPOUNDS		= Arrays.asList( "if", "while", "for", "do", "switch", "try",
+																"else", "catch", "finally" );
+
+	/** The statements that leave the current flow of control */
+	private static final List<String>	EXITS			= Arrays.asList( "return", "throw", "break", "continue" );
+
+	/** The declarations of types */
+	private static final List<String>	TYPES			= Arrays.asList( "class", "interface", "enum" );
+
+	private boolean						_inComment		= false;					// If the scan is inside a block comment
+	private char						_last			= ';';						// The last character outside of comments and whitespace
+	private String						_lastWord		= null;						// The last token if it was a word
+	private boolean						_lastArrow		= false;					// If the last token was a lambda arrow
+	private ArrayList<Group>			_groups			= new ArrayList<Group>();	// The groups the scan is inside of, innermost last
+
+	// The last token read
+	private int							_tokenStart		= 0;						// The column the token starts at
+	private char						_token			= 0;						// The character of the token, or 0 for a word
+	private String						_word			= null;						// The word of the token, or null
+	private boolean						_arrow			= false;					// If the token is a lambda arrow
+
+	/**
+	 * Instantiates a lexer at the start of a file.
+	 */
+	StatementLexer() {
+		_groups.add( new Group( TYPE, false ) );
+	}
+
+	/**
+	 * Makes a copy of the lexer, so a line can be read ahead without changing the lexer.
+	 *
+	 * @return the copy
+	 */
+	StatementLexer copy() {
+		StatementLexer copy = new StatementLexer();
+		copy._inComment = _inComment;
+		copy._last = _last;
+		copy._lastWord = _lastWord;
+		copy._lastArrow = _lastArrow;
+		copy._groups.clear();
+		for( Group group : _groups ) {
+			copy._groups.add( group.copy() );
+		}
+		return copy;
+	}
+
+	/**
+	 * Gets the column the last token read starts at.
+	 *
+	 * @return the column of the token
+	 */
+	int getTokenStart() {
+		return _tokenStart;
+	}
+
+	/**
+	 * Gets the character of the last token read.
+	 *
+	 * @return the character, or 0 if the token is a word or literal
+	 */
+	char getToken() {
+		return _token;
+	}
+
+	/**
+	 * Reads the next token of the line and follows it.
+	 *
+	 * @param line the line
+	 * @param start the column to read from
+	 * @return the column after the token, or -1 if there are no more tokens on the line
+	 */
+	int next( String line, int start ) {
+		int i = skip( line, start );
+		if( i >= line.length() ) {
+			return -1;
+		}
+
+		_tokenStart = i;
+		_token = 0;
+		_word = null;
+		_arrow = false;
+		char character = line.charAt( i );
+		int end = i + 1;
+		if( character == '"' || character == '\'' ) {
+			end = skipLiteral( line, i );
+		}
+		else if( Character.isJavaIdentifierStart( character ) ) {
+			while( end < line.length() && Character.isJavaIdentifierPart( line.charAt( end ) ) ) {
+				end++;
+			}
+			_word = line.substring( i, end );
+		}
+		else if( character == '-' && end < line.length() && line.charAt( end ) == '>' ) {
+			end++;
+			_arrow = true;
+		}
+		else {
+			_token = character;
+		}
+
+		follow( line.charAt( end - 1 ) );
+		return end;
+	}
+
+	/**
+	 * Ends the current line, the statements that are still open started on an earlier line.
+	 */
+	void endLine() {
+		for( Group group : _groups ) {
+			group._start = -1;
+		}
+	}
+
+	/**
+	 * Finds the context of a construct, reading the line up to the construct with a copy of the lexer.
+	 * The lexer must be at the start of the line.
+	 *
+	 * @param line the line
+	 * @param column the column of the construct
+	 * @return the context, the column the statement holding the construct starts at (-1 if it isn't on
+	 *         the line), and the kind of the statement
+	 */
+	int[] locate( String line, int column ) {
+		StatementLexer lexer = copy();
+		int i = 0;
+		while( ( i = lexer.next( line, i ) ) != -1 && lexer._tokenStart < column ) {
+			// Read up to the construct
+		}
+		return lexer.context();
+	}
+
+	/**
+	 * Gets the context of the last token read.
+	 *
+	 * @return the context, the column the statement starts at and the kind of the statement
+	 */
+	private int[] context() {
+
+		// Find the block the construct is in, the groups inside of it are all in its statement
+		int index = _groups.size() - 1;
+		boolean loopHeader = false;
+		boolean lambda = false;
+		while( index >= 0 && _groups.get( index )._kind != CODE && _groups.get( index )._kind != TYPE ) {
+			Group group = _groups.get( index );
+			loopHeader |= group._header && ( "while".equals( group._first ) || "for".equals( group._first ) );
+			lambda |= group._lambda;
+			index--;
+		}
+		if( index < 0 || _groups.get( index )._kind == TYPE ) {
+			return new int[] { OUTSIDE_CODE, -1, SIMPLE };
+		}
+
+		Group block = _groups.get( index );
+		int statement = SIMPLE;
+		if( EXITS.contains( block._first ) ) {
+			statement = EXIT;
+		}
+		else if( "switch".equals( block._first ) ) {
+			statement = SWITCH;
+		}
+		else if( block._continues || block._body || COMPOUNDS.contains( block._first ) ) {
+			statement = COMPOUND;
+		}
+		int context = AT_STATEMENT;
+		if( lambda || block._lambda ) {
+			context = IN_LAMBDA;
+		}
+		else if( loopHeader || block._constructor || block._start == -1 || block._continues ) {
+			context = IN_EXPRESSION;
+		}
+		else if( block._body ) {
+			context = COMPOUNDS.contains( block._first ) ? IN_EXPRESSION : IN_BODY;
+		}
+		return new int[] { context, block._start, statement };
+	}
+
+	/**
+	 * Follows the last token read.
+	 *
+	 * @param lastCharacter the last character of the token
+	 */
+	private void follow( char lastCharacter ) {
+		Group top = _groups.get( _groups.size() - 1 );
+		boolean atStart = top._atStart;
+
+		// The first token after a statement ended starts the next one
+		if( top._kind != PAREN && top._kind != INIT && top._atStart && _token != '}' && _token != ';' ) {
+			top._atStart = false;
+			top._start = _tokenStart;
+			top._first = _word;
+			top._tokens = 0;
+			top._body = top._bodyNext;
+			top._continues = CONTINUATIONS.contains( _word ) || ( "while".equals( _word ) && top._closedDo );
+			top._lambda = false;
+			top._type = false;
+			top._constructor = false;
+			top._bodyNext = false;
+		}
+		top._closedDo = false;
+
+		if( _word != null ) {
+			if( top._kind == CODE && OPENERS.contains( _word ) ) {
+				top._atStart = true;
+				top._bodyNext = BODIES.contains( _word );
+			}
+			if( TYPES.contains( _word ) && _last != '.' ) {
+				top._type = true;
+			}
+		}
+		else if( _token == '(' ) {
+			Group paren = new Group( PAREN, false );
+			paren._header = top._kind == CODE && top._tokens == 1 && HEADERS.contains( top._first );
+			paren._first = top._first;
+			_groups.add( paren );
+
+			// A call to another constructor must be the first statement, nothing can go in front of it
+			if( top._kind == CODE && top._tokens == 1 && ( "this".equals( top._first ) || "super".equals( top._first ) ) ) {
+				top._constructor = true;
+			}
+		}
+		else if( _token == ')' ) {
+			if( top._kind == PAREN ) {
+				_groups.remove( _groups.size() - 1 );
+				Group block = _groups.get( _groups.size() - 1 );
+				if( top._header ) {
+					block._atStart = true;
+					block._bodyNext = BODIES.contains( top._first );
+				}
+			}
+		}
+		else if( _token == '{' ) {
+			openBlock( top, atStart );
+		}
+		else if( _token == '}' ) {
+			if( _groups.size() > 1 ) {
+				_groups.remove( _groups.size() - 1 );
+				Group block = _groups.get( _groups.size() - 1 );
+				if( top._endsStatement && block._kind != PAREN && block._kind != INIT ) {
+					block._atStart = true;
+					block._bodyNext = false;
+					block._closedDo = top._do;
+				}
+			}
+		}
+		else if( _token == ';' ) {
+			if( top._kind != PAREN && top._kind != INIT ) {
+				top._atStart = true;
+				top._bodyNext = false;
+			}
+		}
+		else if( _token == ':' ) {
+			if( top._kind == CODE && !top._atStart
+					&& ( "case".equals( top._first ) || "default".equals( top._first ) || ( top._tokens == 1 && top._first != null ) ) ) {
+				top._atStart = true;
+				top._bodyNext = false;
+			}
+		}
+		else if( _arrow ) {
+			top._lambda = true;
+		}
+
+		top._tokens++;
+		_lastArrow = _arrow;
+		_lastWord = _word;
+		_last = lastCharacter;
+	}
+
+	/**
+	 * Opens a block, working out if it holds statements, the members of a class, or array elements.
+	 *
+	 * @param top the innermost group
+	 * @param atStart if the block is at the start of a statement
+	 */
+	private void openBlock( Group top, boolean atStart ) {
+		Group block = null;
+		if( top._kind == CODE && atStart ) {
+
+			// The body of a statement, or a block on its own
+			block = new Group( CODE, true );
+			block._do = "do".equals( _lastWord );
+		}
+		else if( _lastArrow ) {
+			block = new Group( CODE, false );
+		}
+		else if( top._kind == TYPE || ( top._kind == CODE && top._type ) ) {
+
+			// A class declaration, or a method body or initializer in a class
+			if( top._type ) {
+				block = new Group( TYPE, true );
+			}
+			else if( _last == '=' || _last == ']' || _last == ',' ) {
+				block = new Group( INIT, false );
+			}
+			else {
+				block = new Group( CODE, true );
+			}
+		}
+		else if( _last == ')' ) {
+
+			// An anonymous class
+			block = new Group( TYPE, false );
+		}
+		else {
+			block = new Group( INIT, false );
+		}
+		block._atStart = block._kind == CODE || block._kind == TYPE;
+		_groups.add( block );
+	}
+
+	/**
+	 * Skips whitespace and comments.
+	 *
+	 * @param line the line
+	 * @param start the column to skip from
+	 * @return the column of the next token, or the length of the line
+	 */
+	private int skip( String line, int start ) {
+		int i = start;
+		while( i < line.length() ) {
+			if( _inComment ) {
+				int end = line.indexOf( "*/", i );
+				if( end == -1 ) {
+					return line.length();
+				}
+				_inComment = false;
+				i = end + 2;
+				continue;
+			}
+
+			char character = line.charAt( i );
+			char next = ( i + 1 < line.length() ) ? line.charAt( i + 1 ) : 0;
+			if( character == '/' && next == '/' ) {
+				return line.length();
+			}
+			if( character == '/' && next == '*' ) {
+				_inComment = true;
+				i += 2;
+				continue;
+			}
+			if( !Character.isWhitespace( character ) ) {
+				return i;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Skips a string or character literal.
+	 *
+	 * @param line the line
+	 * @param start the position of the opening quote
+	 * @return the position after the closing quote
+	 */
+	private int skipLiteral( String line, int start ) {
+		char quote = line.charAt( start );
+		int i = start + 1;
+		while( i < line.length() && line.charAt( i ) != quote ) {
+			if( line.charAt( i ) == '\\' ) {
+				i++;
+			}
+			i++;
+		}
+		return Math.min( i + 1, line.length() );
+	}
+
+	/**
+	 * This class holds a group of tokens, and the statement being read in it when it is a block.
+	 */
+	private static class Group {
+
+		private int		_kind			= PAREN;	// The kind of group
+		private boolean	_endsStatement	= false;	// If the statement around the group ends with it
+		private boolean	_header			= false;	// If the parentheses are the header of a statement
+		private boolean	_do				= false;	// If the block is the body of a do loop
+
+		// The statement being read in a block
+		private boolean	_atStart		= false;	// If the next token starts a statement
+		private int		_start			= -1;		// The column the statement starts at, -1 if not on the line
+		private String	_first			= null;		// The first word of the statement
+		private int		_tokens			= 0;		// The number of tokens read in the statement
+		private boolean	_body			= false;	// If the statement is the body of an if, else or loop without braces
+		private boolean	_bodyNext		= false;	// If the next statement is such a body
+		private boolean	_continues		= false;	// If the statement is part of the statement before it
+		private boolean	_closedDo		= false;	// If the last token closed the body of a do loop
+		private boolean	_lambda			= false;	// If the statement or parentheses have a lambda
+		private boolean	_type			= false;	// If the statement declares a type
+		private boolean	_constructor	= false;	// If the statement calls another constructor
+
+		Group( int kind, boolean endsStatement ) {
+			_kind = kind;
+			_endsStatement = endsStatement;
+		}
+
+		Group copy() {
+			Group copy = new Group( _kind, _endsStatement );
+			copy._header = _header;
+			copy._do = _do;
+			copy._atStart = _atStart;
+			copy._start = _start;
+			copy._first = _first;
+			copy._tokens = _tokens;
+			copy._body = _body;
+			copy._bodyNext = _bodyNext;
+			copy._continues = _continues;
+			copy._closedDo = _closedDo;
+			copy._lambda = _lambda;
+			copy._type = _type;
+			copy._constructor = _constructor;
+			return copy;
+		}
+	}
+}
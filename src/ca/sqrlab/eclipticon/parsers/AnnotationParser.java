@@ -68,6 +68,7 @@ public class AnnotationParser {
 			}
 
 			_type = parseType( curLine );
+			int position = parsePosition( curLine.substring( 0, curLine.indexOf( "*/" ) ) );
 			// branch here, because sleep and yield require different syntax
 			if( _type == Constants.NOISE_YIELD ) { // if type is yield
 
@@ -75,16 +76,20 @@ public class AnnotationParser {
 				_low = 0;
 				_high = 0;
 
-				return new InstrumentationPoint( lineNumber, sequence, construct, constructSyntax, _type, _probability, _low, _high );
+				InstrumentationPoint point = new InstrumentationPoint( lineNumber, sequence, construct, constructSyntax, _type, _probability, _low, _high );
+				point.setPosition( position );
+				return point;
 
 			}
-			else { // if type is 0, default to sleep
+			else { // sleep, park, spin and nano-sleep all take a delay range
 
 				_low = parseLow( curLine );
 				_high = parseHigh( curLine );
 				_probability = parseProbability( curLine );
 
-				return new InstrumentationPoint( lineNumber, sequence, construct, constructSyntax, _type, _probability, _low, _high );
+				InstrumentationPoint point = new InstrumentationPoint( lineNumber, sequence, construct, constructSyntax, _type, _probability, _low, _high );
+				point.setPosition( position );
+				return point;
 
 			}
 
@@ -142,11 +147,12 @@ public class AnnotationParser {
 		if( m.find() ) {
 			String string = m.group( 1 );
 
-			if( string.equals( "yield" ) )
-				type = 1;
-			else
-				//(string.equals("sleep"))
-				type = 0;
+			// Unknown names default to sleep
+			type = Constants.NOISE_SLEEP;
+			for( int i = 0; i < Constants.NOISE_NAMES.length; i++ ) {
+				if( string.equalsIgnoreCase( Constants.NOISE_NAMES[ i ] ) )
+					type = i;
+			}
 		}
 		return type;
 	}
@@ -187,6 +193,23 @@ public class AnnotationParser {
 		return probability;
 	}
 
+	private int parsePosition( String params ) {
+
+		// The noise goes before the construct unless the annotation says otherwise
+		int position = Constants.POSITION_BEFORE;
+		String regularExpression = "," + "[\\s+]?" + "position" + "[\\s+]?" + "=" + "[\\s+]?" + "." + "((?:[a-z][a-z]+))";
+		Pattern p = Pattern.compile( regularExpression, Pattern.CASE_INSENSITIVE | Pattern.DOTALL );
+		Matcher m = p.matcher( params );
+		if( m.find() ) {
+			String string = m.group( 1 );
+			for( int i = 0; i < Constants.POSITION_NAMES.length; i++ ) {
+				if( string.equalsIgnoreCase( Constants.POSITION_NAMES[ i ] ) )
+					position = i;
+			}
+		}
+		return position;
+	}
+
 	private String parseSyntax( String params ) {
 		String syntax = _syntax;
 		String regularExpression = "\\(" + "[\\s+]?" + "syntax" + "[\\s+]?" + "=" + "[\\s+]?" + "([\\.|\\w]\\w+)";
@@ -275,17 +298,42 @@ public class AnnotationParser {
 
 		annotationComment = annotationComment + "sequence = " + point.getSequence() + ", ";
 
-		if( point.getType() == Constants.NOISE_SLEEP ) { // then write sleep
+		if( point.getType() != Constants.NOISE_YIELD ) { // then write the delay range
 
-			annotationComment = annotationComment + "type = \"sleep\", " + "low = " + point.getLow() + ", high = " + point.getHigh() + ", " + "probability = " + point.getProbability() + ") */";
+			annotationComment = annotationComment + "type = \"" + getTypeName( point.getType() ) + "\", " + "low = " + point.getLow() + ", high = " + point.getHigh() + ", " + "probability = " + point.getProbability() + getPositionParameter( point ) + ") */";
 		}
 		else {// then write yield
 
-			annotationComment = annotationComment + "type = \"yield\", " + "probability = " + point.getProbability() + ") */";
+			annotationComment = annotationComment + "type = \"yield\", " + "probability = " + point.getProbability() + getPositionParameter( point ) + ") */";
 		}
 		return annotationComment;
 	}
 
+	/**
+	 * Gets the name of a noise type as it is written in an annotation.
+	 * 
+	 * @param type the noise type
+	 * @return the name of the type, sleep if the type is unknown
+	 */
+	private String getTypeName( int type ) {
+		if( type >= 0 && type < Constants.NOISE_NAMES.length )
+			return Constants.NOISE_NAMES[ type ];
+		return Constants.NOISE_NAMES[ Constants.NOISE_SLEEP ];
+	}
+
+	/**
+	 * Gets the position parameter of an annotation, the noise goes before the construct when the
+	 * parameter is left out so it is only written for the other positions.
+	 * 
+	 * @param point the instrumentation point
+	 * @return the position parameter, or an empty string if the noise goes before the construct
+	 */
+	private String getPositionParameter( InstrumentationPoint point ) {
+		if( point.getPosition() > Constants.POSITION_BEFORE && point.getPosition() < Constants.POSITION_NAMES.length )
+			return ", position = \"" + Constants.POSITION_NAMES[ point.getPosition() ] + "\"";
+		return "";
+	}
+
 	/**
 	 * This method is same as above. However, it is used to update a comment. Hence the passing of the previous line, which contains the annotation comments.
 	 * @param point
@@ -346,13 +394,13 @@ public class AnnotationParser {
 		updatedAnnotationComment = updatedAnnotationComment + "syntax = " + point.getConstructSyntax() + ", ";
 		updatedAnnotationComment = updatedAnnotationComment + "sequence = " + point.getSequence() + ", ";
 
-		if( point.getType() == Constants.NOISE_SLEEP ) { // then write sleep
+		if( point.getType() != Constants.NOISE_YIELD ) { // then write the delay range
 
-			updatedAnnotationComment = updatedAnnotationComment + "type = \"sleep\", " + "low = " + point.getLow() + ", high = " + point.getHigh() + ", " + "probability = " + point.getProbability() + ") */";
+			updatedAnnotationComment = updatedAnnotationComment + "type = \"" + getTypeName( point.getType() ) + "\", " + "low = " + point.getLow() + ", high = " + point.getHigh() + ", " + "probability = " + point.getProbability() + getPositionParameter( point ) + ") */";
 		}
 		else {// then write yield
 
-			updatedAnnotationComment = updatedAnnotationComment + "type = \"yield\", " + "probability = " + point.getProbability() + ") */";
+			updatedAnnotationComment = updatedAnnotationComment + "type = \"yield\", " + "probability = " + point.getProbability() + getPositionParameter( point ) + ") */";
 		}
 
 		String newLine = beginningOfLine + " " + updatedAnnotationComment + " " + restOfLine;
@@ -63,7 +63,11 @@ public class FileParser {
 
 				// If it is a folder then recursively call getFiles and add their returns to the current arraylist
 				if( fileTemp.isDirectory() ) {
-					allSourceFiles.addAll( getFiles( currentPath ) );
+
+					// The shadow tree holds instrumented copies, not sources
+					if( !fileTemp.getName().equals( Constants.SHADOW_DIRECTORY ) ) {
+						allSourceFiles.addAll( getFiles( currentPath ) );
+					}
 				}
 
 				// If it is a file
@@ -88,11 +92,23 @@ public class FileParser {
 	 * @param source the {@link SourceFile} of interest
 	 */
 	public void findInterestPoints( SourceFile source ) {
+		findInterestPoints( source, source.getPath().toFile() );
+	}
+
+	/**
+	 * This method will find all the potential synchronization constructs within
+	 * the given file, and attach them to the source file. This is used to find the
+	 * points of a source file in its original, when the file itself is instrumented.
+	 *
+	 * @param source the {@link SourceFile} of interest
+	 * @param input the file holding the source
+	 */
+	public void findInterestPoints( SourceFile source, File input ) {
 
 		// Read the sourceFile and create the reading and file content objects
 		FileReader fileReader = null;
 		try {
-			fileReader = new FileReader( source.getPath().toString() );
+			fileReader = new FileReader( input );
 		}
 		catch( FileNotFoundException e ) {
 			e.printStackTrace();
@@ -107,8 +123,10 @@ public class FileParser {
 		String nextLine = ""; // The next line if needed to move forward
 		int lineNum = 1; // The active line number
 		int currentLineNum = 1; // The current line number
+		int linesRead = 0; // The number of lines read so far
 		int synchronizedPosition = -1; // The last found synchronized character position on the line
 		boolean synchronizedOnSameLine = true; // If the synchronized is still on the same line
+		ArrayList<InterestPoint> methodPoints = new ArrayList<InterestPoint>(); // The synchronized methods declared on the line
 
 		// If bufferReader is ready start parsing the sourceFile
 		try {
@@ -116,6 +134,7 @@ public class FileParser {
 
 				// For as long as there are lines left to read; acquire current one
 				while( ( curLine = bufReader.readLine() ) != null ) {
+					linesRead++;
 
 					// Due to new line
 					synchronizedOnSameLine = true;
@@ -144,12 +163,15 @@ public class FileParser {
 									+ Constants.SYNCHRONIZE_BLOCK.length() );
 
 							// Keep looping till a delimiter for the synchronized is found
+							String declarationLine = curLine;
 							while( typeFound == Constants.SYNCHRONIZED_NOT_FOUND ) {
 								nextLine = bufReader.readLine();
 								lineNum++;
 
 								// Ensure that an empty line doesn't go through
 								if( nextLine != null ) {
+									declarationLine = nextLine;
+									linesRead++;
 									synchronizedPosition = 1; // Reset since new line
 									typeFound = determineSynchronizedType( nextLine, synchronizedPosition );
 								}
@@ -169,18 +191,24 @@ public class FileParser {
 							else { // Method is found
 
 								// Remove the two last interest point that was added (synchronized and the method)
-								_interestPointsOnLine.remove( _interestPointsOnLine.size() - 1 );
+								InterestPoint synchronizedPoint = _interestPointsOnLine.remove( _interestPointsOnLine.size() - 1 );
+
+								// The declaration itself is the point, its noise covers every caller of the method
+								methodPoints.add( new InterestPoint( synchronizedPoint.getLine(), synchronizedPoint
+										.getSequence(), Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD ) );
 								
-								// If null then remove last interest point in the sourcefile (ie: has moved lines)
-								if (_interestPointsOnLine.size() == 0){
-									
-									// If the source has more then one point remove it, otherwise skip
-									if (source.getInterestingPoints().size() > 0){										
-										source.getInterestingPoints().remove( source.getInterestingPoints().size()-1 );
+								// The name of the method was found as a call to it, but it is only its declaration
+								String name = findDeclaredName( declarationLine );
+								for( int i = _interestPointsOnLine.size() - 1; i >= 0; i-- ) {
+									if( _interestPointsOnLine.get( i ).getConstructSyntax().equals( name ) ) {
+										_interestPointsOnLine.remove( i );
+										break;
 									}
 								}
-								else{									
-									_interestPointsOnLine.remove( _interestPointsOnLine.size() - 1 );
+
+								// A declaration that ran onto later lines was the last synchronized on the current line
+								if( currentLineNum != lineNum ) {
+									synchronizedOnSameLine = false;
 								}
 							}
 						}
@@ -188,6 +216,8 @@ public class FileParser {
 							synchronizedOnSameLine = false;
 						}
 					}
+					_interestPointsOnLine.addAll( methodPoints );
+					methodPoints.clear();
 
 					// If there are points found then figure out order and add the points
 					if( _interestPointsOnLine.size() > 0 ) {
@@ -211,16 +241,14 @@ public class FileParser {
 						_interestPointsOnLine.clear();
 					}
 
-					// If both line numbers are the same then we didn't move due to the synchronized
-					if( currentLineNum == lineNum ) {
-						lineNum++;
-					}
-					else { // We moved due to the synchronized and the line needs not increment
-						currentLineNum = lineNum;
-					}
+					// The next line follows the last line read, which is further on if the synchronized ran onto later lines
+					lineNum++;
 					prevLine = curLine; // Keep current line in case it has a PreemptionPoint annotation
 				}
 			}
+
+			// Keep the line count so the automatic bounds don't need to read the file again
+			source.setLineCount( linesRead );
 		}
 		catch( IOException e ) {
 			e.printStackTrace();
@@ -331,6 +359,27 @@ public class FileParser {
 		return currentPos;
 	}
 
+	/**
+	 * Finds the name of the method declared on a line, which is the word in front of the first '('.
+	 *
+	 * @param line the line holding the end of the declaration
+	 * @return the name of the method, or an empty string if there is no '(' on the line
+	 */
+	private String findDeclaredName( String line ) {
+		int end = line.indexOf( '(' );
+		if( end == -1 ) {
+			return "";
+		}
+		while( end > 0 && Character.isWhitespace( line.charAt( end - 1 ) ) ) {
+			end--;
+		}
+		int start = end;
+		while( start > 0 && Character.isJavaIdentifierPart( line.charAt( start - 1 ) ) ) {
+			start--;
+		}
+		return line.substring( start, end );
+	}
+
 	/**
 	 * Using the current line and the last synchronized syntax position, an attempt of finding
 	 * the type of synchronized is carried out. If the next valid character is found to be a '('
@@ -9,12 +9,31 @@ package ca.sqrlab.eclipticon.parsers;
  * An example declaration is:<br/>
  * &#47;&#42; &#64;PreemptionPoint (syntax = methodCall, sequence = 0, type = "sleep", low = 100, high = 1000, probability = 100) &#42;&#47;
  * &#47;&#42; &#64;PreemptionPoint (syntax = .countDown, sequence = 0, type = "yield", probability = 100) &#42;&#47;
+ * &#47;&#42; &#64;PreemptionPoint (syntax = .unlock, sequence = 0, type = "park", low = 5, high = 50, probability = 100, position = "after") &#42;&#47;<br/><br/>
+ * 
+ * A "sleep" calls Thread.sleep, a "park" parks the thread, a "spin" busy-waits without giving up the
+ * processor and a "nanosleep" parks and then spins out the rest of the delay so it ends close to the
+ * requested time. The delays below a millisecond make each run much faster than a sleep does.<br/><br/>
+ * 
+ * The noise goes before the construct unless a position is given. Noise "after" a call such as unlock,
+ * release or countDown goes after the end of the statement holding the call, and noise "after" a
+ * synchronized block goes after its closing brace, which opens the window right after the lock is handed
+ * over. Noise after a return or throw is left out since it could never run.<br/><br/>
+ * 
+ * Noise "hold" goes where the lock of the construct is held, so the lock is kept for longer. A
+ * synchronized block or method gets the noise at the start of its body and in a finally around it, the
+ * noise of a lock or acquire goes after it and the noise of an unlock or release goes before it.<br/><br/>
+ * 
+ * A synchronized method declaration has the syntax "synchronizedMethod". Whatever the position, its noise
+ * goes at the start of the method body and in a finally around it, so one point covers every caller and
+ * every way out of the method.
  * 
  * @param sequence Represents the ordering if multiple concurrency mechanisms occur on one line, an int
- * @param type "sleep" or "yield", a string
- * @param low Lower bound of delay range, measured in milliseconds, default 100, an int
- * @param high Upper bound of delay range, measured in milliseconds, default 1000, an int
+ * @param type "sleep", "yield", "park", "spin" or "nanosleep", a string
+ * @param low Lower bound of delay range, measured in milliseconds for a sleep and microseconds otherwise, default 100, an int
+ * @param high Upper bound of delay range, measured in milliseconds for a sleep and microseconds otherwise, default 1000, an int
  * @param probability Percentage of time the preemption point will be executed, from 0 to 100, an int
+ * @param position "before", "after", "both" or "hold" (noise while the lock is held), default "before", a string
  * 
  * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
  */
@@ -25,4 +44,5 @@ public @interface PreemptionPoint {
 	int low() default 100;
 	int high() default 1000;
 	int probability() default 100;
+	String position() default "before";
 }
\ No newline at end of file
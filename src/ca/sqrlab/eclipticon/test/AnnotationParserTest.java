@@ -57,6 +57,22 @@ public class AnnotationParserTest extends TestCase {
 		assertEquals(answer, updated);
 	}
 	
+	@Test public void testSubMillisecondTypesKeepTheirRange() {
+		// the park, spin and nano-sleep types are written and read back with their delay range
+		int[] types = { Constants.NOISE_PARK, Constants.NOISE_SPIN, Constants.NOISE_NANOSLEEP };
+		for (int type : types) {
+			_instrumentationPoint = new InstrumentationPoint(10, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_UNLOCK, type, 40, 5, 50);
+			String comment = _annotationParser.createAnnotationComment(_instrumentationPoint);
+			assertTrue(comment.contains("type = \"" + Constants.NOISE_NAMES[type] + "\", low = 5, high = 50"));
+
+			InstrumentationPoint parsed = new AnnotationParser().parseLineForAnnotations(comment, 10, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_UNLOCK);
+			assertEquals(type, parsed.getType());
+			assertEquals(40, parsed.getProbability());
+			assertEquals(5, parsed.getLow());
+			assertEquals(50, parsed.getHigh());
+		}
+	}
+
 	@After	public void cleanUpStreams() {
 	    System.setOut(null);
 	    System.setErr(null);
@@ -0,0 +1,181 @@
+package ca.sqrlab.eclipticon.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.instrumentation.BackupStore;
+
+public class BackupStoreTest extends TestCase {
+
+	private File		_directory	= null;
+	private File		_storeRoot	= null;
+	private File		_source		= null;
+	private BackupStore	_store		= null;
+
+	@Before
+	public void setUp() throws Exception {
+		_directory = new File( System.getProperty( "java.io.tmpdir" ), "eclipticon_backup_test" );
+		_storeRoot = new File( _directory, "store" );
+		_directory.mkdirs();
+
+		_source = new File( _directory, "Source.java" );
+		writeFile( _source, "original" );
+		_store = new BackupStore( _storeRoot );
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		deleteAll( _directory );
+	}
+
+	@Test
+	public void testSnapshotAndRestore() throws IOException {
+		File snapshot = _store.snapshot( _source );
+		assertTrue( _store.hasBackup( _source ) );
+		assertEquals( "original", readFile( snapshot ) );
+
+		writeFile( _source, "instrumented" );
+		assertTrue( _store.restore( _source ) );
+
+		assertEquals( "original", readFile( _source ) );
+		assertFalse( _store.hasBackups() );
+		assertEquals( 0, _storeRoot.listFiles().length );
+	}
+
+	@Test
+	public void testSnapshotKeepsOriginal() throws IOException {
+		File snapshot = _store.snapshot( _source );
+		writeFile( _source, "instrumented" );
+
+		// Instrumenting again must not replace the original with the instrumented file
+		assertEquals( snapshot, _store.snapshot( _source ) );
+		assertEquals( "original", readFile( snapshot ) );
+	}
+
+	@Test
+	public void testManifestIsReloaded() throws IOException {
+		_store.snapshot( _source );
+		writeFile( _source, "instrumented" );
+
+		// A new store (e.g. after a restart) finds the file that still needs reverting
+		BackupStore reloaded = new BackupStore( _storeRoot );
+		assertTrue( reloaded.hasBackup( _source ) );
+		assertTrue( reloaded.restore( _source ) );
+		assertEquals( "original", readFile( _source ) );
+
+		assertFalse( new BackupStore( _storeRoot ).hasBackups() );
+	}
+
+	@Test
+	public void testPlanIsReloaded() throws IOException {
+		_store.snapshot( _source );
+		_store.recordPlan( _source, "first" );
+		_store.recordPlan( _source, "second" );
+
+		// The last plan is kept across a restart, and is dropped once the file is reverted
+		BackupStore reloaded = new BackupStore( _storeRoot );
+		assertEquals( "second", reloaded.getPlan( _source ) );
+		assertTrue( reloaded.restore( _source ) );
+		assertNull( reloaded.getPlan( _source ) );
+		assertNull( new BackupStore( _storeRoot ).getPlan( _source ) );
+	}
+
+	@Test
+	public void testEditLeavesSnapshot() throws IOException {
+		File snapshot = _store.snapshot( _source );
+		writeFile( _source, "instrumented" );
+		assertEquals( snapshot, _store.getOriginal( _source ) );
+
+		// The edit goes to a copy, which is read back after a restart and is the one restored
+		File working = _store.startEdit( _source );
+		writeFile( working, "edited" );
+		_store.finishEdit( _source, working );
+		assertFalse( working.exists() );
+		assertEquals( "original", readFile( snapshot ) );
+
+		BackupStore reloaded = new BackupStore( _storeRoot );
+		assertEquals( "edited", readFile( reloaded.getOriginal( _source ) ) );
+		assertTrue( reloaded.restore( _source ) );
+		assertEquals( "edited", readFile( _source ) );
+		assertEquals( 0, _storeRoot.listFiles().length );
+	}
+
+	@Test
+	public void testEditWithoutBackup() throws IOException {
+		assertNull( _store.startEdit( _source ) );
+		assertNull( _store.getOriginal( _source ) );
+	}
+
+	@Test
+	public void testRestoreWithoutBackup() throws IOException {
+		assertFalse( _store.restore( _source ) );
+		assertEquals( "original", readFile( _source ) );
+	}
+
+	@Test
+	public void testRestoreLegacyBackup() throws IOException {
+		writeFile( new File( _source.getPath() + Constants.EXTENSION_ECLIPTICON ), "legacy" );
+
+		assertTrue( _store.restore( _source ) );
+		assertEquals( "legacy", readFile( _source ) );
+		assertFalse( new File( _source.getPath() + Constants.EXTENSION_ECLIPTICON ).exists() );
+	}
+
+	@Test
+	public void testReplace() throws IOException {
+		File replacement = new File( _directory, "Source.java" + Constants.EXTENSION_TEMPORARY );
+		writeFile( replacement, "instrumented" );
+
+		BackupStore.replace( replacement, _source );
+		assertEquals( "instrumented", readFile( _source ) );
+		assertFalse( replacement.exists() );
+		assertFalse( new File( _source.getPath() + Constants.EXTENSION_REPLACED ).exists() );
+	}
+
+	@Test
+	public void testReplaceFailureKeepsTarget() throws IOException {
+		// The source is missing, so the target is put back after it was moved aside
+		try {
+			BackupStore.replace( new File( _directory, "Missing.java" ), _source );
+			fail( "Replacing with a missing file should fail" );
+		}
+		catch( IOException e ) {
+			// Expected
+		}
+		assertEquals( "original", readFile( _source ) );
+		assertFalse( new File( _source.getPath() + Constants.EXTENSION_REPLACED ).exists() );
+	}
+
+	private void writeFile( File file, String text ) throws IOException {
+		FileWriter writer = new FileWriter( file );
+		writer.write( text );
+		writer.close();
+	}
+
+	private String readFile( File file ) throws IOException {
+		BufferedReader reader = new BufferedReader( new FileReader( file ) );
+		String text = reader.readLine();
+		reader.close();
+		return text;
+	}
+
+	private void deleteAll( File file ) {
+		File[] files = file.listFiles();
+		if( files != null ) {
+			for( File child : files ) {
+				deleteAll( child );
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,455 @@
+package ca.sqrlab.eclipticon.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sqrlab.eclipticon.runtime.ClassRewriter;
+import ca.sqrlab.eclipticon.runtime.Noise;
+import ca.sqrlab.eclipticon.runtime.SitePolicy;
+
+public class ClassRewriterTest extends TestCase {
+
+	private ArrayList<String>	_sites		= null;
+	private SitePolicy			_policy		= null;
+
+	@Before
+	public void setUp() throws Exception {
+		_sites = new ArrayList<String>();
+
+		// Every construct gets a yield that always activates
+		_policy = new SitePolicy() {
+
+			public int pointFor( String sourcePath, int line, String construct, String syntax, int sequence ) {
+				_sites.add( sourcePath + ":" + construct + ":" + syntax + ":" + sequence );
+				return Noise.register( sourcePath + ":" + line, Noise.YIELD, 100, 0, 0 );
+			}
+		};
+	}
+
+	@Test
+	public void testRewrittenClassRuns() throws Exception {
+		byte[] original = readClass( Sample.class );
+		byte[] rewritten = new ClassRewriter( _policy ).rewrite( original );
+		assertNotNull( rewritten );
+		assertTrue( rewritten.length > original.length );
+
+		// The class is verified when it is loaded, and must still give the same results
+		Class<?> rewrittenClass = new SampleLoader( rewritten ).loadClass( Sample.class.getName() );
+		Object sample = rewrittenClass.getConstructor().newInstance();
+		for( int n = -1; n < 12; n++ ) {
+			Object expected = Sample.class.getMethod( "run", int.class ).invoke( new Sample(), n );
+			assertEquals( expected, rewrittenClass.getMethod( "run", int.class ).invoke( sample, n ) );
+		}
+	}
+
+	@Test
+	public void testSitesFound() throws Exception {
+		new ClassRewriter( _policy ).rewrite( readClass( Sample.class ) );
+
+		String path = "ca/sqrlab/eclipticon/test/ClassRewriterTest.java:";
+		assertTrue( _sites.contains( path + "synchronize:synchronized:0" ) );
+		assertTrue( _sites.contains( path + "synchronize:.lock:0" ) );
+		assertTrue( _sites.contains( path + "synchronize:.unlock:0" ) );
+		assertTrue( _sites.contains( path + "latch:.countDown:0" ) );
+		assertFalse( _sites.contains( path + "latch:.getCount:0" ) );
+	}
+
+	@Test
+	public void testRewrittenClassRunsOnVirtualThreads() throws Exception {
+		assertFalse( Noise.isVirtualThread() );
+
+		// Virtual threads need a newer JDK than the runtime is built for
+		ExecutorService executor = null;
+		try {
+			executor = (ExecutorService)Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+		}
+		catch( NoSuchMethodException e ) {
+			return;
+		}
+
+		// Every construct sleeps, inside the monitor of the sample
+		SitePolicy sleeping = new SitePolicy() {
+
+			public int pointFor( String sourcePath, int line, String construct, String syntax, int sequence ) {
+				return Noise.register( sourcePath + ":" + line + ":virtual", Noise.SLEEP, 100, 5, 5 );
+			}
+		};
+		final Class<?> rewrittenClass = new SampleLoader( new ClassRewriter( sleeping ).rewrite( readClass( Sample.class ) ) )
+				.loadClass( Sample.class.getName() );
+
+		// Many more tasks than there are carriers, each with its own sample
+		final int tasks = 200;
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		long start = System.nanoTime();
+		for( int task = 0; task < tasks; task++ ) {
+			final int n = task % 8;
+			results.add( executor.submit( new Callable<Object>() {
+
+				public Object call() throws Exception {
+					assertTrue( Noise.isVirtualThread() );
+					return rewrittenClass.getMethod( "run", int.class ).invoke( rewrittenClass.getConstructor().newInstance(), n );
+				}
+			} ) );
+		}
+		executor.shutdown();
+		assertTrue( executor.awaitTermination( 60, TimeUnit.SECONDS ) );
+
+		// The results are unchanged, and the delays didn't queue up behind the pinned carriers
+		for( int task = 0; task < tasks; task++ ) {
+			assertEquals( new Sample().run( task % 8 ), results.get( task ).get() );
+		}
+		assertTrue( System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos( tasks * 5 ) );
+	}
+
+	@Test
+	public void testParseVersion() throws Exception {
+		assertEquals( 6, parseVersion( "1.6" ) );
+		assertEquals( 8, parseVersion( "1.8" ) );
+		assertEquals( 21, parseVersion( "21" ) );
+		assertEquals( 24, parseVersion( "24-ea" ) );
+		assertEquals( 0, parseVersion( "x" ) );
+		assertEquals( 0, parseVersion( null ) );
+		assertTrue( parseVersion( System.getProperty( "java.specification.version" ) ) >= 6 );
+	}
+
+	@Test
+	public void testVirtualDelayOverride() throws Exception {
+
+		// The environment variable would win over the default, so the default is only checked without it
+		String previous = System.getProperty( Noise.VIRTUAL_PROPERTY );
+		try {
+			if( System.getenv( Noise.VIRTUAL_ENVIRONMENT ) == null ) {
+				System.clearProperty( Noise.VIRTUAL_PROPERTY );
+				boolean parks = parseVersion( System.getProperty( "java.specification.version" ) ) >= 24;
+				assertEquals( parks ? "park" : "yield", readVirtualDelay() );
+			}
+
+			// The property is read when the runtime is loaded, so each value gets a fresh copy of the runtime
+			System.setProperty( Noise.VIRTUAL_PROPERTY, "park" );
+			assertEquals( "park", readVirtualDelay() );
+			System.setProperty( Noise.VIRTUAL_PROPERTY, " YIELD " );
+			assertEquals( "yield", readVirtualDelay() );
+		}
+		finally {
+			if( previous == null ) {
+				System.clearProperty( Noise.VIRTUAL_PROPERTY );
+			}
+			else {
+				System.setProperty( Noise.VIRTUAL_PROPERTY, previous );
+			}
+		}
+	}
+
+	@Test
+	public void testSeededThreadsWithSameName() throws Exception {
+		String previous = System.getProperty( Noise.SEED_PROPERTY );
+		System.setProperty( Noise.SEED_PROPERTY, "42" );
+		try {
+			Class<?> random = new RuntimeLoader().loadClass( Noise.class.getPackage().getName() + ".NoiseRandom" );
+			final Method current = random.getDeclaredMethod( "current" );
+			final Method nextInt = random.getDeclaredMethod( "nextInt", int.class );
+			current.setAccessible( true );
+			nextInt.setAccessible( true );
+
+			// Two threads with the same name still make their own decisions under the same seed
+			final List<List<Object>> streams = new ArrayList<List<Object>>();
+			for( int t = 0; t < 2; t++ ) {
+				final List<Object> stream = new ArrayList<Object>();
+				streams.add( stream );
+				Thread thread = new Thread( "worker" ) {
+
+					public void run() {
+						try {
+							Object generator = current.invoke( null );
+							for( int i = 0; i < 8; i++ ) {
+								stream.add( nextInt.invoke( generator, 1000000 ) );
+							}
+						}
+						catch( Exception e ) {
+							e.printStackTrace();
+						}
+					}
+				};
+				thread.start();
+				thread.join();
+			}
+			assertEquals( 8, streams.get( 0 ).size() );
+			assertEquals( 8, streams.get( 1 ).size() );
+			assertFalse( streams.get( 0 ).equals( streams.get( 1 ) ) );
+		}
+		finally {
+			if( previous == null ) {
+				System.clearProperty( Noise.SEED_PROPERTY );
+			}
+			else {
+				System.setProperty( Noise.SEED_PROPERTY, previous );
+			}
+		}
+	}
+
+	@Test
+	public void testInstrumentedFixtureRuns() throws Exception {
+
+		// The fixture is compiled here, which a JRE can't do
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if( compiler == null ) {
+			return;
+		}
+		File directory = new File( System.getProperty( "java.io.tmpdir" ), "eclipticon_fixture_test" );
+		File source = new File( directory, "testThirteen.java" );
+		directory.mkdirs();
+		try {
+			File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+			writeFile( source, readFile( new File( testFiles, "test13_solution.txt" ) ) );
+			assertEquals( 0, compiler.run( null, null, null, "-d", directory.getPath(), "-cp",
+					System.getProperty( "java.class.path" ), source.getPath() ) );
+
+			// The hold points sleep inside the monitor, on virtual threads where the JDK has them
+			ExecutorService executor = null;
+			try {
+				executor = (ExecutorService)Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+			}
+			catch( NoSuchMethodException e ) {
+				executor = Executors.newFixedThreadPool( 8 );
+			}
+			Class<?> fixtureClass = new FixtureLoader( directory ).loadClass( "ca.sqrlab.eclipticon.test.testfiles.testThirteen" );
+			final Object fixture = fixtureClass.getConstructor().newInstance();
+			final Method increment = fixtureClass.getMethod( "increment" );
+
+			// Every increment is still seen once, however the noise interleaves the tasks
+			final int tasks = 200;
+			final int increments = 5;
+			for( int task = 0; task < tasks; task++ ) {
+				executor.submit( new Callable<Object>() {
+
+					public Object call() throws Exception {
+						for( int i = 0; i < increments; i++ ) {
+							increment.invoke( fixture );
+						}
+						return null;
+					}
+				} );
+			}
+			executor.shutdown();
+			assertTrue( executor.awaitTermination( 60, TimeUnit.SECONDS ) );
+			assertEquals( tasks * increments + 1, increment.invoke( fixture ) );
+		}
+		finally {
+			for( File file : listAll( directory ) ) {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testNoConstructs() throws Exception {
+		assertNull( new ClassRewriter( _policy ).rewrite( readClass( ClassRewriterTest.class ) ) );
+		assertNull( new ClassRewriter( _policy ).rewrite( new byte[] { 1, 2, 3, 4 } ) );
+	}
+
+	private int parseVersion( String specification ) throws Exception {
+		Method parseVersion = Class.forName( Noise.class.getPackage().getName() + ".NoiseThreads" ).getDeclaredMethod(
+				"parseVersion", String.class );
+		parseVersion.setAccessible( true );
+		return (Integer)parseVersion.invoke( null, specification );
+	}
+
+	private String readVirtualDelay() throws Exception {
+		Class<?> noise = new RuntimeLoader().loadClass( Noise.class.getName() );
+		return (String)noise.getMethod( "getVirtualDelay" ).invoke( null );
+	}
+
+	private byte[] readClass( Class<?> type ) throws IOException {
+		String name = type.getName().substring( type.getName().lastIndexOf( '.' ) + 1 ) + ".class";
+		return readBytes( type.getResourceAsStream( name ) );
+	}
+
+	private static byte[] readBytes( InputStream input ) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[ 1024 ];
+		int read = 0;
+		while( ( read = input.read( buffer ) ) != -1 ) {
+			output.write( buffer, 0, read );
+		}
+		input.close();
+		return output.toByteArray();
+	}
+
+	private String readFile( File file ) throws IOException {
+		BufferedReader reader = new BufferedReader( new FileReader( file ) );
+		StringBuilder text = new StringBuilder();
+		String line = null;
+		while( ( line = reader.readLine() ) != null ) {
+			text.append( line ).append( '\n' );
+		}
+		reader.close();
+		return text.toString();
+	}
+
+	private void writeFile( File file, String text ) throws IOException {
+		FileWriter writer = new FileWriter( file );
+		writer.write( text );
+		writer.close();
+	}
+
+	private ArrayList<File> listAll( File directory ) {
+		ArrayList<File> files = new ArrayList<File>();
+		File[] children = directory.listFiles();
+		if( children != null ) {
+			for( File child : children ) {
+				files.addAll( listAll( child ) );
+			}
+		}
+		files.add( directory );
+		return files;
+	}
+
+	/**
+	 * Loads its own copy of the runtime, so the settings the runtime reads when it is loaded are read again.
+	 */
+	private static class RuntimeLoader extends ClassLoader {
+
+		RuntimeLoader() {
+			super( RuntimeLoader.class.getClassLoader() );
+		}
+
+		protected synchronized Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException {
+			if( name.startsWith( Noise.class.getPackage().getName() + "." ) ) {
+				Class<?> loaded = findLoadedClass( name );
+				if( loaded == null ) {
+					try {
+						byte[] bytes = readBytes( getParent().getResourceAsStream( name.replace( '.', '/' ) + ".class" ) );
+						loaded = defineClass( name, bytes, 0, bytes.length );
+					}
+					catch( IOException e ) {
+						throw new ClassNotFoundException( name, e );
+					}
+				}
+				return loaded;
+			}
+			return super.loadClass( name, resolve );
+		}
+	}
+
+	/**
+	 * Loads the classes compiled from a fixture.
+	 */
+	private static class FixtureLoader extends ClassLoader {
+
+		private File	_directory	= null;
+
+		FixtureLoader( File directory ) {
+			super( FixtureLoader.class.getClassLoader() );
+			_directory = directory;
+		}
+
+		protected Class<?> findClass( String name ) throws ClassNotFoundException {
+			try {
+				byte[] bytes = readBytes( new FileInputStream( new File( _directory, name.replace( '.', '/' ) + ".class" ) ) );
+				return defineClass( name, bytes, 0, bytes.length );
+			}
+			catch( IOException e ) {
+				throw new ClassNotFoundException( name, e );
+			}
+		}
+	}
+
+	/**
+	 * Loads the rewritten sample class instead of the original one.
+	 */
+	private static class SampleLoader extends ClassLoader {
+
+		private byte[]	_bytes	= null;
+
+		SampleLoader( byte[] bytes ) {
+			super( SampleLoader.class.getClassLoader() );
+			_bytes = bytes;
+		}
+
+		protected synchronized Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException {
+			if( name.equals( Sample.class.getName() ) ) {
+				Class<?> loaded = findLoadedClass( name );
+				if( loaded == null ) {
+					loaded = defineClass( name, _bytes, 0, _bytes.length );
+				}
+				return loaded;
+			}
+			return super.loadClass( name, resolve );
+		}
+	}
+
+	/**
+	 * The class that is rewritten, it has branches, switches, handlers and uninitialized objects around
+	 * the constructs so their offsets all have to move.
+	 */
+	public static class Sample {
+
+		public Object			_monitor	= new Object();
+		public ReentrantLock	_lock		= new ReentrantLock();
+
+		public String run( int n ) {
+			CountDownLatch latch = new CountDownLatch( 1 );
+			StringBuilder result = new StringBuilder( n > 5 ? "big:" : "small:" );
+			for( int i = 0; i < n; i++ ) {
+				synchronized( _monitor ) {
+					switch( i ) {
+						case 0:
+						case 1:
+						case 2:
+							result.append( 'a' );
+							break;
+						case 100:
+							result.append( 'z' );
+							break;
+						default:
+							result.append( 'b' );
+					}
+				}
+			}
+			switch( n ) {
+				case -1:
+					result.append( "neg" );
+					break;
+				case 1000:
+					result.append( "big" );
+					break;
+			}
+			_lock.lock();
+			try {
+				result.append( Integer.parseInt( n % 2 == 0 ? "even" : "1" ) );
+			}
+			catch( NumberFormatException e ) {
+				result.append( "caught" );
+			}
+			finally {
+				_lock.unlock();
+			}
+			latch.countDown();
+			return result.toString() + latch.getCount();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package ca.sqrlab.eclipticon.test;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.InstrumentationPoint;
+import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.instrumentation.NoiseControl;
+import ca.sqrlab.eclipticon.runtime.ControlFile;
+import ca.sqrlab.eclipticon.runtime.Noise;
+
+public class ControlFileTest extends TestCase {
+
+	private File	_file	= null;
+
+	@Before
+	public void setUp() throws Exception {
+		_file = File.createTempFile( "eclipticon", ".control" );
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		_file.delete();
+	}
+
+	@Test
+	public void testCreate() throws Exception {
+		ControlFile control = ControlFile.create( _file, 8 );
+		int[] overrides = control.readOverrides();
+
+		assertEquals( 8, control.getCapacity() );
+		assertEquals( 0, overrides[ 0 ] );
+		assertEquals( 5, overrides.length );
+		for( int i = 1; i < 5; i++ ) {
+			assertEquals( ControlFile.UNCHANGED, overrides[ i ] );
+		}
+	}
+
+	@Test
+	public void testSetPoint() throws Exception {
+		ControlFile control = ControlFile.create( _file, 2 );
+		assertTrue( control.setPoint( "a", 0, 10, 20, 30 ) );
+		assertTrue( control.setPoint( "b", 1, 50, ControlFile.UNCHANGED, ControlFile.UNCHANGED ) );
+		assertTrue( control.setPoint( "a", 0, 11, 21, 31 ) );
+		assertFalse( control.setPoint( "c", 0, 0, 0, 0 ) );
+
+		// A reader opening the file sees every write, and the generation is even once a write is done
+		int[] overrides = ControlFile.open( _file, false ).readOverrides();
+		assertEquals( 0, overrides[ 0 ] % 2 );
+		assertEquals( 15, overrides.length );
+		assertEquals( ControlFile.hashKey( "a" ), overrides[ 5 ] );
+		assertEquals( 11, overrides[ 7 ] );
+		assertEquals( ControlFile.hashKey( "b" ), overrides[ 10 ] );
+		assertEquals( ControlFile.UNCHANGED, overrides[ 13 ] );
+	}
+
+	@Test
+	public void testGlobalAndClear() throws Exception {
+		ControlFile control = ControlFile.create( _file, 4 );
+		int generation = control.getGeneration();
+		control.setGlobal( ControlFile.UNCHANGED, 5, 1, 2 );
+		assertTrue( control.getGeneration() > generation );
+
+		int[] overrides = control.readOverrides();
+		assertEquals( 5, overrides[ 2 ] );
+		assertEquals( 2, overrides[ 4 ] );
+
+		control.setPoint( "a", 0, 0, 0, 0 );
+		control.clear();
+		overrides = control.readOverrides();
+		assertEquals( 5, overrides.length );
+		assertEquals( ControlFile.UNCHANGED, overrides[ 2 ] );
+	}
+
+	@Test
+	public void testNotAControlFile() throws Exception {
+		assertNull( ControlFile.open( _file, false ) );
+	}
+
+	@Test
+	public void testNoiseControlUpdate() throws Exception {
+		SourceFile sourceFile = new SourceFile( new Path( "/tmp/Example.java" ) );
+		sourceFile.setPackageAndImports( "package a.b;\n" );
+		sourceFile.addInterestingPoint( new InstrumentationPoint( 20, 0, Constants.LATCH, Constants.LATCH_AWAIT,
+				Constants.NOISE_YIELD, 40, 0, 0 ) );
+		sourceFile.addInterestingPoint( new InstrumentationPoint( 10, 0, Constants.SYNCHRONIZE,
+				Constants.SYNCHRONIZE_BLOCK, Constants.NOISE_SLEEP, 30, 5, 9 ) );
+		ArrayList<SourceFile> sources = new ArrayList<SourceFile>();
+		sources.add( sourceFile );
+
+		assertTrue( new NoiseControl( _file ).update( sources, null ) );
+
+		// The points are keyed by their order in the point table and by where the agent finds them
+		int[] overrides = ControlFile.open( _file, false ).readOverrides();
+		assertEquals( 5 + 4 * 5, overrides.length );
+		assertEquals( ControlFile.hashKey( Noise.makeKey( "a/b/Example.java", 0 ) ), overrides[ 5 ] );
+		assertEquals( 30, overrides[ 7 ] );
+		assertEquals( ControlFile.hashKey( "a/b/Example.java:10:synchronized:0" ), overrides[ 10 ] );
+		assertEquals( ControlFile.hashKey( Noise.makeKey( "a/b/Example.java", 1 ) ), overrides[ 15 ] );
+		assertEquals( 40, overrides[ 17 ] );
+	}
+}
@@ -92,6 +92,20 @@ public class FileParserTest extends TestCase {
 
 		assertEquals( true, true );
 	}
+
+	@Test
+	public void testLineCount() {
+
+		// Set the source file up
+		_sourceFile = new SourceFile( new Path( new File( System.getProperty( "user.dir" )
+				+ "/src/ca/sqrlab/eclipticon/test/testfiles/test1.txt" ).getPath() ) );
+		assertEquals( -1, _sourceFile.getLineCount() );
+
+		// The line count is found while looking for the interesting points
+		_fileParser.findInterestPoints( _sourceFile );
+
+		assertEquals( 12, _sourceFile.getLineCount() );
+	}
 	
 	@Test
 	public void testFindInterestPointsMulitple() {
@@ -206,7 +220,10 @@ public class FileParserTest extends TestCase {
 		// Build up expected results
 		_interestingPoints = new ArrayList<InterestPoint>();
 		_interestingPoints.add( new InterestPoint( 10, 0, Constants.SYNCHRONIZE, "methodCall" ) );
+		_interestingPoints.add( new InterestPoint( 13, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD ) );
+		_interestingPoints.add( new InterestPoint( 17, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD ) );
 
+		assertEquals( _interestingPoints.size(), _sourceFile.getInterestingPoints().size() );
 		compareResults();
 
 		assertEquals( true, true );
@@ -252,6 +269,29 @@ public class FileParserTest extends TestCase {
 		assertEquals( true, true );
 	}
 	
+	@Test
+	public void testFindInterestPointsSynchronizedMethodOnTwoLines() {
+
+		// Set the source file up
+		_sourceFile = new SourceFile( new Path( new File( System.getProperty( "user.dir" )
+				+ "/src/ca/sqrlab/eclipticon/test/testfiles/test14.txt" ).getPath() ) );
+		ArrayList<SourceFile> sources = new ArrayList<SourceFile>();
+		sources.add( _sourceFile );
+		PreParser preParser = new PreParser();
+		preParser.findSynchronizedMethods( sources );
+
+		// Find the interesting points
+		_fileParser.findInterestPoints( _sourceFile );
+
+		// The split declaration gives one point, and the method after it is still found on its own line
+		_interestingPoints = new ArrayList<InterestPoint>();
+		_interestingPoints.add( new InterestPoint( 6, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD ) );
+		_interestingPoints.add( new InterestPoint( 11, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD ) );
+
+		assertEquals( _interestingPoints.size(), _sourceFile.getInterestingPoints().size() );
+		compareResults();
+	}
+	
 //	@Test
 //	public void testCheckIfBackupExists() {
 //		fail( "Not yet implemented" ); // TODO
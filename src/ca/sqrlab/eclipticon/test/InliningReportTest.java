@@ -0,0 +1,108 @@
+package ca.sqrlab.eclipticon.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.instrumentation.InliningReport;
+
+public class InliningReportTest extends TestCase {
+
+	private File			_testFiles	= null;
+	private InliningReport	_report		= null;
+
+	@Before
+	public void setUp() throws Exception {
+		_testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+
+		// The runtime library is on the class path of the tests
+		_report = new InliningReport( System.getProperty( "java.class.path" ), null );
+	}
+
+	@Test
+	public void testSmallMethodPushedPastLimit() throws IOException {
+
+		// The report needs a compiler, which a JRE doesn't have
+		if( ToolProvider.getSystemJavaCompiler() == null ) {
+			return;
+		}
+
+		ArrayList<InliningReport.Crossing> crossings = _report.compare( "test12.txt", readFile( new File( _testFiles,
+				"test12.txt" ) ), readFile( new File( _testFiles, "test12_solution.txt" ) ) );
+
+		// Only the synchronized block of the enum grows past the limit, the latch method stays small
+		assertEquals( 1, crossings.size() );
+		InliningReport.Crossing crossing = crossings.get( 0 );
+		assertEquals( "ca.sqrlab.eclipticon.test.testfiles.testTwelve.next()I", crossing.getMethod() );
+		assertEquals( Constants.INLINE_MAX_SIZE, crossing.getLimit() );
+		assertEquals( "MaxInlineSize", crossing.getLimitName() );
+		assertTrue( crossing.getBefore() <= Constants.INLINE_MAX_SIZE );
+		assertTrue( crossing.getAfter() > Constants.INLINE_MAX_SIZE );
+
+		// Its only point has to go
+		assertEquals( 1, crossing.getSuggestions().size() );
+		assertEquals( 0, crossing.getSuggestions().get( 0 ).getIndex() );
+		assertEquals( 12, crossing.getSuggestions().get( 0 ).getLine() );
+		assertTrue( crossing.getSuggestions().get( 0 ).isDrop() );
+	}
+
+	@Test
+	public void testLargeMethodNotReported() throws IOException {
+		if( ToolProvider.getSystemJavaCompiler() == null ) {
+			return;
+		}
+
+		// The method was already past MaxInlineSize and stays under FreqInlineSize
+		ArrayList<InliningReport.Crossing> crossings = _report.compare( "test9.txt", readFile( new File( _testFiles,
+				"test9.txt" ) ), readFile( new File( _testFiles, "test9_solution.txt" ) ) );
+		assertTrue( crossings.isEmpty() );
+	}
+
+	@Test
+	public void testPointWithTwoPositionsConverted() throws IOException {
+		if( ToolProvider.getSystemJavaCompiler() == null ) {
+			return;
+		}
+
+		// The same point before and after the call, the second copy alone brings the method back
+		String original = "class A { void f( java.util.concurrent.locks.Lock l ) { l.unlock(); l.unlock(); l.unlock(); } }";
+		String noise = "if(ca.sqrlab.eclipticon.runtime.NoiseSwitch.ON)ca.sqrlab.eclipticon.runtime.Noise.point(_____EclipticonNoise_A_____.POINTS+0);";
+		String instrumented = "class A { void f( java.util.concurrent.locks.Lock l ) { " + noise + "l.unlock();" + noise
+				+ " l.unlock(); l.unlock(); } }\n"
+				+ "final class _____EclipticonNoise_A_____{static final int POINTS=ca.sqrlab.eclipticon.runtime.Noise.register(\"A.java\",new int[]{0,40,1,10});}\n";
+
+		ArrayList<InliningReport.Crossing> crossings = _report.compare( "A.java", original, instrumented );
+		assertEquals( 1, crossings.size() );
+		assertEquals( 1, crossings.get( 0 ).getSuggestions().size() );
+		assertFalse( crossings.get( 0 ).getSuggestions().get( 0 ).isDrop() );
+	}
+
+	@Test
+	public void testSourceThatDoesNotCompile() {
+		if( ToolProvider.getSystemJavaCompiler() == null ) {
+			return;
+		}
+		assertNull( _report.compare( "B.java", "class B {", "class B {" ) );
+	}
+
+	private String readFile( File file ) throws IOException {
+		BufferedReader bufReader = new BufferedReader( new FileReader( file ) );
+		String line = null;
+		String text = "";
+		while( ( line = bufReader.readLine() ) != null ) {
+			text = text.concat( line + "\n" );
+		}
+		bufReader.close();
+		return text;
+	}
+}
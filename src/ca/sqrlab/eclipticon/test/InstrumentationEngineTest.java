@@ -0,0 +1,118 @@
+package ca.sqrlab.eclipticon.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.instrumentation.BackupStore;
+import ca.sqrlab.eclipticon.instrumentation.InstrumentationEngine;
+import ca.sqrlab.eclipticon.instrumentation.InstrumentationSummary;
+import ca.sqrlab.eclipticon.instrumentation.Instrumentor;
+
+public class InstrumentationEngineTest extends TestCase {
+
+	private File					_directory	= null;
+	private ArrayList<SourceFile>	_sources	= new ArrayList<SourceFile>();
+	private InstrumentationEngine	_engine		= null;
+
+	@Before
+	public void setUp() throws Exception {
+		_directory = new File( System.getProperty( "java.io.tmpdir" ), "eclipticon_engine_test" );
+		_directory.mkdirs();
+
+		// Make a few copies of a test file to work on
+		File testFile = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles/test1.txt" );
+		for( int i = 0; i < 3; i++ ) {
+			File copy = new File( _directory, "Test" + i + ".java" );
+			copyFile( testFile, copy );
+			_sources.add( new SourceFile( new Path( copy.getPath() ) ) );
+		}
+
+		_engine = new InstrumentationEngine( new Instrumentor(), 2 );
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for( SourceFile sf : _sources ) {
+			BackupStore.getDefault().restore( sf.getPath().toFile() );
+		}
+		for( File file : _directory.listFiles() ) {
+			file.delete();
+		}
+		_directory.delete();
+	}
+
+	@Test
+	public void testInstrumentAndRevert() {
+		InstrumentationSummary summary = _engine.run( _sources, Constants.OPERATION_INSTRUMENT_MANUAL,
+				new NullProgressMonitor() );
+
+		assertEquals( 3, summary.getFiles() );
+		assertTrue( summary.getFailedFiles().isEmpty() );
+		for( SourceFile sf : _sources ) {
+			assertTrue( BackupStore.getDefault().hasBackup( sf.getPath().toFile() ) );
+		}
+
+		summary = _engine.run( _sources, Constants.OPERATION_REVERT, new NullProgressMonitor() );
+
+		assertEquals( 3, summary.getFiles() );
+		for( SourceFile sf : _sources ) {
+			assertFalse( BackupStore.getDefault().hasBackup( sf.getPath().toFile() ) );
+		}
+	}
+
+	@Test
+	public void testUnchangedFilesAreCountedApart() {
+		_engine.run( _sources, Constants.OPERATION_INSTRUMENT_MANUAL, new NullProgressMonitor() );
+
+		// Nothing changed, so the files are left in place and not counted as instrumented
+		InstrumentationSummary summary = _engine.run( _sources, Constants.OPERATION_INSTRUMENT_MANUAL,
+				new NullProgressMonitor() );
+		assertEquals( 0, summary.getFiles() );
+		assertEquals( 3, summary.getUnchangedFiles() );
+		assertEquals( 0, summary.getPoints() );
+		assertTrue( summary.toString().contains( "3 file(s) unchanged" ) );
+	}
+
+	@Test
+	public void testFailureIsIsolated() {
+		SourceFile missing = new SourceFile( new Path( new File( _directory, "Missing.java" ).getPath() ) );
+		_sources.add( 1, missing );
+
+		InstrumentationSummary summary = _engine.run( _sources, Constants.OPERATION_INSTRUMENT_MANUAL,
+				new NullProgressMonitor() );
+
+		assertEquals( 3, summary.getFiles() );
+		assertEquals( 1, summary.getFailedFiles().size() );
+		assertSame( missing, summary.getFailedFiles().get( 0 ) );
+	}
+
+	private void copyFile( File from, File to ) throws IOException {
+		FileInputStream in = new FileInputStream( from );
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream( to );
+			FileChannel source = in.getChannel();
+			out.getChannel().transferFrom( source, 0, source.size() );
+		}
+		finally {
+			in.close();
+			if( out != null ) {
+				out.close();
+			}
+		}
+	}
+}
@@ -55,4 +55,14 @@ public class InstrumentationPointTest extends TestCase {
 	@Test public void testGetHigh() {
 		assertEquals(_high, _actual.getHigh());
 	}
+
+	@Test public void testIsHold() {
+		assertFalse(_actual.isHold());
+		_actual.setPosition(Constants.POSITION_HOLD);
+		assertTrue(_actual.isHold());
+
+		InstrumentationPoint tryAcquire = new InstrumentationPoint(_line, _instance, _construct, Constants.SEMAPHORE_TRYACQUIRE, _type, _prob, _low, _high);
+		tryAcquire.setPosition(Constants.POSITION_HOLD);
+		assertFalse(tryAcquire.isHold());
+	}
 }
\ No newline at end of file
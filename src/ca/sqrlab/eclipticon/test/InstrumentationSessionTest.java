@@ -0,0 +1,96 @@
+package ca.sqrlab.eclipticon.test;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.AutomaticConfiguration;
+import ca.sqrlab.eclipticon.instrumentation.InstrumentationSession;
+
+public class InstrumentationSessionTest extends TestCase {
+
+	private AutomaticConfiguration	_autoConfig	= null;
+	private InstrumentationSession	_session	= null;
+
+	@Before
+	public void setUp() throws Exception {
+		_autoConfig = new AutomaticConfiguration();
+		_autoConfig.setLowDelayRange( 10 );
+		_autoConfig.setHighDelayRange( 20 );
+		_autoConfig.setSleepProbability( 30 );
+		_autoConfig.setYieldProbability( 40 );
+		_autoConfig.setSynchronizeProbability( 50 );
+		_autoConfig.setBarrierProbability( 60 );
+		_autoConfig.setLatchProbability( 70 );
+		_autoConfig.setSemaphoreProbability( 80 );
+		_session = new InstrumentationSession( _autoConfig );
+	}
+
+	@Test
+	public void testSnapshot() {
+		assertEquals( 10, _session.getLowDelayRange() );
+		assertEquals( 20, _session.getHighDelayRange() );
+		assertEquals( 30, _session.getSleepProbability() );
+		assertEquals( 40, _session.getYieldProbability() );
+		assertEquals( 50, _session.getSynchronizeProbability() );
+		assertEquals( 60, _session.getBarrierProbability() );
+		assertEquals( 70, _session.getLatchProbability() );
+		assertEquals( 80, _session.getSemaphoreProbability() );
+	}
+
+	@Test
+	public void testSnapshotIsUnchangedByConfiguration() {
+		_autoConfig.setLowDelayRange( 11 );
+		_autoConfig.setBarrierProbability( 99 );
+
+		assertEquals( 10, _session.getLowDelayRange() );
+		assertEquals( 60, _session.getBarrierProbability() );
+	}
+
+	@Test
+	public void testNoiseBudget() {
+		assertNull( _session.getNoiseBudget() );
+
+		_autoConfig.setBudgetType( Constants.BUDGET_TOTAL );
+		_autoConfig.setBudget( 250 );
+		assertEquals( "250", new InstrumentationSession( _autoConfig ).getNoiseBudget() );
+
+		_autoConfig.setBudgetType( Constants.BUDGET_RUN_TIME );
+		_autoConfig.setBudget( 10 );
+		_autoConfig.setBudgetYield( 0 );
+		assertEquals( "10%:none", new InstrumentationSession( _autoConfig ).getNoiseBudget() );
+	}
+
+	@Test
+	public void testHoldBudget() {
+		_autoConfig.setHoldBudget( 100 );
+		assertNull( new InstrumentationSession( _autoConfig ).getHoldBudget() );
+
+		_autoConfig.setBudgetType( Constants.BUDGET_TOTAL );
+		_autoConfig.setBudget( 250 );
+		assertEquals( "100", new InstrumentationSession( _autoConfig ).getHoldBudget() );
+
+		_autoConfig.setBudgetType( Constants.BUDGET_RUN_TIME );
+		_autoConfig.setHoldBudget( 5 );
+		_autoConfig.setBudgetYield( 0 );
+		assertEquals( "5%:none", new InstrumentationSession( _autoConfig ).getHoldBudget() );
+
+		_autoConfig.setHoldBudget( 0 );
+		assertNull( new InstrumentationSession( _autoConfig ).getHoldBudget() );
+	}
+
+	@Test
+	public void testNoiseDecay() {
+		assertNull( _session.getNoiseDecay() );
+
+		_autoConfig.setDecaySchedule( Constants.DECAY_LOG );
+		_autoConfig.setDecay( 1000 );
+		assertEquals( "log:1000", new InstrumentationSession( _autoConfig ).getNoiseDecay() );
+
+		_autoConfig.setDecaySchedule( Constants.DECAY_BUCKET );
+		_autoConfig.setDecay( 0 );
+		assertNull( new InstrumentationSession( _autoConfig ).getNoiseDecay() );
+	}
+}
@@ -0,0 +1,50 @@
+package ca.sqrlab.eclipticon.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sqrlab.eclipticon.instrumentation.InstrumentedWriter;
+
+public class InstrumentedWriterTest extends TestCase {
+
+	private StringWriter	_out	= null;
+
+	@Before
+	public void setUp() throws Exception {
+		_out = new StringWriter();
+	}
+
+	@Test
+	public void testWriteThrough() throws IOException {
+		InstrumentedWriter writer = new InstrumentedWriter( _out, null );
+		writer.write( "package a;" );
+		writer.endLine();
+		writer.write( "public class A {", 0, 16 );
+		writer.endLine();
+		writer.close();
+
+		assertEquals( "package a;\npublic class A {\n", _out.toString() );
+	}
+
+	@Test
+	public void testTrailerAfterSource() throws IOException {
+		InstrumentedWriter writer = new InstrumentedWriter( _out, "class Y{}" );
+		writer.write( "package a;" );
+		writer.endLine();
+		writer.write( "public enum Alpha" );
+		writer.endLine();
+		writer.write( "{" );
+		writer.endLine();
+		writer.write( "}" );
+		writer.endLine();
+		writer.close();
+		writer.close();
+
+		assertEquals( "package a;\npublic enum Alpha\n{\n}\nclass Y{}\n", _out.toString() );
+	}
+}
@@ -3,12 +3,17 @@ package ca.sqrlab.eclipticon.test;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 
 import junit.framework.TestCase;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.MultiTextEdit;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -18,6 +23,7 @@ import org.junit.Test;
 import ca.sqrlab.eclipticon.Constants;
 import ca.sqrlab.eclipticon.data.InstrumentationPoint;
 import ca.sqrlab.eclipticon.data.SourceFile;
+import ca.sqrlab.eclipticon.instrumentation.BackupStore;
 import ca.sqrlab.eclipticon.instrumentation.Instrumentor;
 
 public class InstrumentorTest extends TestCase {
@@ -124,6 +130,44 @@ public class InstrumentorTest extends TestCase {
 		assertEquals( testSolution.trim(), testResult.trim() );
 	}
 
+	@Test
+	public void testInstrumentMultipleOutOfOrder() throws IOException {
+
+		// Set the source file up
+		_sourceFile = new SourceFile( new Path( new File( System.getProperty( "user.dir" )
+				+ "/src/ca/sqrlab/eclipticon/test/testfiles/test2.txt" ).getPath() ) );
+		_sources.add( _sourceFile );
+
+		// Add package and imports to source file
+		_sourceFile.setPackageAndImports( _packageAndImports );
+
+		// Add the instrumentation points, the later line first
+		_sourceFile.addInterestingPoint( new InstrumentationPoint( 11, 0, Constants.LATCH, Constants.LATCH_COUNTDOWN,
+				Constants.NOISE_SLEEP, 2, 22, 222 ) );
+		_sourceFile.addInterestingPoint( new InstrumentationPoint( 10, 0, Constants.BARRIER, Constants.BARRIER_AWAIT,
+				Constants.NOISE_SLEEP, 1, 11, 111 ) );
+
+		// Manual Instrument the source file
+		_instrumentor.instrument( _sourceFile, false );
+
+		// Create a string to represent the results and the expected solution
+		BufferedReader bufReader = new BufferedReader( new FileReader( _sourceFile.getPath().toFile() ) );
+		String line = null;
+		String testResult = "";
+		String testSolution = "";
+		while( ( line = bufReader.readLine() ) != null ) {
+			testResult = testResult.concat( line + "\n" );
+		}
+
+		bufReader = new BufferedReader( new FileReader( new File( System.getProperty( "user.dir" )
+				+ "/src/ca/sqrlab/eclipticon/test/testfiles/test2_solution.txt" ) ) );
+		while( ( line = bufReader.readLine() ) != null ) {
+			testSolution = testSolution.concat( line + "\n" );
+		}
+
+		assertEquals( testSolution.trim(), testResult.trim() );
+	}
+
 	@Test
 	public void testInstrumentMultipleOnSameLine() throws IOException {
 
@@ -343,4 +387,309 @@ public class InstrumentorTest extends TestCase {
 
 		assertEquals( testSolution.trim(), testResult.trim() );
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testInstrumentAfterConstructs() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test9.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+
+		// The noise goes after the block, statements that span lines, and not after the return
+		_sourceFile.addInterestingPoint( makePoint( 11, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_BLOCK,
+				Constants.POSITION_BOTH ) );
+		_sourceFile.addInterestingPoint( makePoint( 12, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_LOCK,
+				Constants.POSITION_AFTER ) );
+		_sourceFile.addInterestingPoint( makePoint( 14, 0, Constants.LATCH, Constants.LATCH_COUNTDOWN,
+				Constants.POSITION_AFTER ) );
+		_sourceFile.addInterestingPoint( makePoint( 16, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_UNLOCK,
+				Constants.POSITION_AFTER ) );
+		_sourceFile.addInterestingPoint( makePoint( 16, 0, Constants.LATCH, Constants.LATCH_AWAIT,
+				Constants.POSITION_BEFORE ) );
+		_sourceFile.addInterestingPoint( makePoint( 17, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_TRYLOCK,
+				Constants.POSITION_AFTER ) );
+
+		// Manual Instrument the source file
+		_instrumentor.instrument( _sourceFile, false );
+		assertEquals( readFile( new File( testFiles, "test9_solution.txt" ) ), readFile( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testInstrumentSynchronizedMethodDeclaration() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test10.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+
+		// Each body is wrapped in a try with the noise at its start and in its finally, whatever the returns
+		_sourceFile.addInterestingPoint( makePoint( 11, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD,
+				Constants.POSITION_BEFORE ) );
+		_sourceFile.addInterestingPoint( makePoint( 21, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD,
+				Constants.POSITION_BEFORE ) );
+
+		// The returns of the anonymous class and the lambda stay as they are
+		_sourceFile.addInterestingPoint( makePoint( 23, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD,
+				Constants.POSITION_BEFORE ) );
+
+		// Manual Instrument the source file
+		_instrumentor.instrument( _sourceFile, false );
+		assertEquals( readFile( new File( testFiles, "test10_solution.txt" ) ), readFile( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testInstrumentConstructsInExpressions() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test11.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+
+		// The receivers are wrapped where a statement can't go, and the body without braces gets them
+		_sourceFile.addInterestingPoint( makePoint( 11, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_NEWCONDITION,
+				Constants.POSITION_BOTH ) );
+		_sourceFile.addInterestingPoint( makePoint( 16, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_TRYLOCK,
+				Constants.POSITION_BOTH ) );
+		_sourceFile.addInterestingPoint( makePoint( 19, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_TRYLOCK,
+				Constants.POSITION_BOTH ) );
+		_sourceFile.addInterestingPoint( makePoint( 22, 0, Constants.SEMAPHORE, Constants.SEMAPHORE_TRYACQUIRE,
+				Constants.POSITION_BOTH ) );
+		_sourceFile.addInterestingPoint( makePoint( 25, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_UNLOCK,
+				Constants.POSITION_BOTH ) );
+		_sourceFile.addInterestingPoint( makePoint( 27, 0, Constants.SEMAPHORE, Constants.SEMAPHORE_RELEASE,
+				Constants.POSITION_BOTH ) );
+
+		// Nothing can go in front of a call to another constructor, and the lambda gets no noise after its declaration
+		_sourceFile.addInterestingPoint( makePoint( 38, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_TRYLOCK,
+				Constants.POSITION_BOTH ) );
+		_sourceFile.addInterestingPoint( makePoint( 46, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_UNLOCK,
+				Constants.POSITION_BOTH ) );
+
+		// Manual Instrument the source file
+		_instrumentor.instrument( _sourceFile, false );
+		assertEquals( readFile( new File( testFiles, "test11_solution.txt" ) ), readFile( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testInstrumentEnumAndSecondType() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test12.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+
+		// The point table is in a class of its own, which the enum and the second type both reach
+		_sourceFile.addInterestingPoint( makePoint( 12, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_BLOCK,
+				Constants.POSITION_BEFORE ) );
+		_sourceFile.addInterestingPoint( makePoint( 21, 0, Constants.LATCH, Constants.LATCH_COUNTDOWN,
+				Constants.POSITION_BEFORE ) );
+
+		// Manual Instrument the source file
+		_instrumentor.instrument( _sourceFile, false );
+		assertEquals( readFile( new File( testFiles, "test12_solution.txt" ) ), readFile( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testInstrumentHold() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test13.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+
+		// The monitors are held longer at both ends, the locks and permits after they are taken and before
+		// they are given back, and the tryLock has its noise before it
+		_sourceFile.addInterestingPoint( makePoint( 14, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_BLOCK,
+				Constants.POSITION_HOLD ) );
+		_sourceFile.addInterestingPoint( makePoint( 21, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD,
+				Constants.POSITION_HOLD ) );
+		_sourceFile.addInterestingPoint( makePoint( 26, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_LOCK,
+				Constants.POSITION_HOLD ) );
+		_sourceFile.addInterestingPoint( makePoint( 31, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_UNLOCK,
+				Constants.POSITION_HOLD ) );
+		_sourceFile.addInterestingPoint( makePoint( 36, 0, Constants.SEMAPHORE, Constants.SEMAPHORE_ACQUIRE,
+				Constants.POSITION_HOLD ) );
+		_sourceFile.addInterestingPoint( makePoint( 38, 0, Constants.SEMAPHORE, Constants.SEMAPHORE_RELEASE,
+				Constants.POSITION_HOLD ) );
+		_sourceFile.addInterestingPoint( makePoint( 42, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_TRYLOCK,
+				Constants.POSITION_HOLD ) );
+
+		// Manual Instrument the source file
+		_instrumentor.instrument( _sourceFile, false );
+		assertEquals( readFile( new File( testFiles, "test13_solution.txt" ) ), readFile( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testInstrumentSynchronizedMethodOnTwoLines() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test14.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+
+		// The body of the split declaration opens on the line after the point
+		_sourceFile.addInterestingPoint( makePoint( 6, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD,
+				Constants.POSITION_BEFORE ) );
+		_sourceFile.addInterestingPoint( makePoint( 11, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_METHOD,
+				Constants.POSITION_BEFORE ) );
+
+		// Manual Instrument the source file
+		_instrumentor.instrument( _sourceFile, false );
+		assertEquals( readFile( new File( testFiles, "test14_solution.txt" ) ), readFile( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testInstrumentAgainOnlyWhenChanged() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test1.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+		InstrumentationPoint point = new InstrumentationPoint( 10, 0, Constants.BARRIER, Constants.BARRIER_AWAIT,
+				Constants.NOISE_SLEEP, 1, 11, 111 );
+		_sourceFile.addInterestingPoint( point );
+		assertEquals( 1, _instrumentor.instrument( _sourceFile, false ) );
+		String instrumented = readFile( _sourceFile.getPath().toFile() );
+
+		// The same plan leaves the instrumented file in place
+		assertEquals( Constants.FILE_UNCHANGED, _instrumentor.instrument( _sourceFile, false ) );
+		assertEquals( instrumented, readFile( _sourceFile.getPath().toFile() ) );
+
+		// A changed parameter instruments the original again, without reverting first
+		point.setProbability( 50 );
+		assertEquals( 1, _instrumentor.instrument( _sourceFile, false ) );
+		assertFalse( instrumented.equals( readFile( _sourceFile.getPath().toFile() ) ) );
+		assertEquals( instrumented.replace( "{0,1,11,111}", "{0,50,11,111}" ), readFile( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testInstrumentShadowOutput() throws IOException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		File shadowRoot = new File( System.getProperty( "java.io.tmpdir" ), "eclipticon_shadow_test" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test1.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+		_sourceFile.addInterestingPoint( new InstrumentationPoint( 10, 0, Constants.BARRIER, Constants.BARRIER_AWAIT,
+				Constants.NOISE_SLEEP, 1, 11, 111 ) );
+
+		// Instrument into the shadow tree
+		_instrumentor.setShadowOutput( testFiles, shadowRoot );
+		assertEquals( 1, _instrumentor.instrument( _sourceFile, false ) );
+		_instrumentor.saveShadowIndex();
+
+		File shadowFile = new File( shadowRoot, "test1.txt" );
+		try {
+			// The original is untouched and the shadow copy is instrumented
+			assertFalse( BackupStore.getDefault().hasBackup( _sourceFile.getPath().toFile() ) );
+			assertEquals( readFile( new File( testFiles, "test1_solution.txt" ) ), readFile( shadowFile ) );
+			assertFalse( readFile( _sourceFile.getPath().toFile() ).equals( readFile( shadowFile ) ) );
+
+			// Nothing changed, so a new run skips the file
+			Instrumentor instrumentor = new Instrumentor();
+			instrumentor.setShadowOutput( testFiles, shadowRoot );
+			assertEquals( Constants.FILE_UNCHANGED, instrumentor.instrument( _sourceFile, false ) );
+
+			// The plan changed, so the file is generated again
+			_sourceFile.addInterestingPoint( new InstrumentationPoint( 11, 0, Constants.BARRIER, Constants.BARRIER_AWAIT,
+					Constants.NOISE_SLEEP, 1, 11, 111 ) );
+			assertEquals( 2, instrumentor.instrument( _sourceFile, false ) );
+		}
+		finally {
+			shadowFile.delete();
+			new File( shadowRoot, Constants.SHADOW_INDEX_FILE ).delete();
+			shadowRoot.delete();
+		}
+	}
+
+	@Test
+	public void testCreateEdits() throws IOException, BadLocationException {
+
+		// Set the source file up
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		_sourceFile = new SourceFile( new Path( new File( testFiles, "test2.txt" ).getPath() ) );
+		_sourceFile.setPackageAndImports( _packageAndImports );
+		_sourceFile.addInterestingPoint( new InstrumentationPoint( 10, 0, Constants.BARRIER, Constants.BARRIER_AWAIT,
+				Constants.NOISE_SLEEP, 1, 11, 111 ) );
+		_sourceFile.addInterestingPoint( new InstrumentationPoint( 11, 0, Constants.LATCH, Constants.LATCH_COUNTDOWN,
+				Constants.NOISE_SLEEP, 2, 22, 222 ) );
+
+		// The edits give the same result as writing the file, without touching the file
+		MultiTextEdit edits = _instrumentor.createEdits( _sourceFile, false );
+		Document document = new Document( readFile( _sourceFile.getPath().toFile() ) );
+		edits.apply( document );
+
+		assertEquals( 3, edits.getChildrenSize() );
+		assertEquals( readFile( new File( testFiles, "test2_solution.txt" ) ), document.get().trim() );
+		assertFalse( BackupStore.getDefault().hasBackup( _sourceFile.getPath().toFile() ) );
+	}
+
+	@Test
+	public void testApplyEditsAndRevert() throws IOException, CoreException {
+
+		// The edits are applied to a copy of the source file, so a failure can't leave the fixture instrumented
+		File testFiles = new File( System.getProperty( "user.dir" ) + "/src/ca/sqrlab/eclipticon/test/testfiles" );
+		File directory = new File( System.getProperty( "java.io.tmpdir" ), "eclipticon_edits_test" );
+		directory.mkdirs();
+		File copy = new File( directory, "test2.txt" );
+		String original = readFile( new File( testFiles, "test2.txt" ) );
+		writeFile( copy, original + "\n" );
+		try {
+			_sourceFile = new SourceFile( new Path( copy.getPath() ) );
+			_sourceFile.setPackageAndImports( _packageAndImports );
+			_sourceFile.addInterestingPoint( new InstrumentationPoint( 10, 0, Constants.BARRIER, Constants.BARRIER_AWAIT,
+					Constants.NOISE_SLEEP, 1, 11, 111 ) );
+			_sourceFile.addInterestingPoint( new InstrumentationPoint( 11, 0, Constants.LATCH, Constants.LATCH_COUNTDOWN,
+					Constants.NOISE_SLEEP, 2, 22, 222 ) );
+
+			// The file buffer writes the same result as instrumenting the file
+			MultiTextEdit edits = _instrumentor.createEdits( _sourceFile, false );
+			assertTrue( _instrumentor.applyEdits( _sourceFile, false, edits, null ) );
+			assertEquals( readFile( new File( testFiles, "test2_solution.txt" ) ), readFile( copy ) );
+			assertTrue( BackupStore.getDefault().hasBackup( copy ) );
+
+			// The plan was recorded, so the same plan leaves the file in place
+			assertFalse( _instrumentor.applyEdits( _sourceFile, false, edits, null ) );
+			assertEquals( Constants.FILE_UNCHANGED, _instrumentor.instrument( _sourceFile, false ) );
+			assertEquals( readFile( new File( testFiles, "test2_solution.txt" ) ), readFile( copy ) );
+
+			// The edits are reverted like any other instrumentation
+			_instrumentor.revertToOriginalState( _sourceFile );
+			assertEquals( original, readFile( copy ) );
+			assertFalse( BackupStore.getDefault().hasBackup( copy ) );
+		}
+		finally {
+			copy.delete();
+			directory.delete();
+		}
+	}
+
+	private InstrumentationPoint makePoint( int line, int sequence, String construct, String syntax, int position ) {
+		InstrumentationPoint point = new InstrumentationPoint( line, sequence, construct, syntax, Constants.NOISE_SLEEP,
+				line, 1, 10 );
+		point.setPosition( position );
+		return point;
+	}
+
+	private void writeFile( File file, String text ) throws IOException {
+		FileWriter writer = new FileWriter( file );
+		try {
+			writer.write( text );
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private String readFile( File file ) throws IOException {
+		BufferedReader bufReader = new BufferedReader( new FileReader( file ) );
+		String line = null;
+		String text = "";
+		while( ( line = bufReader.readLine() ) != null ) {
+			text = text.concat( line + "\n" );
+		}
+		bufReader.close();
+		return text.trim();
+	}
+}
@@ -0,0 +1,97 @@
+package ca.sqrlab.eclipticon.test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import ca.sqrlab.eclipticon.runtime.Noise;
+
+/**
+ * This benchmark measures the cost of a noise point that doesn't activate, which is the cost every
+ * instrumented construct pays on every pass. The runtime library (a generator per thread) is compared
+ * with the statement that used to be placed in the source (one Random shared by the whole class) at 1,
+ * 8 and 64 threads. It is run as a program rather than as part of the tests:<br/><br/>
+ * 
+ * java ca.sqrlab.eclipticon.test.NoiseBenchmark [iterations per thread]
+ * 
+ * @author Chris Forbes, Kevin Jalbert, Cody LeBlanc
+ */
+public class NoiseBenchmark {
+
+	private static final Random	SHARED_RANDOM	= new Random();	// The random of the old inlined noise
+	private static volatile int	_sink			= 0;			// Keeps the old noise from being optimized away
+
+	public static void main( String[] args ) throws InterruptedException {
+		final int iterations = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 2000000;
+
+		// A point that never activates, so only the chance check is measured
+		final int point = Noise.register( "benchmark", Noise.YIELD, -1, 0, 0 );
+
+		Runnable shared = new Runnable() {
+
+			public void run() {
+				int count = 0;
+				for( int i = 0; i < iterations; i++ ) {
+					if( ( SHARED_RANDOM.nextInt( 100 - 0 ) + 0 ) <= -1 ) {
+						count++;
+					}
+				}
+				_sink += count;
+			}
+		};
+		Runnable runtime = new Runnable() {
+
+			public void run() {
+				for( int i = 0; i < iterations; i++ ) {
+					Noise.point( point );
+				}
+			}
+		};
+
+		// Warm up both so the compiled code is measured
+		measure( shared, 4 );
+		measure( runtime, 4 );
+
+		System.out.println( "threads\tshared Random (ns/point)\tper-thread runtime (ns/point)" );
+		for( int threads : new int[] { 1, 8, 64 } ) {
+			double sharedCost = (double)measure( shared, threads ) / iterations;
+			double runtimeCost = (double)measure( runtime, threads ) / iterations;
+			System.out.println( threads + "\t" + String.format( "%.1f", sharedCost ) + "\t\t\t\t"
+					+ String.format( "%.1f", runtimeCost ) );
+		}
+
+		// The old noise never activates, this only keeps its work from being thrown away
+		if( _sink != 0 ) {
+			System.out.println( "shared Random activated " + _sink + " times" );
+		}
+	}
+
+	/**
+	 * Runs the task on the given number of threads at once.
+	 * 
+	 * @return the time taken in nanoseconds
+	 */
+	private static long measure( final Runnable task, int threads ) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( threads );
+		for( int i = 0; i < threads; i++ ) {
+			new Thread( new Runnable() {
+
+				public void run() {
+					try {
+						start.await();
+					}
+					catch( InterruptedException e ) {
+						return;
+					}
+					task.run();
+					done.countDown();
+				}
+			} ).start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - begin;
+	}
+}
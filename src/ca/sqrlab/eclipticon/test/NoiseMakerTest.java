@@ -1,5 +1,7 @@
 package ca.sqrlab.eclipticon.test;
 
+import java.util.ArrayList;
+
 import junit.framework.TestCase;
 
 import org.junit.After;
@@ -9,6 +11,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import ca.sqrlab.eclipticon.Constants;
+import ca.sqrlab.eclipticon.data.InstrumentationPoint;
 import ca.sqrlab.eclipticon.instrumentation.NoiseMaker;
 
 public class NoiseMakerTest extends TestCase {
@@ -32,22 +35,32 @@ public class NoiseMakerTest extends TestCase {
 	}
 
 	@Test
-	public void testMakeRandImport() {
-		assertEquals( "import java.util.Random;", noiseMakers.makeRandImport() );
+	public void testMakePointTable() {
+		ArrayList<InstrumentationPoint> points = new ArrayList<InstrumentationPoint>();
+		points.add( new InstrumentationPoint( 1, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_BLOCK, Constants.NOISE_SLEEP, 5, 20, 30 ) );
+		points.add( new InstrumentationPoint( 2, 0, Constants.LATCH, Constants.LATCH_AWAIT, Constants.NOISE_YIELD, 50, 0, 0 ) );
+		assertEquals( "final class _____EclipticonNoise_C_____{static final int POINTS=ca.sqrlab.eclipticon.runtime.Noise.register(\"a/b/C.java\",new int[]{0,5,20,30,1,50,0,0});}", noiseMakers.makePointTable( "_____EclipticonNoise_C_____", "a/b/C.java", points ) );
 	}
 
 	@Test
-	public void testMakeRandVariable() {
-		assertEquals( "Random _____rand0123456789_____ = new Random();", noiseMakers.makeRandVariable() );
+	public void testMakePointTableHold() {
+		ArrayList<InstrumentationPoint> points = new ArrayList<InstrumentationPoint>();
+		points.add( new InstrumentationPoint( 1, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_LOCK, Constants.NOISE_PARK, 5, 20, 30 ) );
+		points.add( new InstrumentationPoint( 2, 0, Constants.SYNCHRONIZE, Constants.SYNCHRONIZE_TRYLOCK, Constants.NOISE_PARK, 5, 20, 30 ) );
+		points.get( 0 ).setPosition( Constants.POSITION_HOLD );
+		points.get( 1 ).setPosition( Constants.POSITION_HOLD );
+		assertEquals( "final class _____EclipticonNoise_C_____{static final int POINTS=ca.sqrlab.eclipticon.runtime.Noise.register(\"a/b/C.java\",new int[]{18,5,20,30,2,5,20,30});}", noiseMakers.makePointTable( "_____EclipticonNoise_C_____", "a/b/C.java", points ) );
 	}
 
 	@Test
-	public void testMakeNoiseSleep() {
-		assertEquals( "if((_____rand0123456789_____.nextInt(100-0)+0)<=5)try{Thread.sleep((_____rand0123456789_____.nextInt(30-20)+20));}catch(Exception _____e0123456789_____){};", noiseMakers.makeNoise( 5, 0, 20, 30 ) );
+	public void testMakeNoise() {
+		assertEquals( "if(ca.sqrlab.eclipticon.runtime.NoiseSwitch.ON)ca.sqrlab.eclipticon.runtime.Noise.point(_____EclipticonNoise_C_____.POINTS+3);", noiseMakers.makeNoise( "_____EclipticonNoise_C_____", 3 ) );
 	}
-	
+
 	@Test
-	public void testMakeNoiseYield() {
-		assertEquals( "if((_____rand0123456789_____.nextInt(100-0)+0)<=50)try{Thread.yield();}catch(Exception _____e0123456789_____){};", noiseMakers.makeNoise( 50, Constants.NOISE_YIELD, 0, 0 ) );
+	public void testMakeHolderName() {
+		assertEquals( "_____EclipticonNoise_C_____", noiseMakers.makeHolderName( "C.java" ) );
+		assertEquals( "_____EclipticonNoise_test_1_____", noiseMakers.makeHolderName( "test-1.txt" ) );
+		assertEquals( "_____EclipticonNoise_Makefile_____", noiseMakers.makeHolderName( "Makefile" ) );
 	}
-}
\ No newline at end of file
+}
@@ -1,23 +1,185 @@
 package ca.sqrlab.eclipticon.util;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
+import java.util.Random;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
 
+import ca.sqrlab.eclipticon.runtime.ControlFile;
+import ca.sqrlab.eclipticon.runtime.Noise;
+
 public class Tester {
 
 	private final static int	BUFFSIZE	= 1024;
 	private static byte			buff1[]		= new byte[BUFFSIZE];
 	private static byte			buff2[]		= new byte[BUFFSIZE];
 
+	private String				_javaOptions	= "";	// The options given to java before the class (e.g. the agent)
+	private File				_controlFile	= null;	// The control file the tested program reads its noise from
+	private Long				_seed			= null;	// The seed of every run, or null for a new seed each run
+	private Random				_seedRandom		= new Random();	// Makes the seed of each run
+	private String				_noiseBudget	= null;	// The budget of the delays of each run, or null for none
+	private String				_holdBudget		= null;	// The budget of the delays of the hold points, or null to share it
+	private String				_noiseDecay		= null;	// The decay schedule of the hot points, or null for none
+
+	/**
+	 * Sets the options given to java when a class file is tested, such as the -javaagent option that adds
+	 * noise to the class files while they are loaded.
+	 * 
+	 * @param javaOptions the java options
+	 */
+	public void setJavaOptions( String javaOptions ) {
+		_javaOptions = ( javaOptions == null ) ? "" : javaOptions.trim();
+	}
+
+	/**
+	 * Sets the control file that the tested program reads the settings of its noise points from, the
+	 * path is given to the program through its environment.
+	 * 
+	 * @param controlFile the control file, or null for none
+	 */
+	public void setControlFile( File controlFile ) {
+		_controlFile = controlFile;
+	}
+
+	/**
+	 * Sets the seed of the noise of the tested program. Every run is given a seed, which is recorded
+	 * beside the output of the run (in a .seed# file) so that a failing run can be repeated with the
+	 * same noise decisions.
+	 * 
+	 * @param seed the seed to use for every run, or null to use a new seed for each run
+	 */
+	public void setSeed( Long seed ) {
+		_seed = seed;
+	}
+
+	/**
+	 * Sets the budget of the delays the noise makes in each run of the tested program, the budget is
+	 * given to the program through its environment.
+	 * 
+	 * @param noiseBudget the budget (see Noise.makeBudget), or null if the delays are unlimited
+	 */
+	public void setNoiseBudget( String noiseBudget ) {
+		_noiseBudget = noiseBudget;
+	}
+
+	/**
+	 * Sets the budget of the delays the hold points make in each run of the tested program, the points
+	 * that keep a lock held for longer. The budget is given to the program through its environment.
+	 * 
+	 * @param holdBudget the budget (see Noise.makeBudget), or null if the hold points share the budget
+	 */
+	public void setHoldBudget( String holdBudget ) {
+		_holdBudget = holdBudget;
+	}
+
+	/**
+	 * Sets the decay schedule of the points the tested program reaches most often, the schedule is given
+	 * to the program through its environment.
+	 * 
+	 * @param noiseDecay the decay schedule (see Noise.makeDecay), or null if the points don't decay
+	 */
+	public void setNoiseDecay( String noiseDecay ) {
+		_noiseDecay = noiseDecay;
+	}
+
+	/**
+	 * Gets the seeds of the runs whose output did not match the expected output.
+	 * 
+	 * @param file Input File to retrieve the seeds for
+	 * @param numberTested Number of runs there should be
+	 * @return the seeds of the failing runs that have a recorded seed
+	 */
+	public ArrayList<Long> getFailingSeeds( File file, int numberTested ) {
+		ArrayList<Long> seeds = new ArrayList<Long>();
+		IPath base = new Path( file.getAbsolutePath() ).removeFileExtension();
+		File expected = base.addFileExtension( "exp" ).toFile();
+		if( !expected.isFile() ) {
+			return seeds;
+		}
+
+		for( int run = 0; run < numberTested; run++ ) {
+			File output = base.addFileExtension( "out" + run ).toFile();
+			File seed = base.addFileExtension( "seed" + run ).toFile();
+			if( output.isFile() && seed.isFile() && !fileContentsEquals( expected, output ) ) {
+				BufferedReader reader = null;
+				try {
+					reader = new BufferedReader( new FileReader( seed ) );
+					seeds.add( Long.valueOf( reader.readLine().trim() ) );
+				}
+				catch( Exception e ) {
+					e.printStackTrace();
+				}
+				finally {
+					try {
+						if( reader != null )
+							reader.close();
+					}
+					catch( IOException e ) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+		return seeds;
+	}
+
+	/**
+	 * Gives the run the noise settings that are the same for every run, the control file, the budgets and
+	 * the decay schedule, through its environment.
+	 * 
+	 * @param builder the process builder of the run
+	 */
+	private void setUpEnvironment( ProcessBuilder builder ) {
+		Map<String, String> environment = builder.environment();
+		if( _controlFile != null ) {
+			environment.put( ControlFile.ENVIRONMENT, _controlFile.getAbsolutePath() );
+		}
+		if( _noiseBudget != null ) {
+			environment.put( Noise.BUDGET_ENVIRONMENT, _noiseBudget );
+		}
+		if( _holdBudget != null ) {
+			environment.put( Noise.HOLD_BUDGET_ENVIRONMENT, _holdBudget );
+		}
+		if( _noiseDecay != null ) {
+			environment.put( Noise.DECAY_ENVIRONMENT, _noiseDecay );
+		}
+	}
+
+	/**
+	 * Gives the run its seed and records the seed beside the output of the run.
+	 * 
+	 * @param builder the process builder of the run
+	 * @param input the path of the input file
+	 * @param run the number of the run
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void seedRun( ProcessBuilder builder, Path input, int run ) throws IOException {
+		long seed = ( _seed != null ) ? _seed.longValue() : _seedRandom.nextLong();
+		builder.environment().put( Noise.SEED_ENVIRONMENT, String.valueOf( seed ) );
+
+		FileWriter writer = new FileWriter( input.removeFileExtension().addFileExtension( "seed" + run ).toFile() );
+		try {
+			writer.write( seed + System.getProperty( "line.separator" ) );
+		}
+		finally {
+			writer.close();
+		}
+	}
+
 	/**
 	 * Test the given Executable File a specified number of times, with the given inputs
 	 * 
@@ -68,12 +230,14 @@ public class Tester {
 
 					// If it is a binary java file run it with java
 					if( binary.toString().endsWith( ( "class" ) ) ) {
-						commands[ 2 ] = "java " + commands[ 2 ];
+						commands[ 2 ] = "java " + ( _javaOptions.length() > 0 ? _javaOptions + " " : "" ) + commands[ 2 ];
 					}
 
 					// Run the Command
 					ProcessBuilder builder = new ProcessBuilder( commands );
 					builder.redirectErrorStream( true );
+					setUpEnvironment( builder );
+					seedRun( builder, des, i );
 					Process process = builder.start();
 					process.waitFor();
 
@@ -169,12 +333,14 @@ public class Tester {
 
 					// If it is a binary java file run it with java
 					if( binary.toString().endsWith( ( "class" ) ) ) {
-						commands[ 2 ] = "java " + commands[ 2 ];
+						commands[ 2 ] = "java " + ( _javaOptions.length() > 0 ? _javaOptions + " " : "" ) + commands[ 2 ];
 					}
 
 					// Run the Command
 					ProcessBuilder builder = new ProcessBuilder( commands );
 					builder.redirectErrorStream( true );
+					setUpEnvironment( builder );
+					seedRun( builder, des, count );
 					Process process = builder.start();
 					process.waitFor();
 